@@ -17,6 +17,15 @@ repositories {
     mavenCentral()
 }
 
+// отдельный набор исходников для JMH-бенчмарков (src/jmh/java); бенчмарки видят основной код и его
+// зависимости, но не попадают в итоговый jar
+val jmh by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
 // добавляем JUnit для тестов и Jackson для сериализации и десериализации JSON
 dependencies {
     // https://mvnrepository.com/artifact/tools.jackson.core/jackson-databind
@@ -24,6 +33,9 @@ dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    // JMH для бенчмарков производительности
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
@@ -45,6 +57,17 @@ tasks.withType<JavaExec> {
     )
 }
 
+// запуск бенчмарков: ./gradlew jmh, параметры JMH можно передать через -PjmhArgs="..."
+// (например -PjmhArgs="SummaryByPeriodBenchmark -p walletOperationsCount=1000000")
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Запускает JMH-бенчмарки из src/jmh/java."
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = (project.findProperty("jmhArgs") as String?)?.split(" ")?.filter { it.isNotBlank() }
+        ?: emptyList()
+}
+
 // указываем основной класс с main для MANIFEST.MF, а также то, что нам нужен fat-jar со всеми зависимостями
 tasks.jar {
     archiveBaseName.set("personal_budgeting_app")
@@ -0,0 +1,81 @@
+package com.github.yuyuvu.personalbudgetingapp.benchmarks;
+
+import com.github.yuyuvu.personalbudgetingapp.domainservices.AnalyticsService;
+import com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsService;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарк для отчёта по периоду (AnalyticsService.makeSummaryByPeriod). Позволяет убедиться, что
+ * время построения отчёта растёт линейно от количества операций в периоде, в том числе на кошельке
+ * с 1 000 000 операций. Запуск: ./gradlew jmh -PjmhArgs="SummaryByPeriodBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SummaryByPeriodBenchmark {
+  private static final String[] INCOME_CATEGORIES = {
+    "зарплата", "подработка", "кешбэк", "проценты"
+  };
+  private static final String[] EXPENSES_CATEGORIES = {
+    "еда", "транспорт", "развлечения", "коммунальные услуги", "здоровье", "одежда", "подарки"
+  };
+  private static final LocalDateTime FIRST_OPERATION_DATE_TIME =
+      LocalDateTime.of(2020, 1, 1, 0, 0);
+
+  @Param({"10000", "100000", "1000000"})
+  private int walletOperationsCount;
+
+  private Wallet wallet;
+  private LocalDateTime periodStart;
+  private LocalDateTime periodEnd;
+
+  /**
+   * Подготовка кошелька: операции разных типов и категорий равномерно распределены по времени с
+   * шагом в одну минуту, отчёт строится по периоду, охватывающему все операции.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    wallet = new Wallet(false);
+    Random random = new Random(42);
+    for (int i = 0; i < walletOperationsCount; i++) {
+      LocalDateTime dateTime = FIRST_OPERATION_DATE_TIME.plusMinutes(i);
+      double amount = 1 + random.nextInt(100_000) / 100.0;
+      if (random.nextInt(4) == 0) {
+        WalletOperationsService.addIncome(
+            wallet, amount, INCOME_CATEGORIES[random.nextInt(INCOME_CATEGORIES.length)], dateTime);
+      } else {
+        WalletOperationsService.addExpense(
+            wallet,
+            amount,
+            EXPENSES_CATEGORIES[random.nextInt(EXPENSES_CATEGORIES.length)],
+            dateTime);
+      }
+    }
+    periodStart = FIRST_OPERATION_DATE_TIME.minusMinutes(1);
+    periodEnd = FIRST_OPERATION_DATE_TIME.plusMinutes(walletOperationsCount);
+  }
+
+  /** Построение полного отчёта по периоду. */
+  @Benchmark
+  public String makeSummaryByPeriod() {
+    return AnalyticsService.makeSummaryByPeriod(wallet, periodStart, periodEnd);
+  }
+}
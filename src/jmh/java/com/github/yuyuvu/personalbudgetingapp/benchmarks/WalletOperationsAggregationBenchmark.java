@@ -0,0 +1,108 @@
+package com.github.yuyuvu.personalbudgetingapp.benchmarks;
+
+import com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsService;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарк для методов агрегирования операций из WalletOperationsService: сумм, количества,
+ * наименьшей и наибольшей суммы по списку операций, а также сумм и количества по категории из
+ * индекса кошелька. Запускается с профилировщиком сборщика мусора, чтобы убедиться, что вызовы не
+ * создают объектов (значение gc.alloc.rate.norm около 0 B/op): ./gradlew jmh
+ * -PjmhArgs="WalletOperationsAggregationBenchmark -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class WalletOperationsAggregationBenchmark {
+  private static final String[] EXPENSES_CATEGORIES = {
+    "еда", "транспорт", "развлечения", "коммунальные услуги", "здоровье"
+  };
+  private static final LocalDateTime FIRST_OPERATION_DATE_TIME =
+      LocalDateTime.of(2020, 1, 1, 0, 0);
+
+  @Param({"1000", "100000"})
+  private int walletOperationsCount;
+
+  private Wallet wallet;
+  private ArrayList<Wallet.WalletOperation> walletOperations;
+
+  /**
+   * Подготовка кошелька: каждая четвёртая операция - доход, остальные - расходы разных категорий.
+   * Список операций копируется один раз, чтобы в замер не попадало создание представления списка
+   * кошелька.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    wallet = new Wallet(false);
+    Random random = new Random(42);
+    for (int i = 0; i < walletOperationsCount; i++) {
+      LocalDateTime dateTime = FIRST_OPERATION_DATE_TIME.plusMinutes(i);
+      double amount = 1 + random.nextInt(100_000) / 100.0;
+      if (i % 4 == 0) {
+        WalletOperationsService.addIncome(wallet, amount, "зарплата", dateTime);
+      } else {
+        WalletOperationsService.addExpense(
+            wallet,
+            amount,
+            EXPENSES_CATEGORIES[random.nextInt(EXPENSES_CATEGORIES.length)],
+            dateTime);
+      }
+    }
+    walletOperations = new ArrayList<>(wallet.getWalletOperations());
+  }
+
+  /** Сумма расходов по списку операций. */
+  @Benchmark
+  public double getWalletOperationsAmountsSum() {
+    return WalletOperationsService.getWalletOperationsAmountsSum(walletOperations, false);
+  }
+
+  /** Количество расходов в списке операций. */
+  @Benchmark
+  public int getWalletOperationsCount() {
+    return WalletOperationsService.getWalletOperationsCount(walletOperations, false);
+  }
+
+  /** Наименьшая сумма расхода в списке операций. */
+  @Benchmark
+  public double getWalletOperationsMinAmount() {
+    return WalletOperationsService.getWalletOperationsMinAmount(walletOperations, false);
+  }
+
+  /** Наибольшая сумма расхода в списке операций. */
+  @Benchmark
+  public double getWalletOperationsMaxAmount() {
+    return WalletOperationsService.getWalletOperationsMaxAmount(walletOperations, false);
+  }
+
+  /** Сумма расходов по нескольким категориям из индекса кошелька. */
+  @Benchmark
+  public double getExpensesByCategories() {
+    return WalletOperationsService.getExpensesByCategories(wallet, EXPENSES_CATEGORIES);
+  }
+
+  /** Количество расходов по категории из индекса кошелька. */
+  @Benchmark
+  public int getCategoryWalletOperationsCount() {
+    return wallet.getCategoryWalletOperationsCount(false, "еда");
+  }
+}
@@ -1,17 +1,91 @@
 package com.github.yuyuvu.personalbudgetingapp;
 
+import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnGreen;
+
+import com.github.yuyuvu.personalbudgetingapp.appservices.PasswordHasher;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import java.io.IOException;
 import java.util.Locale;
 
 /** Класс Main отвечает только за запуск приложения. Делает точку входа видимой сразу. */
 public class Main {
 
+  // Время вычисления одного хэша пароля, под которое по умолчанию подбираются итерации
+  private static final long DEFAULT_HASHING_CALIBRATION_TARGET_MILLIS = 300;
+
   // Установка глобальной локали для сохранения вывода приложения ожидаемым
   static {
     Locale.setDefault(Locale.US);
   }
 
-  /** Метод main отвечает только за запуск приложения. Делает точку входа видимой сразу. */
-  public static void main(String[] args) {
+  /**
+   * Метод main отвечает только за запуск приложения. Делает точку входа видимой сразу. <br>
+   * С аргументом --server [порт] приложение запускается в многопользовательском режиме сервера (см.
+   * PersonalBudgetingServer), без аргументов - в консоли. Сервер принимает подключения только с
+   * этого же компьютера, если не указан аргумент --listen-all-interfaces. <br>
+   * Аргумент --hashing-iterations [количество] задаёт количество итераций для новых хэшей паролей,
+   * а --calibrate-hashing [миллисекунды] подбирает его под указанное время вычисления одного хэша
+   * на текущем оборудовании (см. PasswordHasher). <br>
+   * Аргумент --userdata-format json|binary задаёт формат, в котором сохраняются файлы пользователей
+   * (см. DataPersistenceService.UserdataFormat).
+   */
+  public static void main(String[] args) throws IOException {
+    Integer serverPort = null;
+    boolean listenOnAllInterfaces = false;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--server" -> {
+          serverPort =
+              hasNumberAt(args, i + 1)
+                  ? Integer.parseInt(args[++i])
+                  : PersonalBudgetingServer.DEFAULT_PORT;
+        }
+        case "--listen-all-interfaces" -> listenOnAllInterfaces = true;
+        case "--hashing-iterations" -> {
+          if (!hasNumberAt(args, i + 1)) {
+            throw new IllegalArgumentException(
+                "После --hashing-iterations нужно указать количество итераций.");
+          }
+          PasswordHasher.setCurrentIterations(Integer.parseInt(args[++i]));
+        }
+        case "--calibrate-hashing" -> {
+          long targetMillis =
+              hasNumberAt(args, i + 1)
+                  ? Long.parseLong(args[++i])
+                  : DEFAULT_HASHING_CALIBRATION_TARGET_MILLIS;
+          int iterations = PasswordHasher.calibrateIterations(targetMillis);
+          printlnGreen(
+              "Подобрано количество итераций хэширования паролей: "
+                  + iterations
+                  + " (около "
+                  + targetMillis
+                  + " мс на один хэш).");
+        }
+        case "--userdata-format" -> {
+          String format = i + 1 < args.length ? args[++i].toUpperCase(Locale.ROOT) : "";
+          try {
+            DataPersistenceService.setUserdataFormat(
+                DataPersistenceService.UserdataFormat.valueOf(format));
+          } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "После --userdata-format нужно указать формат: json или binary.");
+          }
+        }
+        default -> throw new IllegalArgumentException("Неизвестный аргумент запуска: " + args[i]);
+      }
+    }
+
+    if (serverPort != null) {
+      try (PersonalBudgetingServer server =
+          new PersonalBudgetingServer(serverPort, listenOnAllInterfaces)) {
+        server.serve();
+      }
+      return;
+    }
     new PersonalBudgetingApp().start();
   }
+
+  private static boolean hasNumberAt(String[] args, int i) {
+    return i < args.length && args[i].matches("^\\d+$");
+  }
 }
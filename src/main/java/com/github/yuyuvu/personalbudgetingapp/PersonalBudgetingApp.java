@@ -3,43 +3,75 @@ package com.github.yuyuvu.personalbudgetingapp;
 import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnGreen;
 import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnYellow;
 
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
 import com.github.yuyuvu.personalbudgetingapp.presentation.menus.AuthorizationMenu;
 import com.github.yuyuvu.personalbudgetingapp.presentation.menus.Menu;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.util.Scanner;
 
 /**
  * Класс для точки входа в приложение. Также отвечает за основной цикл вывода меню и обработки ввода
  * пользователя. <br>
- * Хранит статические поля для текущего пользователя, текущего меню и сканера ввода, которые
- * используются другими классами.
+ * Хранит текущего пользователя, текущее меню, сканер ввода и поток вывода, которые используются
+ * другими классами через статические методы. Эти данные относятся к сессии, обслуживаемой текущим
+ * потоком: в обычном режиме это единственная консольная сессия, в режиме сервера
+ * (PersonalBudgetingServer) - сессия отдельного подключения.
  */
 public class PersonalBudgetingApp {
   /* Получаем текущую системную кодировку и передаём её в InputStreamReader,
    * из которого будет читать Scanner
-   * Это нужно для правильного считывания кириллицы из консоли */
+   * Это нужно для правильного считывания кириллицы из консоли
+   * (свойство stdout.encoding есть только начиная с JDK 19) */
   private static final String codePage = (String) System.getProperties().get("stdout.encoding");
-  private static final Charset charsetName = Charset.forName(codePage);
-  private static final Scanner userInput =
-      new Scanner(new InputStreamReader(System.in, charsetName));
+  private static final Charset charsetName =
+      codePage != null ? Charset.forName(codePage) : Charset.defaultCharset();
 
-  private static Menu currentMenu = null;
-  private static User currentAppUser = null;
+  // Консольная сессия используется всеми потоками, для которых не задана своя сессия
+  private static final Session consoleSession =
+      new Session(new Scanner(new InputStreamReader(System.in, charsetName)), null);
+  private static final ThreadLocal<Session> currentSession = new ThreadLocal<>();
 
   /** Точка входа в приложение, запускается из класса Main. */
   public void start() {
-    showGreetingMessage();
-    setCurrentMenu(new AuthorizationMenu());
-
-    /* В процессе работы приложения в currentMenu через setCurrentMenu()
-     * подставляются наследники абстрактного класса presentation.menus.Menu.
-     * У их объектов в цикле ниже полиморфно вызываются методы showMenu() и handleUserInput().*/
-    while (true) {
-      // NotificationsService.checkNotifications();
-      getCurrentMenu().showMenu();
-      getCurrentMenu().handleUserInput();
+    runSession(consoleSession);
+  }
+
+  /**
+   * Метод выполняет основной цикл для сессии в текущем потоке, пока сессия не будет завершена
+   * выключением приложения.
+   */
+  static void runSession(Session session) {
+    currentSession.set(session);
+    try {
+      showGreetingMessage();
+      setCurrentMenu(new AuthorizationMenu());
+
+      /* В процессе работы приложения в currentMenu через setCurrentMenu()
+       * подставляются наследники абстрактного класса presentation.menus.Menu.
+       * У их объектов в цикле ниже полиморфно вызываются методы showMenu() и handleUserInput().
+       * Команды пользователя в аккаунте обрабатываются под блокировкой его данных
+       * (см. UserSessionsRegistry), которая отпускается на время ожидания ввода.*/
+      while (session.active) {
+        // NotificationsService.checkNotifications();
+        Menu menu = getCurrentMenu();
+        User user = getCurrentAppUser();
+        if (user == null) {
+          menu.showMenu();
+          menu.handleUserInput();
+        } else {
+          UserSessionsRegistry.runWithUsersLocked(
+              () -> {
+                menu.showMenu();
+                menu.handleUserInput();
+              },
+              user.getUsername());
+        }
+      }
+    } finally {
+      currentSession.remove();
     }
   }
 
@@ -50,25 +82,67 @@ public class PersonalBudgetingApp {
     printlnGreen("Для получения помощи по приложению введите --help");
   }
 
-  // Отдельные геттеры и сеттеры для полей класса.
+  private static Session getCurrentSession() {
+    Session session = currentSession.get();
+    return session != null ? session : consoleSession;
+  }
+
+  /**
+   * Метод завершает сессию текущего потока. Возвращает false для консольной сессии: её завершение
+   * означает выключение всего приложения.
+   */
+  public static boolean finishCurrentSession() {
+    Session session = getCurrentSession();
+    if (session == consoleSession) {
+      return false;
+    }
+    session.active = false;
+    return true;
+  }
+
+  // Отдельные геттеры и сеттеры для полей сессии.
 
   private static Menu getCurrentMenu() {
-    return currentMenu;
+    return getCurrentSession().currentMenu;
   }
 
   public static void setCurrentMenu(Menu currentMenu) {
-    PersonalBudgetingApp.currentMenu = currentMenu;
+    getCurrentSession().currentMenu = currentMenu;
   }
 
   public static User getCurrentAppUser() {
-    return currentAppUser;
+    return getCurrentSession().currentAppUser;
   }
 
   public static void setCurrentAppUser(User currentAppUser) {
-    PersonalBudgetingApp.currentAppUser = currentAppUser;
+    getCurrentSession().currentAppUser = currentAppUser;
   }
 
   public static Scanner getUserInput() {
-    return userInput;
+    return getCurrentSession().userInput;
+  }
+
+  /** Метод возвращает поток вывода текущей сессии. Для консоли это всегда текущий System.out. */
+  public static PrintStream getUserOutput() {
+    PrintStream userOutput = getCurrentSession().userOutput;
+    return userOutput != null ? userOutput : System.out;
+  }
+
+  /** Состояние отдельной сессии работы с приложением: ввод, вывод, пользователь и меню. */
+  static final class Session {
+    private final Scanner userInput;
+    private final PrintStream userOutput;
+    private Menu currentMenu;
+    private User currentAppUser;
+    private volatile boolean active = true;
+
+    Session(Scanner userInput, PrintStream userOutput) {
+      this.userInput = userInput;
+      this.userOutput = userOutput;
+    }
+
+    User getCurrentAppUser() {
+      return currentAppUser;
+    }
   }
 }
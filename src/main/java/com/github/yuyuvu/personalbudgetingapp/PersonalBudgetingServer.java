@@ -0,0 +1,141 @@
+package com.github.yuyuvu.personalbudgetingapp;
+
+import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnGreen;
+import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnRed;
+import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnYellow;
+
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
+import com.github.yuyuvu.personalbudgetingapp.model.User;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Класс PersonalBudgetingServer отвечает за многопользовательский режим работы приложения по TCP.
+ * Каждое подключение (например, через telnet или nc) получает собственную сессию с отдельными
+ * пользователем, меню, вводом и выводом в кодировке UTF-8 и обслуживается теми же меню, что и
+ * консольный режим. <br>
+ * Каждая сессия выполняется в отдельном потоке. При запуске на JDK 21 и новее используются
+ * виртуальные потоки, поэтому ожидающие ввода сессии почти не занимают ресурсов. На более старых
+ * JDK используются обычные потоки. <br>
+ * По умолчанию сервер принимает подключения только с этого же компьютера (на loopback-адресе):
+ * данные передаются без шифрования. Подключения из сети принимаются только при явном запуске с
+ * прослушиванием всех сетевых интерфейсов.
+ */
+public class PersonalBudgetingServer implements Closeable {
+  public static final int DEFAULT_PORT = 5050;
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService sessionsExecutor = makeSessionsExecutor();
+
+  /**
+   * Конструктор, занимающий указанный порт (0 - любой свободный) на loopback-адресе, то есть
+   * принимающий подключения только с этого же компьютера.
+   */
+  public PersonalBudgetingServer(int port) throws IOException {
+    this(port, false);
+  }
+
+  /**
+   * Конструктор, занимающий указанный порт (0 - любой свободный). Если listenOnAllInterfaces равно
+   * true, то подключения принимаются на всех сетевых интерфейсах, иначе только на loopback-адресе.
+   */
+  public PersonalBudgetingServer(int port, boolean listenOnAllInterfaces) throws IOException {
+    serverSocket =
+        listenOnAllInterfaces
+            ? new ServerSocket(port)
+            : new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+  }
+
+  /** Метод возвращает порт, на котором сервер принимает подключения. */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /** Метод принимает подключения, пока сервер не будет закрыт. */
+  public void serve() {
+    printlnGreen(
+        "Сервер системы управления личными финансами принимает подключения на адресе "
+            + serverSocket.getInetAddress().getHostAddress()
+            + ", порту "
+            + getPort()
+            + ".");
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          printlnRed("Проблемы с приёмом подключения: " + e.getMessage());
+        }
+        continue;
+      }
+      sessionsExecutor.execute(() -> serveConnection(socket));
+    }
+  }
+
+  /** Метод прекращает приём подключений. Уже открытые сессии продолжают работу. */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    sessionsExecutor.shutdown();
+  }
+
+  /**
+   * Метод обслуживает отдельное подключение. Если клиент отключился, не выйдя из аккаунта, то
+   * данные его пользователя сохраняются так же, как при выходе из аккаунта.
+   */
+  private static void serveConnection(Socket socket) {
+    try (socket;
+        Scanner userInput =
+            new Scanner(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintStream userOutput =
+            new PrintStream(
+                new BufferedOutputStream(socket.getOutputStream()),
+                false,
+                StandardCharsets.UTF_8)) {
+      PersonalBudgetingApp.Session session =
+          new PersonalBudgetingApp.Session(userInput, userOutput);
+      try {
+        PersonalBudgetingApp.runSession(session);
+      } catch (NoSuchElementException e) {
+        // Клиент закрыл подключение во время ожидания ввода. Сессия к этому моменту завершена,
+        // поэтому сообщение выводится в консоль сервера
+        printlnYellow(
+            "Клиент " + socket.getRemoteSocketAddress() + " отключился, не выключив приложение.");
+      } finally {
+        User user = session.getCurrentAppUser();
+        if (user != null) {
+          UserSessionsRegistry.closeSession(user, DataPersistenceService::saveUserdataToFile);
+        }
+      }
+    } catch (IOException e) {
+      printlnRed("Проблемы с обслуживанием подключения: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Метод создаёт исполнитель, запускающий каждую сессию в новом виртуальном потоке. Приложение
+   * собирается для JDK 17, поэтому виртуальные потоки (JDK 21) подключаются через рефлексию, а при
+   * их отсутствии используется пул обычных потоков.
+   */
+  private static ExecutorService makeSessionsExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+}
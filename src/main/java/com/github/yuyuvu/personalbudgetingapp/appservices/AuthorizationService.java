@@ -5,32 +5,44 @@ import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.p
 import com.github.yuyuvu.personalbudgetingapp.exceptions.CheckedIllegalArgumentException;
 import com.github.yuyuvu.personalbudgetingapp.exceptions.InvalidCredentialsException;
 import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Класс AuthorizationService отвечает за операции регистрации и авторизации. Постоянно хранит в
- * себе HashMap для сравнения вводимых данных для авторизации с правильными. После перезапуска
- * считывает данные для авторизации в эту HashMap из файлов данных пользователей при помощи методов
- * из DataPersistenceService. Обращается к PasswordHasher для вычисления хэшей вводимых паролей и
- * сравнения с правильным хэшем. Создаёт новые объекты User при регистрации пользователей.
+ * себе хэш-таблицу для сравнения вводимых данных для авторизации с правильными. После перезапуска
+ * считывает данные для авторизации в эту хэш-таблицу из индекса учётных данных пользователей при
+ * помощи методов из DataPersistenceService. Обращается к PasswordHashingService для вычисления
+ * хэшей вводимых паролей и сравнения с правильным хэшем. Создаёт новые объекты User при регистрации
+ * пользователей.
  */
 public class AuthorizationService {
-  // Хэщ-таблица с данными для аутентификации
-  private static HashMap<String, String[]> loadedUsernamesAndHashesAndSalts = new HashMap<>();
+  // Хэщ-таблица с данными для аутентификации. Потокобезопасна, так как в режиме сервера
+  // регистрация и вход выполняются из нескольких сессий одновременно
+  private static ConcurrentHashMap<String, String[]> loadedUsernamesAndHashesAndSalts =
+      new ConcurrentHashMap<>();
+  // Индекс имён пользователей в нижнем регистре для проверки существования без учёта регистра
+  private static final ConcurrentHashMap<String, String> lowercaseUsernames =
+      new ConcurrentHashMap<>();
 
-  private static HashMap<String, String[]> getLoadedUsernamesAndHashesAndSalts() {
+  private static ConcurrentHashMap<String, String[]> getLoadedUsernamesAndHashesAndSalts() {
     return loadedUsernamesAndHashesAndSalts;
   }
 
   /**
-   * Перечисление, указывающее к каким индексам нужно обращаться для чтения хэшей и солей при
-   * десериализации данных пользователей для аутентификации из файлов.
+   * Перечисление, указывающее к каким индексам нужно обращаться для чтения хэшей, солей и
+   * параметров хэширования при десериализации данных пользователей для аутентификации из файлов.
+   * Алгоритма и количества итераций может не быть у пользователей, зарегистрированных до их
+   * сохранения: их хэши вычислены с параметрами по умолчанию (см. PasswordHasher).
    */
   public enum PasswordData {
     HASH,
-    SALT
+    SALT,
+    ALGORITHM,
+    ITERATIONS
   }
 
   // Получаем данные об уже имеющихся пользователях после полного выключения
@@ -38,7 +50,11 @@ public class AuthorizationService {
   static {
     try {
       loadedUsernamesAndHashesAndSalts =
-          DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts();
+          new ConcurrentHashMap<>(
+              DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts());
+      for (String username : loadedUsernamesAndHashesAndSalts.keySet()) {
+        lowercaseUsernames.put(toLowercaseUsername(username), username);
+      }
     } catch (Exception e) {
       // Ошибки чтения файлов с данными пользователей. Приложение всё ещё может работать,
       // но не будет помнить о части пользователей из прошлого запуска.
@@ -82,25 +98,34 @@ public class AuthorizationService {
 
   /**
    * Метод для регистрации нового пользователя, если проверки имени и пароля прошли успешно. Создаёт
-   * новую соль для пользователя. Создаёт новый объект пользователя. Сохраняет хэш и соль в
-   * loadedUsernamesAndHashesAndSalts. Создаёт файл для хранения данных пользователя: кошелька и
-   * данных для аутентификации. Также задаёт новому пользователю настройки приложения по-умолчанию.
+   * новую соль для пользователя и вычисляет хэш с текущими параметрами хэширования. Создаёт новый
+   * объект пользователя. Сохраняет хэш и соль в loadedUsernamesAndHashesAndSalts. Создаёт файл для
+   * хранения данных пользователя: кошелька и данных для аутентификации. Также задаёт новому
+   * пользователю настройки приложения по-умолчанию. Новый пользователь сразу считается находящимся
+   * в аккаунте (см. UserSessionsRegistry). <br>
+   * Имя занимается атомарно до вычисления хэша: если то же имя (без учёта регистра) уже занято, в
+   * том числе одновременной регистрацией в другой сессии после проверки validateNewUsername, то
+   * выбрасывается InvalidCredentialsException, а данные занявшего его пользователя не изменяются.
    */
   public static User registerUser(String inputNewUsername, String inputNewPassword)
-      throws IOException {
-    String newSalt = PasswordHasher.SaltGenerator.makeSalt();
-    String newHash = PasswordHasher.makePasswordHash(inputNewPassword, newSalt);
-    String[] passwordData = new String[] {newHash, newSalt};
+      throws IOException, InvalidCredentialsException {
+    String lowercaseUsername = toLowercaseUsername(inputNewUsername);
+    if (lowercaseUsernames.putIfAbsent(lowercaseUsername, inputNewUsername) != null) {
+      throw new InvalidCredentialsException(
+          "Такой пользователь уже существует. Введите другое имя пользователя.");
+    }
+    String[] passwordData = makePasswordData(inputNewPassword);
     getLoadedUsernamesAndHashesAndSalts().put(inputNewUsername, passwordData);
 
     User newUser =
         new User(inputNewUsername, passwordData, ConfigManager.makeAppConfigOnRegistration());
 
-    // Следующие два вызова могут выбрасывать IOException
+    // Следующие три вызова могут выбрасывать IOException
     DataPersistenceService.makeNewUserWalletFile(inputNewUsername);
     DataPersistenceService.saveUserdataToFile(newUser);
+    DataPersistenceService.addUserToCredentialsIndex(inputNewUsername, passwordData);
 
-    return newUser;
+    return UserSessionsRegistry.openSession(inputNewUsername, username -> newUser);
   }
 
   /**
@@ -118,33 +143,109 @@ public class AuthorizationService {
 
   /**
    * Метод для проверки правильности введённого пароля имеющегося пользователя при аутентификации.
-   * Вычисляет хэш на основе введённого пароля и соли с правильным хэшем, хранящимся в
-   * loadedUsernamesAndHashesAndSalts.
+   * Вычисляет хэш на основе введённого пароля и соли с параметрами хэширования пользователя и
+   * сравнивает с правильным хэшем, хранящимся в loadedUsernamesAndHashesAndSalts. <br>
+   * Если пароль верный, а параметры хэширования пользователя устарели (другой алгоритм или меньше
+   * итераций, чем текущие), то хэш пароля вычисляется заново с текущими параметрами и добавляется в
+   * индекс учётных данных. В файл пользователя новые данные попадут при следующем сохранении.
    */
   public static boolean validateExistingPassword(
       String inputExistingUsername, String tempExistingPassword)
       throws InvalidCredentialsException {
-    String hash =
-        getLoadedUsernamesAndHashesAndSalts()
-            .get(inputExistingUsername)[PasswordData.HASH.ordinal()];
-    String salt =
-        getLoadedUsernamesAndHashesAndSalts()
-            .get(inputExistingUsername)[PasswordData.SALT.ordinal()];
-    if (!hash.equals(PasswordHasher.makePasswordHash(tempExistingPassword, salt))) {
+    String[] passwordData = getLoadedUsernamesAndHashesAndSalts().get(inputExistingUsername);
+    String hash = passwordData[PasswordData.HASH.ordinal()];
+    String salt = passwordData[PasswordData.SALT.ordinal()];
+    String algorithm = getPasswordHashAlgorithm(passwordData);
+    int iterations = getPasswordHashIterations(passwordData);
+    if (!hash.equals(
+        PasswordHashingService.makePasswordHash(
+            tempExistingPassword, salt, algorithm, iterations))) {
       throw new InvalidCredentialsException(
           "Введён некорректный пароль для аккаунта пользователя "
               + inputExistingUsername
               + ", повторите попытку.");
     }
+    if (!algorithm.equals(PasswordHasher.getCurrentAlgorithm())
+        || iterations < PasswordHasher.getCurrentIterations()) {
+      rehashPassword(inputExistingUsername, tempExistingPassword);
+    }
+    return true;
+  }
+
+  /**
+   * Метод заменяет данные для аутентификации пользователя новыми, вычисленными с текущими
+   * параметрами хэширования. При ошибке записи в индекс остаются прежние данные, с которыми вход
+   * тоже возможен.
+   */
+  private static void rehashPassword(String username, String password) {
+    String[] newPasswordData = makePasswordData(password);
+    try {
+      DataPersistenceService.addUserToCredentialsIndex(username, newPasswordData);
+    } catch (IOException e) {
+      printlnRed(e.getMessage());
+      return;
+    }
+    getLoadedUsernamesAndHashesAndSalts().put(username, newPasswordData);
+  }
+
+  /** Метод создаёт соль и вычисляет хэш пароля с текущими параметрами хэширования. */
+  private static String[] makePasswordData(String password) {
+    String salt = PasswordHasher.SaltGenerator.makeSalt();
+    String algorithm = PasswordHasher.getCurrentAlgorithm();
+    int iterations = PasswordHasher.getCurrentIterations();
+    String hash = PasswordHashingService.makePasswordHash(password, salt, algorithm, iterations);
+    return new String[] {hash, salt, algorithm, String.valueOf(iterations)};
+  }
+
+  private static String getPasswordHashAlgorithm(String[] passwordData) {
+    return passwordData.length > PasswordData.ALGORITHM.ordinal()
+        ? passwordData[PasswordData.ALGORITHM.ordinal()]
+        : PasswordHasher.DEFAULT_ALGORITHM;
+  }
+
+  private static int getPasswordHashIterations(String[] passwordData) {
+    return passwordData.length > PasswordData.ITERATIONS.ordinal()
+        ? Integer.parseInt(passwordData[PasswordData.ITERATIONS.ordinal()])
+        : PasswordHasher.DEFAULT_ITERATIONS;
+  }
+
+  /**
+   * Метод проверяет сохранённые параметры хэширования пароля: алгоритм должен поддерживаться, а
+   * количество итераций должно быть целым числом не меньше PasswordHasher.MIN_ITERATIONS.
+   * Отсутствующие параметры допустимы, для них используются значения по умолчанию.
+   */
+  public static boolean hasValidPasswordHashParameters(String[] passwordData) {
+    if (passwordData.length > PasswordData.ALGORITHM.ordinal()
+        && !PasswordHasher.isSupportedAlgorithm(passwordData[PasswordData.ALGORITHM.ordinal()])) {
+      return false;
+    }
+    if (passwordData.length > PasswordData.ITERATIONS.ordinal()) {
+      try {
+        return Integer.parseInt(passwordData[PasswordData.ITERATIONS.ordinal()])
+            >= PasswordHasher.MIN_ITERATIONS;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
     return true;
   }
 
   /**
    * При условии правильного ввода логина и пароля данный метод загружает из файла и возвращает
-   * сохранённые при предыдущем выходе из аккаунта данные кошелька пользователя.
+   * сохранённые при предыдущем выходе из аккаунта данные кошелька пользователя. Если пользователь
+   * уже в аккаунте в другой сессии, то возвращаются его данные из оперативной памяти. Данные для
+   * аутентификации пользователя заменяются актуальными, если при входе хэш был вычислен заново.
    */
   public static User logInToAccount(String inputExistingUsername) throws IOException {
-    return DataPersistenceService.loadUserdataFromFile(inputExistingUsername);
+    User user =
+        UserSessionsRegistry.openSession(
+            inputExistingUsername, DataPersistenceService::loadUserdataFromFile);
+    String[] passwordData = getLoadedUsernamesAndHashesAndSalts().get(inputExistingUsername);
+    if (passwordData != null) {
+      UserSessionsRegistry.runWithUsersLocked(
+          () -> user.setPasswordData(passwordData), inputExistingUsername);
+    }
+    return user;
   }
 
   /**
@@ -157,14 +258,13 @@ public class AuthorizationService {
 
   /**
    * Метод проверяет наличие пользователя с определённым именем в loadedUsernamesAndHashesAndSalts.
-   * Проверяет без учёта регистра.
+   * Проверяет без учёта регистра, по индексу имён в нижнем регистре, без перебора всех имён.
    */
   public static boolean checkUserExistenceIrrespectiveOfCase(String username) {
-    for (String key : getLoadedUsernamesAndHashesAndSalts().keySet()) {
-      if (key.equalsIgnoreCase(username)) {
-        return true;
-      }
-    }
-    return false;
+    return lowercaseUsernames.containsKey(toLowercaseUsername(username));
+  }
+
+  private static String toLowercaseUsername(String username) {
+    return username.toLowerCase(Locale.ROOT);
   }
 }
@@ -4,34 +4,69 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
 /**
  * Класс PasswordHasher хранит в себе два метода: 1) для получения уникальной соли пользователя при
  * регистрации; 2) для вычисления хэша на основе пароля и соли при авторизации. Они используются в
- * AuthorizationService.
+ * AuthorizationService через PasswordHashingService, который выполняет вычисление хэшей в
+ * ограниченном пуле потоков. <br>
+ * Алгоритм и количество итераций, с которыми вычислен хэш, хранятся вместе с хэшем и солью
+ * пользователя. Для новых хэшей используются текущие параметры: количество итераций можно задать
+ * при запуске приложения или подобрать под нужное время вычисления хэша на текущем оборудовании
+ * (calibrateIterations).
  */
 public class PasswordHasher {
   /*Для экономии места в сохраняемых файлах кошельков пользователей выбран алгоритм SHA256
   Помимо хэширования паролей, стоило бы также добавить шифрование самих файлов кошельков.
   Это направление для дальнейшего улучшения проекта. */
-  private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
-  private static final int ITERATIONS = 600000; // Рекомендуемое значение OWASP 2023 для SHA256
+  public static final String DEFAULT_ALGORITHM = "PBKDF2WithHmacSHA256";
+  // Рекомендуемое значение OWASP 2023 для SHA256
+  public static final int DEFAULT_ITERATIONS = 600000;
+  // Нижняя граница количества итераций, которую нельзя уменьшить настройкой или подбором
+  public static final int MIN_ITERATIONS = 100000;
   private static final int HASH_LENGTH = 256; // 256 бит
 
-  /** Метод для получения хэшей на основе пароля и соли. */
+  // Количество итераций для замеров при подборе и шаг округления подобранного значения
+  private static final int CALIBRATION_ITERATIONS = 20000;
+  private static final int CALIBRATION_ROUNDS = 3;
+  private static final int CALIBRATED_ITERATIONS_STEP = 10000;
+
+  private static volatile int currentIterations = DEFAULT_ITERATIONS;
+
+  // SecretKeyFactory не потокобезопасна, поэтому у каждого потока свои, созданные один раз
+  private static final ThreadLocal<HashMap<String, SecretKeyFactory>> secretKeyFactories =
+      ThreadLocal.withInitial(HashMap::new);
+
+  /**
+   * Метод для получения хэшей на основе пароля и соли с алгоритмом и количеством итераций по
+   * умолчанию. Такими параметрами вычислены хэши пользователей, для которых параметры не сохранены.
+   */
   public static String makePasswordHash(String password, String salt) {
+    return makePasswordHash(password, salt, DEFAULT_ALGORITHM, DEFAULT_ITERATIONS);
+  }
+
+  /** Метод для получения хэшей на основе пароля и соли с указанными алгоритмом и итерациями. */
+  public static String makePasswordHash(
+      String password, String salt, String algorithm, int iterations) {
     try {
       // Декодируем соль из Base64
       byte[] saltByteArray = Base64.getDecoder().decode(salt);
 
       PBEKeySpec spec =
-          new PBEKeySpec(password.toCharArray(), saltByteArray, ITERATIONS, HASH_LENGTH);
+          new PBEKeySpec(password.toCharArray(), saltByteArray, iterations, HASH_LENGTH);
 
-      SecretKeyFactory factory = SecretKeyFactory.getInstance(ALGORITHM);
+      SecretKeyFactory factory = secretKeyFactories.get().get(algorithm);
+      if (factory == null) {
+        factory = SecretKeyFactory.getInstance(algorithm);
+        secretKeyFactories.get().put(algorithm, factory);
+      }
       // Генерируем сам хэш
       byte[] hash = factory.generateSecret(spec).getEncoded();
+      spec.clearPassword();
 
       return Base64.getEncoder().encodeToString(hash);
 
@@ -41,6 +76,72 @@ public class PasswordHasher {
     }
   }
 
+  /** Метод проверяет, что указанный алгоритм хэширования доступен в текущей среде выполнения. */
+  public static boolean isSupportedAlgorithm(String algorithm) {
+    if (algorithm == null || algorithm.isBlank()) {
+      return false;
+    }
+    if (secretKeyFactories.get().containsKey(algorithm)) {
+      return true;
+    }
+    try {
+      secretKeyFactories.get().put(algorithm, SecretKeyFactory.getInstance(algorithm));
+      return true;
+    } catch (NoSuchAlgorithmException e) {
+      return false;
+    }
+  }
+
+  /** Метод возвращает алгоритм, используемый для новых хэшей. */
+  public static String getCurrentAlgorithm() {
+    return DEFAULT_ALGORITHM;
+  }
+
+  /** Метод возвращает количество итераций, используемое для новых хэшей. */
+  public static int getCurrentIterations() {
+    return currentIterations;
+  }
+
+  /** Метод задаёт количество итераций для новых хэшей. Не может быть меньше MIN_ITERATIONS. */
+  public static void setCurrentIterations(int iterations) {
+    if (iterations < MIN_ITERATIONS) {
+      throw new IllegalArgumentException(
+          "Количество итераций хэширования паролей не может быть меньше " + MIN_ITERATIONS + ".");
+    }
+    currentIterations = iterations;
+  }
+
+  /**
+   * Метод подбирает количество итераций, при котором вычисление одного хэша на текущем оборудовании
+   * занимает примерно указанное время, и задаёт его для новых хэшей. Результат округляется до
+   * CALIBRATED_ITERATIONS_STEP, чтобы небольшие колебания замеров между запусками не делали хэши
+   * пользователей устаревшими, и не может быть меньше MIN_ITERATIONS.
+   */
+  public static int calibrateIterations(long targetMillis) {
+    if (targetMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Время вычисления хэша пароля должно быть положительным числом.");
+    }
+    String salt = SaltGenerator.makeSalt();
+    // Первое вычисление прогревает JIT-компилятор и создаёт SecretKeyFactory, его не замеряем
+    makePasswordHash("calibration", salt, DEFAULT_ALGORITHM, CALIBRATION_ITERATIONS);
+    long fastestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+      long start = System.nanoTime();
+      makePasswordHash("calibration", salt, DEFAULT_ALGORITHM, CALIBRATION_ITERATIONS);
+      fastestNanos = Math.min(fastestNanos, Math.max(1, System.nanoTime() - start));
+    }
+    double iterations =
+        (double) CALIBRATION_ITERATIONS
+            * TimeUnit.MILLISECONDS.toNanos(targetMillis)
+            / fastestNanos;
+    long roundedIterations =
+        Math.round(iterations / CALIBRATED_ITERATIONS_STEP) * CALIBRATED_ITERATIONS_STEP;
+    setCurrentIterations(
+        (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_ITERATIONS, roundedIterations)));
+    return currentIterations;
+  }
+
   /**
    * Метод для получения уникальной соли при регистрации пользователя для более безопасного
    * вычисления хэша на основе неё и пароля.
@@ -0,0 +1,137 @@
+package com.github.yuyuvu.personalbudgetingapp.appservices;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Класс PasswordHashingService выполняет вычисление хэшей паролей (PasswordHasher) в пуле потоков,
+ * размер которого равен количеству ядер процессора. В режиме сервера много одновременных
+ * регистраций и входов в аккаунт не занимают больше ядер, чем есть, а ждут своей очереди. <br>
+ * Очередь пула ограничена MAX_QUEUED_HASHINGS. Если пул и очередь заполнены, то новый запрос ждёт,
+ * пока освободится место (семафор на HASHING_THREADS + MAX_QUEUED_HASHINGS мест), и сам хэш не
+ * вычисляет: так новые запросы замедляются, а число одновременно вычисляемых хэшей не превышает
+ * количества ядер. Ожидание на семафоре не занимает несущие потоки виртуальных потоков. <br>
+ * Для наблюдения за нагрузкой есть методы, возвращающие длину очереди и счётчики вычислений.
+ */
+public class PasswordHashingService {
+  private static final int HASHING_THREADS = Runtime.getRuntime().availableProcessors();
+  private static final int MAX_QUEUED_HASHINGS = HASHING_THREADS * 32;
+
+  // Места в пуле и его очереди: запрос занимает место до завершения вычисления хэша, поэтому
+  // очередь пула никогда не переполняется
+  private static final Semaphore hashingSlots =
+      new Semaphore(HASHING_THREADS + MAX_QUEUED_HASHINGS, true);
+  private static final AtomicLong hashingsWaitedForSlotCount = new AtomicLong();
+  private static final ThreadPoolExecutor hashingExecutor =
+      new ThreadPoolExecutor(
+          HASHING_THREADS,
+          HASHING_THREADS,
+          0L,
+          TimeUnit.MILLISECONDS,
+          // Вместимость очереди равна числу мест семафора: место освобождается, когда хэш уже
+          // вычислен, но поток пула ещё не взял следующую задачу, и очередь не должна переполниться
+          new ArrayBlockingQueue<>(HASHING_THREADS + MAX_QUEUED_HASHINGS),
+          makeHashingThreadFactory());
+
+  /**
+   * Метод ставит вычисление хэша в очередь пула и возвращает его будущий результат. Если пул и
+   * очередь заполнены, то сначала ждёт, пока в них освободится место.
+   */
+  public static CompletableFuture<String> makePasswordHashAsync(String password, String salt) {
+    return submitHashing(() -> PasswordHasher.makePasswordHash(password, salt));
+  }
+
+  /**
+   * Метод ставит вычисление хэша с указанными алгоритмом и количеством итераций в очередь пула и
+   * возвращает его будущий результат. Если пул и очередь заполнены, то сначала ждёт, пока в них
+   * освободится место.
+   */
+  public static CompletableFuture<String> makePasswordHashAsync(
+      String password, String salt, String algorithm, int iterations) {
+    return submitHashing(
+        () -> PasswordHasher.makePasswordHash(password, salt, algorithm, iterations));
+  }
+
+  /** Метод занимает место в пуле и его очереди, ставит вычисление в очередь и освобождает место. */
+  private static CompletableFuture<String> submitHashing(Supplier<String> hashing) {
+    if (!hashingSlots.tryAcquire()) {
+      hashingsWaitedForSlotCount.incrementAndGet();
+      hashingSlots.acquireUninterruptibly();
+    }
+    try {
+      return CompletableFuture.supplyAsync(hashing, hashingExecutor)
+          .whenComplete((hash, e) -> hashingSlots.release());
+    } catch (RuntimeException e) {
+      hashingSlots.release();
+      throw e;
+    }
+  }
+
+  /** Метод вычисляет хэш в пуле потоков и ожидает результата. */
+  public static String makePasswordHash(String password, String salt) {
+    return awaitHash(makePasswordHashAsync(password, salt));
+  }
+
+  /** Метод вычисляет хэш с указанными параметрами в пуле потоков и ожидает результата. */
+  public static String makePasswordHash(
+      String password, String salt, String algorithm, int iterations) {
+    return awaitHash(makePasswordHashAsync(password, salt, algorithm, iterations));
+  }
+
+  private static String awaitHash(CompletableFuture<String> hash) {
+    try {
+      return hash.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /** Метод возвращает количество вычислений хэшей, ожидающих в очереди. */
+  public static int getQueueDepth() {
+    return hashingExecutor.getQueue().size();
+  }
+
+  /** Метод возвращает количество хэшей, вычисляемых прямо сейчас потоками пула. */
+  public static int getActiveHashingsCount() {
+    return hashingExecutor.getActiveCount();
+  }
+
+  /** Метод возвращает количество хэшей, вычисленных потоками пула с момента запуска. */
+  public static long getCompletedHashingsCount() {
+    return hashingExecutor.getCompletedTaskCount();
+  }
+
+  /** Метод возвращает количество запросов, ожидающих места в пуле и его очереди прямо сейчас. */
+  public static int getWaitingForSlotCount() {
+    return hashingSlots.getQueueLength();
+  }
+
+  /**
+   * Метод возвращает количество запросов, которым с момента запуска пришлось ждать места в пуле и
+   * его очереди.
+   */
+  public static long getHashingsWaitedForSlotCount() {
+    return hashingsWaitedForSlotCount.get();
+  }
+
+  /** Потоки пула - демоны, чтобы не мешать выключению приложения. */
+  private static ThreadFactory makeHashingThreadFactory() {
+    AtomicInteger threadsCount = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, "password-hashing-" + threadsCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -5,8 +5,11 @@ import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.p
 import com.github.yuyuvu.personalbudgetingapp.exceptions.SnapshotException;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
-import java.io.IOException;
-import java.io.StringWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import tools.jackson.core.JacksonException;
@@ -17,25 +20,33 @@ import tools.jackson.databind.ObjectMapper;
  * Класс SnapshotsService хранит методы для сериализации всего кошелька или отдельных его частей
  * (списков доходов, расходов или хэш-таблицы лимитов по категориям) в снимки состояния в формате
  * json, а также для десериализации обратно: в Wallet, ArrayList или HashMap. Валидирует форматы
- * импортируемых отчётов.
+ * импортируемых отчётов. <br>
+ * Снимки записываются в поток и читаются из потока в кодировке UTF-8 без промежуточной строки со
+ * всем содержимым файла. Методы, работающие со строками, оставлены для тестов и небольших данных.
  */
 public class SnapshotsService {
   private static final ObjectMapper jsonObjectMapper = new ObjectMapper();
 
+  private static final String incorrectSnapshotFormatMessage =
+      """
+                    Проблемы с загрузкой содержимого снимка состояния.
+                    Файл содержит некорректный формат снимка состояния.
+                    Вы должны загружать снимок только соответствующего типа (весь кошелёк, доходы, расходы или бюджеты). Нельзя загружать другой тип.""";
+
   /**
    * Метод сериализует данные всего кошелька в строку в формате json, создавая содержимое для
    * частичного снимка состояния.
    */
   public static String makeTotalExportContents(Wallet wallet) throws SnapshotException {
-    String result;
-    try (StringWriter resultWriter = new StringWriter()) {
-      jsonObjectMapper.writeValue(resultWriter, wallet);
-      result = resultWriter.toString();
-    } catch (IOException | JacksonException e) {
-      throw new SnapshotException(
-          "Проблемы с формированием содержимого снапшота: " + e.getMessage());
-    }
-    return result;
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    writeTotalExportContents(wallet, result);
+    return result.toString(StandardCharsets.UTF_8);
+  }
+
+  /** Метод сериализует данные всего кошелька в формате json сразу в переданный поток. */
+  public static void writeTotalExportContents(Wallet wallet, OutputStream out)
+      throws SnapshotException {
+    writeExportContents(wallet, out);
   }
 
   /**
@@ -43,15 +54,15 @@ public class SnapshotsService {
    * содержимое для частичного снимка состояния.
    */
   public static String makeOnlyIncomeExportContents(Wallet wallet) throws SnapshotException {
-    String result;
-    try (StringWriter resultWriter = new StringWriter()) {
-      jsonObjectMapper.writeValue(resultWriter, wallet.getIncomeWalletOperations());
-      result = resultWriter.toString();
-    } catch (IOException | JacksonException e) {
-      throw new SnapshotException(
-          "Проблемы с формированием содержимого снапшота: " + e.getMessage());
-    }
-    return result;
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    writeOnlyIncomeExportContents(wallet, result);
+    return result.toString(StandardCharsets.UTF_8);
+  }
+
+  /** Метод сериализует только операции дохода в формате json сразу в переданный поток. */
+  public static void writeOnlyIncomeExportContents(Wallet wallet, OutputStream out)
+      throws SnapshotException {
+    writeExportContents(wallet.getIncomeWalletOperations(), out);
   }
 
   /**
@@ -59,15 +70,15 @@ public class SnapshotsService {
    * содержимое для частичного снимка состояния.
    */
   public static String makeOnlyExpensesExportContents(Wallet wallet) throws SnapshotException {
-    String result;
-    try (StringWriter resultWriter = new StringWriter()) {
-      jsonObjectMapper.writeValue(resultWriter, wallet.getExpensesWalletOperations());
-      result = resultWriter.toString();
-    } catch (IOException | JacksonException e) {
-      throw new SnapshotException(
-          "Проблемы с формированием содержимого снапшота: " + e.getMessage());
-    }
-    return result;
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    writeOnlyExpensesExportContents(wallet, result);
+    return result.toString(StandardCharsets.UTF_8);
+  }
+
+  /** Метод сериализует только операции расхода в формате json сразу в переданный поток. */
+  public static void writeOnlyExpensesExportContents(Wallet wallet, OutputStream out)
+      throws SnapshotException {
+    writeExportContents(wallet.getExpensesWalletOperations(), out);
   }
 
   /**
@@ -75,15 +86,29 @@ public class SnapshotsService {
    * создавая содержимое для снимка состояния.
    */
   public static String makeOnlyBudgetsExportContents(Wallet wallet) throws SnapshotException {
-    String result;
-    try (StringWriter resultWriter = new StringWriter()) {
-      jsonObjectMapper.writeValue(resultWriter, wallet.getBudgetCategoriesAndLimits());
-      result = resultWriter.toString();
-    } catch (IOException | JacksonException e) {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    writeOnlyBudgetsExportContents(wallet, result);
+    return result.toString(StandardCharsets.UTF_8);
+  }
+
+  /** Метод сериализует только бюджеты по категориям расхода сразу в переданный поток. */
+  public static void writeOnlyBudgetsExportContents(Wallet wallet, OutputStream out)
+      throws SnapshotException {
+    writeExportContents(wallet.getBudgetCategoriesAndLimits(), out);
+  }
+
+  /**
+   * Общий метод записи содержимого снимка в поток. Jackson пишет json в поток по мере обхода
+   * объекта, не собирая весь снимок в памяти.
+   */
+  private static void writeExportContents(Object contents, OutputStream out)
+      throws SnapshotException {
+    try {
+      jsonObjectMapper.writeValue(out, contents);
+    } catch (JacksonException e) {
       throw new SnapshotException(
           "Проблемы с формированием содержимого снапшота: " + e.getMessage());
     }
-    return result;
   }
 
   /**
@@ -92,20 +117,22 @@ public class SnapshotsService {
    */
   public static void importTotalSnapshot(User user, String snapshotContents)
       throws SnapshotException {
+    importTotalSnapshot(user, toInputStream(snapshotContents));
+  }
+
+  /**
+   * Метод десериализует данные всего кошелька из потока, читая содержимое для импорта снимка
+   * состояния. Формат проверяется при чтении: снимок всего кошелька обязан содержать список
+   * операций и бюджеты (см. конструктор Wallet для Jackson). Далее текущий кошелёк пользователя
+   * заменяется прочитанным.
+   */
+  public static void importTotalSnapshot(User user, InputStream snapshotContents)
+      throws SnapshotException {
     Wallet readWalletData;
     try {
       readWalletData = jsonObjectMapper.readValue(snapshotContents, Wallet.class);
-      // Проверка формата отчёта
-      if (jsonObjectMapper.readTree(snapshotContents).get("balance").toString() == null) {
-        throw new NullPointerException();
-      }
-    } catch (JacksonException | NullPointerException e) {
-      throw new SnapshotException(
-          paintRed(
-              """
-                    Проблемы с загрузкой содержимого снимка состояния.
-                    Файл содержит некорректный формат снимка состояния.
-                    Вы должны загружать снимок только соответствующего типа (весь кошелёк, доходы, расходы или бюджеты). Нельзя загружать другой тип."""));
+    } catch (JacksonException e) {
+      throw new SnapshotException(paintRed(incorrectSnapshotFormatMessage));
     }
     user.setWallet(readWalletData);
   }
@@ -117,6 +144,15 @@ public class SnapshotsService {
    */
   public static void importOnlyIncomeSnapshot(User user, String snapshotContents)
       throws SnapshotException {
+    importOnlyIncomeSnapshot(user, toInputStream(snapshotContents));
+  }
+
+  /**
+   * Метод десериализует только операции дохода из потока, читая содержимое для импорта частичного
+   * снимка состояния. Далее старые операции дохода в текущем кошельке заменяются прочитанными.
+   */
+  public static void importOnlyIncomeSnapshot(User user, InputStream snapshotContents)
+      throws SnapshotException {
     ArrayList<Wallet.WalletOperation> readWalletIncomeOperations;
     try {
       TypeReference<ArrayList<Wallet.WalletOperation>> tr =
@@ -126,12 +162,7 @@ public class SnapshotsService {
         throw new SnapshotException("Не тот формат снимка состояния. Предоставлены расходы.");
       }
     } catch (JacksonException | SnapshotException e) {
-      throw new SnapshotException(
-          paintRed(
-              """
-                    Проблемы с загрузкой содержимого снимка состояния.
-                    Файл содержит некорректный формат снимка состояния.
-                    Вы должны загружать снимок только соответствующего типа (весь кошелёк, доходы, расходы или бюджеты). Нельзя загружать другой тип."""));
+      throw new SnapshotException(paintRed(incorrectSnapshotFormatMessage));
     }
     ArrayList<Wallet.WalletOperation> tempSaveExpenses =
         user.getWallet().getExpensesWalletOperations();
@@ -147,6 +178,15 @@ public class SnapshotsService {
    */
   public static void importOnlyExpensesSnapshot(User user, String snapshotContents)
       throws SnapshotException {
+    importOnlyExpensesSnapshot(user, toInputStream(snapshotContents));
+  }
+
+  /**
+   * Метод десериализует только операции расхода из потока, читая содержимое для импорта частичного
+   * снимка состояния. Далее старые операции расхода в текущем кошельке заменяются прочитанными.
+   */
+  public static void importOnlyExpensesSnapshot(User user, InputStream snapshotContents)
+      throws SnapshotException {
     ArrayList<Wallet.WalletOperation> readWalletExpensesOperations;
     try {
       TypeReference<ArrayList<Wallet.WalletOperation>> tr =
@@ -156,12 +196,7 @@ public class SnapshotsService {
         throw new SnapshotException("Не тот формат снимка состояния. Предоставлены доходы.");
       }
     } catch (JacksonException e) {
-      throw new SnapshotException(
-          paintRed(
-              """
-                    Проблемы с загрузкой содержимого снимка состояния.
-                    Файл содержит некорректный формат снимка состояния.
-                    Вы должны загружать снимок только соответствующего типа (весь кошелёк, доходы, расходы или бюджеты). Нельзя загружать другой тип."""));
+      throw new SnapshotException(paintRed(incorrectSnapshotFormatMessage));
     }
     ArrayList<Wallet.WalletOperation> tempSaveIncome = user.getWallet().getIncomeWalletOperations();
     user.getWallet().getWalletOperations().clear();
@@ -176,19 +211,28 @@ public class SnapshotsService {
    */
   public static void importOnlyBudgetsSnapshot(User user, String snapshotContents)
       throws SnapshotException {
+    importOnlyBudgetsSnapshot(user, toInputStream(snapshotContents));
+  }
+
+  /**
+   * Метод десериализует только бюджеты по расходам из потока, читая содержимое для импорта
+   * частичного снимка состояния. Далее имеющиеся бюджеты по расходам в текущем кошельке заменяются
+   * прочитанными.
+   */
+  public static void importOnlyBudgetsSnapshot(User user, InputStream snapshotContents)
+      throws SnapshotException {
     HashMap<String, Double> readWalletBudgets;
     try {
       TypeReference<HashMap<String, Double>> tr = new TypeReference<HashMap<String, Double>>() {};
       readWalletBudgets = jsonObjectMapper.readValue(snapshotContents, tr);
     } catch (JacksonException e) {
-      throw new SnapshotException(
-          paintRed(
-              """
-                    Проблемы с загрузкой содержимого снимка состояния.
-                    Файл содержит некорректный формат снимка состояния.
-                    Вы должны загружать снимок только соответствующего типа (весь кошелёк, доходы, расходы или бюджеты). Нельзя загружать другой тип."""));
+      throw new SnapshotException(paintRed(incorrectSnapshotFormatMessage));
     }
     user.getWallet().getBudgetCategoriesAndLimits().clear();
     user.getWallet().getBudgetCategoriesAndLimits().putAll(readWalletBudgets);
   }
+
+  private static InputStream toInputStream(String snapshotContents) {
+    return new ByteArrayInputStream(snapshotContents.getBytes(StandardCharsets.UTF_8));
+  }
 }
@@ -7,11 +7,12 @@ import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.p
 import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.paintYellow;
 import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.resetColor;
 
+import com.github.yuyuvu.personalbudgetingapp.model.Money;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -393,14 +394,15 @@ public class AnalyticsService {
 
   /**
    * Метод собирает отчёт-сводку по всем категориям и операциям кошелька с фильтрацией операций по
-   * периоду.
+   * периоду. Все данные для отчёта собираются за один проход по операциям периода (см.
+   * PeriodSummary).
    */
   public static String makeSummaryByPeriod(
       Wallet wallet, LocalDateTime periodStart, LocalDateTime periodEnd) {
     StringBuilder result = new StringBuilder();
     result.append("\n");
-    if (WalletOperationsService.getWalletOperationsByPeriod(wallet, periodStart, periodEnd)
-        .isEmpty()) {
+    PeriodSummary summary = PeriodSummary.collect(wallet, periodStart, periodEnd);
+    if (summary.isEmpty()) {
       result
           .append(paintYellow("Нет добавленных операций дохода или расхода за указанный период."))
           .append("\n");
@@ -411,91 +413,75 @@ public class AnalyticsService {
     }
 
     // Сводка за период по доходам
-    ArrayList<Wallet.WalletOperation> incomeOperationsDuringPeriod =
-        WalletOperationsService.getWalletOperationsByTypeAndPeriod(
-            wallet, true, periodStart, periodEnd);
     result
         .append(
             paintGreen(
                 String.format(
                     "Общие доходы за указанный период: %s%.2f",
-                    resetColor(),
-                    WalletOperationsService.getWalletOperationsAmountsSum(
-                        incomeOperationsDuringPeriod, true))))
+                    resetColor(), Money.toAmount(summary.totalIncome))))
         .append("\n");
     result.append(paintCyan("Доходы по категориям за указанный период:")).append("\n");
-    if (incomeOperationsDuringPeriod.isEmpty()) {
+    if (summary.incomeOperations.isEmpty()) {
       result
           .append(paintYellow("\tНет учтённых операций дохода за указанный период."))
           .append("\n");
     } else {
-      for (String category : wallet.getWalletOperationsIncomeCategories()) {
-        ArrayList<Wallet.WalletOperation> foundOperations =
-            WalletOperationsService.getWalletOperationsByTypeAndPeriodAndCategory(
-                wallet, true, category, periodStart, periodEnd);
-        if (!foundOperations.isEmpty()) {
-          result
-              .append(
-                  paintYellow(
-                      String.format(
-                          "\t- %s: %.2f",
-                          capitalizeFirstLetter(category),
-                          WalletOperationsService.getWalletOperationsAmountsSum(
-                              foundOperations, true))))
-              .append("\n");
-        }
-      }
+      appendCategoriesTotals(result, summary.incomeByCategories);
     }
 
     // Сводка за период по расходам
-    ArrayList<Wallet.WalletOperation> expensesOperationsDuringPeriod =
-        WalletOperationsService.getWalletOperationsByTypeAndPeriod(
-            wallet, false, periodStart, periodEnd);
     result
         .append(
             paintGreen(
                 String.format(
                     "Общие расходы за указанный период: %s%.2f",
-                    resetColor(),
-                    WalletOperationsService.getWalletOperationsAmountsSum(
-                        expensesOperationsDuringPeriod, false))))
+                    resetColor(), Money.toAmount(summary.totalExpenses))))
         .append("\n");
     result.append(paintCyan("Расходы по категориям за указанный период:")).append("\n");
-    if (expensesOperationsDuringPeriod.isEmpty()) {
+    if (summary.expensesOperations.isEmpty()) {
       result
           .append(paintYellow("\tНет учтённых операций расхода за указанный период."))
           .append("\n");
     } else {
-      for (String category : wallet.getWalletOperationsExpensesCategories()) {
-        ArrayList<Wallet.WalletOperation> foundOperations =
-            WalletOperationsService.getWalletOperationsByTypeAndPeriodAndCategory(
-                wallet, false, category, periodStart, periodEnd);
-        if (!foundOperations.isEmpty()) {
-          result
-              .append(
-                  paintYellow(
-                      String.format(
-                          "\t- %s: %.2f",
-                          capitalizeFirstLetter(category),
-                          WalletOperationsService.getWalletOperationsAmountsSum(
-                              foundOperations, false))))
-              .append("\n");
-        }
-      }
+      appendCategoriesTotals(result, summary.expensesByCategories);
     }
 
-    // Список всех операций за период
+    // Список всех операций за период: сначала доходы, затем расходы, внутри типа - по дате
     result
         .append(
             paintCyan(
                 "Список всех учтённых операций дохода или расхода за указанный период "
                     + "(отсортированы по типу и дате):"))
         .append("\n");
-    for (Wallet.WalletOperation wo :
-        WalletOperationsService.getWalletOperationsByPeriod(wallet, periodStart, periodEnd).stream()
-            .sorted(Comparator.comparing(Wallet.WalletOperation::getDateTime))
-            .sorted(Comparator.comparing(Wallet.WalletOperation::isIncome).reversed())
-            .toList()) {
+    DateTimeFormatter formatter =
+        DateTimeFormatter.ofPattern("E dd.MM.uuuu HH:mm")
+            .withLocale(Locale.forLanguageTag("ru-RU"));
+    appendPeriodWalletOperations(result, summary.incomeOperations, formatter);
+    appendPeriodWalletOperations(result, summary.expensesOperations, formatter);
+    return result.toString();
+  }
+
+  /** Метод добавляет в отчёт строки с суммами по категориям (суммы переданы в копейках). */
+  private static void appendCategoriesTotals(
+      StringBuilder result, Map<String, Long> categoriesTotals) {
+    for (Map.Entry<String, Long> categoryTotal : categoriesTotals.entrySet()) {
+      result
+          .append(
+              paintYellow(
+                  String.format(
+                      "\t- %s: %.2f",
+                      capitalizeFirstLetter(categoryTotal.getKey()),
+                      Money.toAmount(categoryTotal.getValue()))))
+          .append("\n");
+    }
+  }
+
+  /** Метод добавляет в отчёт строки с отдельными операциями за период. */
+  private static void appendPeriodWalletOperations(
+      StringBuilder result,
+      ArrayList<Wallet.WalletOperation> walletOperations,
+      DateTimeFormatter formatter) {
+    for (Wallet.WalletOperation wo : walletOperations) {
       result
           .append(
               paintYellow(
@@ -505,13 +491,49 @@ public class AnalyticsService {
                       (wo.isIncome() ? "Доход" : "Расход"),
                       capitalizeFirstLetter(wo.getCategory()),
                       wo.getAmount(),
-                      wo.getDateTime()
-                          .format(
-                              DateTimeFormatter.ofPattern("E dd.MM.uuuu HH:mm")
-                                  .withLocale(Locale.forLanguageTag("ru-RU"))))))
+                      wo.getDateTime().format(formatter))))
           .append("\n");
     }
-    return result.toString();
+  }
+
+  /**
+   * Данные для отчёта по периоду, собранные за один проход по операциям периода: итоговые суммы по
+   * типам и суммы по категориям в копейках (категории - в порядке первого появления в периоде), а
+   * также списки операций каждого типа. Операции периода приходят из индекса кошелька уже
+   * упорядоченными по дате, поэтому списки не нужно дополнительно сортировать.
+   */
+  static final class PeriodSummary {
+    private long totalIncome;
+    private long totalExpenses;
+    private final LinkedHashMap<String, Long> incomeByCategories = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Long> expensesByCategories = new LinkedHashMap<>();
+    private final ArrayList<Wallet.WalletOperation> incomeOperations = new ArrayList<>();
+    private final ArrayList<Wallet.WalletOperation> expensesOperations = new ArrayList<>();
+
+    /** Метод собирает данные отчёта по периоду за один проход. */
+    static PeriodSummary collect(
+        Wallet wallet, LocalDateTime periodStart, LocalDateTime periodEnd) {
+      PeriodSummary summary = new PeriodSummary();
+      WalletOperationsService.streamWalletOperationsByPeriod(wallet, periodStart, periodEnd)
+          .forEach(summary::accept);
+      return summary;
+    }
+
+    private void accept(Wallet.WalletOperation wo) {
+      if (wo.isIncome()) {
+        totalIncome += wo.getAmountInMinorUnits();
+        incomeByCategories.merge(wo.getCategory(), wo.getAmountInMinorUnits(), Long::sum);
+        incomeOperations.add(wo);
+      } else {
+        totalExpenses += wo.getAmountInMinorUnits();
+        expensesByCategories.merge(wo.getCategory(), wo.getAmountInMinorUnits(), Long::sum);
+        expensesOperations.add(wo);
+      }
+    }
+
+    private boolean isEmpty() {
+      return incomeOperations.isEmpty() && expensesOperations.isEmpty();
+    }
   }
 
   /**
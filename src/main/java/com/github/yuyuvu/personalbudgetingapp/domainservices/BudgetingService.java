@@ -1,14 +1,15 @@
 package com.github.yuyuvu.personalbudgetingapp.domainservices;
 
-import static com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsService.getExpensesByCategory;
-
+import com.github.yuyuvu.personalbudgetingapp.model.Money;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 
 /**
  * Класс отвечает за логику приложения, связанную с управлением бюджетами по категориям расходов. В
  * нём содержатся методы для установления и изменения лимитов по категориям расходов. Также при
  * помощи его методов можно получить значение лимита, остаток лимита, проверить наличие лимита по
- * одной или нескольким категориям расходов.
+ * одной или нескольким категориям расходов. <br>
+ * Лимиты округляются до копеек при установке, а остатки считаются в копейках (см. Money), поэтому
+ * нулевой остаток бюджета определяется точным сравнением с нулём.
  */
 public class BudgetingService {
 
@@ -24,7 +25,7 @@ public class BudgetingService {
   public static void addNewExpensesCategoryLimit(Wallet wallet, String newCategory, double newLimit)
       throws IllegalArgumentException {
     if (newLimit >= 0) {
-      wallet.getBudgetCategoriesAndLimits().put(newCategory, newLimit);
+      wallet.getBudgetCategoriesAndLimits().put(newCategory, Money.round(newLimit));
     } else {
       throw new IllegalArgumentException(
           "Лимит должен быть больше нуля или равен ему. Невозможно добавить лимит.");
@@ -55,7 +56,7 @@ public class BudgetingService {
       throws IllegalArgumentException {
     if (checkExpensesCategoryLimitExistence(wallet, category)) {
       if (newLimit >= 0) {
-        wallet.getBudgetCategoriesAndLimits().put(category, newLimit);
+        wallet.getBudgetCategoriesAndLimits().put(category, Money.round(newLimit));
       } else {
         throw new IllegalArgumentException(
             "Новый лимит должен быть больше нуля или равен ему. Невозможно изменить лимит.");
@@ -79,21 +80,27 @@ public class BudgetingService {
     }
   }
 
+  /** Метод возвращает значение лимита по определённой категории расходов в копейках. */
+  public static long getLimitByCategoryInMinorUnits(Wallet wallet, String category)
+      throws IllegalArgumentException {
+    return Money.toMinorUnits(getLimitByCategory(wallet, category));
+  }
+
   /** Метод возвращает значение суммарного лимита по нескольким категориям расходов. */
   public static double getLimitByCategories(
       Wallet wallet, boolean sensibleToErrors, String... categories)
       throws IllegalArgumentException {
-    double result = 0.0;
+    long result = 0;
     for (String category : categories) {
       try {
-        result += getLimitByCategory(wallet, category);
+        result += getLimitByCategoryInMinorUnits(wallet, category);
       } catch (IllegalArgumentException e) {
         if (sensibleToErrors) {
           throw e;
         }
       }
     }
-    return result;
+    return Money.toAmount(result);
   }
 
   /**
@@ -102,8 +109,17 @@ public class BudgetingService {
    */
   public static double getRemainderByCategory(Wallet wallet, String category)
       throws IllegalArgumentException {
-    double limit = getLimitByCategory(wallet, category);
-    double alreadySpent = getExpensesByCategory(wallet, category);
+    return Money.toAmount(getRemainderByCategoryInMinorUnits(wallet, category));
+  }
+
+  /**
+   * Метод возвращает точное значение остатка возможных трат до израсходования лимита по
+   * определённой категории расходов в копейках.
+   */
+  public static long getRemainderByCategoryInMinorUnits(Wallet wallet, String category)
+      throws IllegalArgumentException {
+    long limit = getLimitByCategoryInMinorUnits(wallet, category);
+    long alreadySpent = wallet.getCategoryTotalInMinorUnits(false, category);
     return limit - alreadySpent;
   }
 
@@ -113,16 +129,16 @@ public class BudgetingService {
    */
   public static double getRemainderByCategories(
       Wallet wallet, boolean sensibleToErrors, String... categories) {
-    double result = 0.0;
+    long result = 0;
     for (String category : categories) {
       try {
-        result += getRemainderByCategory(wallet, category);
+        result += getRemainderByCategoryInMinorUnits(wallet, category);
       } catch (IllegalArgumentException e) {
         if (sensibleToErrors) {
           throw e;
         }
       }
     }
-    return result;
+    return Money.toAmount(result);
   }
 }
@@ -6,6 +6,7 @@ import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.p
 import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.paintRed;
 import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.paintYellow;
 
+import com.github.yuyuvu.personalbudgetingapp.model.Money;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.util.ArrayList;
 
@@ -48,11 +49,9 @@ public class NotificationsService {
   public static String checkBalanceConsumption(Wallet wallet) {
     StringBuilder result = new StringBuilder();
     boolean noOperations =
-        wallet.getIncomeWalletOperations().isEmpty()
-            && wallet.getExpensesWalletOperations().isEmpty();
+        !wallet.hasIncomeWalletOperations() && !wallet.hasExpensesWalletOperations();
     boolean allTypesOfOperationsPresent =
-        !wallet.getIncomeWalletOperations().isEmpty()
-            && !wallet.getExpensesWalletOperations().isEmpty();
+        wallet.hasIncomeWalletOperations() && wallet.hasExpensesWalletOperations();
     if (noOperations) {
       result
           .append(
@@ -71,11 +70,11 @@ public class NotificationsService {
                           + "У вас отрицательный баланс.",
                       wallet.getTotalExpenses() / wallet.getTotalIncome())))
           .append("\n");
-    } else if (wallet.getBalance() < 0.0) {
+    } else if (wallet.getBalanceInMinorUnits() < 0) {
       result
           .append(paintRed("- Ваши расходы превысили ваши доходы. У вас отрицательный баланс."))
           .append("\n");
-    } else if (Math.round(wallet.getBalance()) == 0) {
+    } else if (wallet.getBalanceInMinorUnits() == 0) {
       result
           .append(paintRed("- Ваши расходы достигли величины ваших доходов. У вас нулевой баланс."))
           .append("\n");
@@ -150,13 +149,16 @@ public class NotificationsService {
     StringBuilder result = new StringBuilder();
     ArrayList<String> restrictedCategories = new ArrayList<>();
     for (String category : wallet.getBudgetCategoriesAndLimits().keySet()) {
-      double remainderByCategory = BudgetingService.getRemainderByCategory(wallet, category);
+      long remainderInMinorUnits =
+          BudgetingService.getRemainderByCategoryInMinorUnits(wallet, category);
+      double remainderByCategory = Money.toAmount(remainderInMinorUnits);
       double limitByCategory = BudgetingService.getLimitByCategory(wallet, category);
       double expensesByCategory = WalletOperationsService.getExpensesByCategory(wallet, category);
-      if (Math.round(limitByCategory) == 0) {
+      boolean isRestricted = BudgetingService.getLimitByCategoryInMinorUnits(wallet, category) == 0;
+      if (isRestricted) {
         restrictedCategories.add(category);
       }
-      if (remainderByCategory < 0) {
+      if (remainderInMinorUnits < 0) {
         result
             .append(
                 paintRed(
@@ -168,7 +170,7 @@ public class NotificationsService {
                         limitByCategory,
                         Math.abs(remainderByCategory))))
             .append("\n");
-      } else if (Math.round(remainderByCategory) == 0 && Math.round(limitByCategory) != 0) {
+      } else if (remainderInMinorUnits == 0 && !isRestricted) {
         result
             .append(
                 paintRed(
@@ -1,12 +1,23 @@
 package com.github.yuyuvu.personalbudgetingapp.domainservices;
 
 import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
+import com.github.yuyuvu.personalbudgetingapp.model.Money;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Класс отвечает за основную логику приложения, связанную с доходами и расходами. В нём содержатся
@@ -17,6 +28,17 @@ import java.util.stream.Collectors;
  * суммы по срезам операций.
  */
 public class WalletOperationsService {
+  // Наибольшее количество получателей пакетных переводов, обрабатываемых одновременно
+  private static final int BATCH_TRANSFER_THREADS = 8;
+  // Общий для всех пакетных переводов пул потоков, ограниченный BATCH_TRANSFER_THREADS
+  private static final ExecutorService batchTransferExecutor =
+      Executors.newFixedThreadPool(
+          BATCH_TRANSFER_THREADS,
+          task -> {
+            Thread thread = new Thread(task, "batch-transfer");
+            thread.setDaemon(true);
+            return thread;
+          });
 
   /*
    * Методы для изменения списка операций, влияющие на данные кошелька
@@ -24,12 +46,13 @@ public class WalletOperationsService {
 
   /**
    * Метод добавляет доход определённой категории и суммы в основной список всех операций кошелька.
-   * Каждой операции также присваивается дата, время и ID.
+   * Каждой операции также присваивается дата, время и ID. Сумма округляется до копеек и после
+   * округления должна быть больше нуля.
    */
   public static void addIncome(
       Wallet wallet, double amount, String category, LocalDateTime dateTime)
       throws IllegalArgumentException {
-    if (amount <= 0) {
+    if (Money.toMinorUnits(amount) <= 0) {
       throw new IllegalArgumentException("Сумма операции должна быть больше нуля.");
     }
     wallet
@@ -39,12 +62,13 @@ public class WalletOperationsService {
 
   /**
    * Метод добавляет расход определённой категории и суммы в основной список всех операций кошелька.
-   * Каждой операции также присваивается дата, время и ID.
+   * Каждой операции также присваивается дата, время и ID. Сумма округляется до копеек и после
+   * округления должна быть больше нуля.
    */
   public static void addExpense(
       Wallet wallet, double amount, String category, LocalDateTime dateTime)
       throws IllegalArgumentException {
-    if (amount <= 0) {
+    if (Money.toMinorUnits(amount) <= 0) {
       throw new IllegalArgumentException("Сумма операции должна быть больше нуля.");
     }
     wallet
@@ -55,23 +79,231 @@ public class WalletOperationsService {
   /**
    * Метод отвечает за операцию перевода между кошельками. Создаёт расход у одного экземпляра
    * кошелька и доход на аналогичную сумму у другого экземпляра кошелька. <br>
-   * Для упрощения тестирования он же отвечает за загрузку данных кошелька другого пользователя и
-   * сохранение их после операции перевода.
+   * Для упрощения тестирования он же отвечает за загрузку данных кошелька другого пользователя.
+   * Отдельно сохранять их после перевода не нужно: доход получателя дописывается в журнал изменений
+   * его кошелька, подключённый при загрузке. <br>
+   * Перевод выполняется под блокировками данных обоих пользователей. Если получатель сейчас в
+   * аккаунте, то доход добавляется в его кошелёк в оперативной памяти, а не в файл. Проверки
+   * получателя, сделанные меню до перевода, повторяются под блокировками: отсутствующий получатель
+   * не загрузится из файла, а перевод самому себе не выполняется. <br>
+   * Если поток уже удерживает блокировку отправителя (команда его сессии), то блокировка получателя
+   * по возможности добавляется к ней. Если получатель занят, а захват по порядку невозможен, то
+   * блокировки явно перезахватываются (см. UserSessionsRegistry.runWithUsersRelocked): перевод
+   * завершает команду и всё, от чего зависит, проверяет сам.
    */
   public static void transferMoneyToAnotherUser(User from, String to, double amount)
       throws IOException {
-    User anotherUser = DataPersistenceService.loadUserdataFromFile(to);
-    addExpense(
-        from.getWallet(),
-        amount,
-        ("переводы пользователю " + anotherUser.getUsername()).toLowerCase(),
-        LocalDateTime.now());
-    addIncome(
-        anotherUser.getWallet(),
-        amount,
-        ("переводы от пользователя " + from.getUsername()).toLowerCase(),
-        LocalDateTime.now());
-    DataPersistenceService.saveUserdataToFile(anotherUser);
+    UserSessionsRegistry.UsersAction<IOException> transfer =
+        () -> {
+          if (from.getUsername().equals(to)) {
+            throw new IllegalArgumentException("Нельзя переводить средства самому себе.");
+          }
+          User anotherUser = UserSessionsRegistry.getActiveUser(to);
+          if (anotherUser == null) {
+            anotherUser = DataPersistenceService.loadUserdataFromFile(to);
+          }
+          addExpense(
+              from.getWallet(),
+              amount,
+              ("переводы пользователю " + anotherUser.getUsername()).toLowerCase(),
+              LocalDateTime.now());
+          addIncome(
+              anotherUser.getWallet(),
+              amount,
+              ("переводы от пользователя " + from.getUsername()).toLowerCase(),
+              LocalDateTime.now());
+        };
+    if (!UserSessionsRegistry.tryRunWithUsersLocked(transfer, from.getUsername(), to)) {
+      UserSessionsRegistry.runWithUsersRelocked(transfer, from.getUsername(), to);
+    }
+  }
+
+  /**
+   * Метод отвечает за пакетный перевод от одного пользователя нескольким (например, одинаковые
+   * выплаты сотням получателей). Переводы группируются по получателям: данные каждого получателя
+   * загружаются один раз, а все его доходы и соответствующие им расходы отправителя добавляются
+   * вместе под блокировками отправителя и получателя, как при обычном переводе. Поэтому зачисление
+   * получателю без списания у отправителя невозможно. Получатели обрабатываются параллельно на
+   * общем пуле потоков (не более BATCH_TRANSFER_THREADS одновременно для всех пакетов). <br>
+   * Потоки пула захватывают блокировку отправителя, поэтому на время ожидания их результатов
+   * блокировки текущего потока отпускаются (см. UserSessionsRegistry.callWithoutUsersLocks):
+   * пакетный перевод завершает команду. Если ожидание прервано, то ещё не начатые переводы
+   * отменяются, а начатые дожидаются завершения, и по каждому получателю возвращается фактический
+   * результат. <br>
+   * Возвращает результаты по каждому получателю в порядке их первого упоминания в списке.
+   */
+  public static LinkedHashMap<String, BatchTransferResult> transferMoneyToAnotherUsers(
+      User from, List<Transfer> transfers) throws IllegalArgumentException {
+    LinkedHashMap<String, ArrayList<Double>> amountsByRecipients = new LinkedHashMap<>();
+    for (Transfer transfer : transfers) {
+      if (Money.toMinorUnits(transfer.getAmount()) <= 0) {
+        throw new IllegalArgumentException("Сумма перевода должна быть больше нуля.");
+      }
+      amountsByRecipients
+          .computeIfAbsent(transfer.getRecipient(), r -> new ArrayList<>())
+          .add(transfer.getAmount());
+    }
+
+    return UserSessionsRegistry.callWithoutUsersLocks(
+        () -> {
+          LinkedHashMap<String, Future<?>> transfersTasks = new LinkedHashMap<>();
+          LinkedHashMap<String, AtomicBoolean> transfersClaims = new LinkedHashMap<>();
+          for (Map.Entry<String, ArrayList<Double>> entry : amountsByRecipients.entrySet()) {
+            if (!entry.getKey().equals(from.getUsername())) {
+              // Перевод выполняет тот, кто первым его захватит: поток пула или прерванное ожидание
+              AtomicBoolean claim = new AtomicBoolean();
+              transfersClaims.put(entry.getKey(), claim);
+              transfersTasks.put(
+                  entry.getKey(),
+                  batchTransferExecutor.submit(
+                      () ->
+                          claim.compareAndSet(false, true)
+                              ? transferToRecipient(from, entry.getKey(), entry.getValue())
+                              : null));
+            }
+          }
+          LinkedHashMap<String, BatchTransferResult> results = new LinkedHashMap<>();
+          for (Map.Entry<String, ArrayList<Double>> entry : amountsByRecipients.entrySet()) {
+            results.put(
+                entry.getKey(),
+                new BatchTransferResult(
+                    entry.getKey(),
+                    entry.getValue(),
+                    waitForTransfers(
+                        transfersTasks.get(entry.getKey()),
+                        transfersClaims.get(entry.getKey()))));
+          }
+          return results;
+        });
+  }
+
+  /**
+   * Метод выполняет все переводы одному получателю: под блокировками отправителя и получателя
+   * добавляет доходы получателю и соответствующие им расходы отправителю. Если получатель сейчас в
+   * аккаунте, то доходы добавляются в его кошелёк в оперативной памяти.
+   */
+  private static Void transferToRecipient(User from, String to, List<Double> amounts)
+      throws IOException {
+    UserSessionsRegistry.runWithUsersLocked(
+        () -> {
+          User anotherUser = UserSessionsRegistry.getActiveUser(to);
+          if (anotherUser == null) {
+            anotherUser = DataPersistenceService.loadUserdataFromFile(to);
+          }
+          for (double amount : amounts) {
+            addIncome(
+                anotherUser.getWallet(),
+                amount,
+                ("переводы от пользователя " + from.getUsername()).toLowerCase(),
+                LocalDateTime.now());
+            addExpense(
+                from.getWallet(),
+                amount,
+                ("переводы пользователю " + to).toLowerCase(),
+                LocalDateTime.now());
+          }
+        },
+        from.getUsername(),
+        to);
+    return null;
+  }
+
+  /**
+   * Метод дожидается переводов получателю. Возвращает null при успехе или текст ошибки. Если поток
+   * прерван, то ещё не начатые переводы отменяются, а уже начатые дожидаются завершения, чтобы
+   * вернуть их фактический результат; признак прерывания потока при этом сохраняется. Начатым
+   * считается перевод, захваченный (claim) потоком пула раньше, чем прерванным ожиданием.
+   */
+  private static String waitForTransfers(Future<?> transfersTask, AtomicBoolean claim) {
+    if (transfersTask == null) {
+      return "Нельзя переводить средства самому себе.";
+    }
+    boolean isInterrupted = false;
+    try {
+      while (true) {
+        // cancel успешен и для уже выполняющейся задачи, поэтому начало перевода определяет захват
+        if (isInterrupted && claim.compareAndSet(false, true)) {
+          transfersTask.cancel(false);
+          return "Перевод прерван до начала выполнения.";
+        }
+        try {
+          transfersTask.get();
+          return null;
+        } catch (ExecutionException e) {
+          return e.getCause().getMessage();
+        } catch (InterruptedException e) {
+          isInterrupted = true;
+        }
+      }
+    } finally {
+      if (isInterrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Отдельный перевод из пакета: получатель и сумма. */
+  public static class Transfer {
+    private final String recipient;
+    private final double amount;
+
+    /** Основной конструктор перевода из пакета. */
+    public Transfer(String recipient, double amount) {
+      this.recipient = recipient;
+      this.amount = amount;
+    }
+
+    public String getRecipient() {
+      return recipient;
+    }
+
+    public double getAmount() {
+      return amount;
+    }
+  }
+
+  /**
+   * Результат пакетного перевода для одного получателя: количество и сумма переводов, а также текст
+   * ошибки, если переводы не были зачислены. При ошибке у получателя и отправителя ничего не
+   * меняется.
+   */
+  public static class BatchTransferResult {
+    private final String recipient;
+    private final int transfersCount;
+    private final double totalAmount;
+    private final String errorMessage;
+
+    private BatchTransferResult(String recipient, List<Double> amounts, String errorMessage) {
+      this.recipient = recipient;
+      this.transfersCount = amounts.size();
+      long total = 0;
+      for (double amount : amounts) {
+        total += Money.toMinorUnits(amount);
+      }
+      this.totalAmount = Money.toAmount(total);
+      this.errorMessage = errorMessage;
+    }
+
+    public String getRecipient() {
+      return recipient;
+    }
+
+    public int getTransfersCount() {
+      return transfersCount;
+    }
+
+    public double getTotalAmount() {
+      return totalAmount;
+    }
+
+    /** Метод возвращает текст ошибки или null, если переводы зачислены. */
+    public String getErrorMessage() {
+      return errorMessage;
+    }
+
+    public boolean isSuccessful() {
+      return errorMessage == null;
+    }
   }
 
   /**
@@ -79,7 +311,7 @@ public class WalletOperationsService {
    * операции из основного списка всех операций кошелька.
    */
   public static boolean removeWalletOperationById(Wallet wallet, long id) {
-    return wallet.getWalletOperations().removeIf(wo -> wo.getId() == id);
+    return wallet.removeWalletOperationById(id);
   }
 
   /**
@@ -97,11 +329,7 @@ public class WalletOperationsService {
     }
 
     // Смена названия в массиве операций пользователя
-    for (Wallet.WalletOperation wo : wallet.getWalletOperations()) {
-      if (wo.getCategory().equals(category) && wo.isIncome() == isIncome) {
-        wo.setCategory(newName);
-      }
-    }
+    wallet.renameCategories(isIncome, newName, category);
   }
 
   /**
@@ -118,23 +346,15 @@ public class WalletOperationsService {
     wallet.getBudgetCategoriesAndLimits().put(newCategoryName, newLimit);
 
     // Смена названий старых категорий на одно новое в массиве операций пользователя
-    for (Wallet.WalletOperation wo : wallet.getExpensesWalletOperations()) {
-      for (String category : oldCategories) {
-        if (wo.getCategory().equals(category)) {
-          wo.setCategory(newCategoryName);
-        }
-      }
-    }
+    wallet.renameCategories(false, newCategoryName, oldCategories);
   }
 
   /** Метод объединяет несколько категорий доходов в одну категорию. */
   public static void mergeIncomeCategories(
       Wallet wallet, String newCategoryName, String... oldCategories) {
-    // Так как в случае доходов не нужно работать с лимитами, можем применить метод
-    // changeNameForCategory
-    for (String category : oldCategories) {
-      changeNameForCategory(wallet, category, newCategoryName, true);
-    }
+    // Так как в случае доходов не нужно работать с лимитами, достаточно сменить названия категорий
+    // у операций за один проход
+    wallet.renameCategories(true, newCategoryName, oldCategories);
   }
 
   /*
@@ -142,16 +362,12 @@ public class WalletOperationsService {
    */
 
   /**
-   * Метод находит в кошельке операции (Wallet.WalletOperation) нужного типа (расход) и одной
-   * определённой категории, возвращая суммарный расход. <br>
+   * Метод возвращает суммарный расход по одной определённой категории. Сумма берётся из индекса
+   * кошелька по категориям, поэтому операции не перебираются. <br>
    * Используется для базовой аналитики по кошельку и уведомлений.
    */
   public static double getExpensesByCategory(Wallet wallet, String category) {
-    return wallet.getWalletOperations().stream()
-        .filter(w -> !w.isIncome())
-        .filter(wo -> wo.getCategory().equals(category))
-        .map(Wallet.WalletOperation::getAmount)
-        .reduce(0.0, Double::sum);
+    return wallet.getCategoryTotal(false, category);
   }
 
   /**
@@ -160,24 +376,20 @@ public class WalletOperationsService {
    * Используется для расширенной фильтрации по категориям и аналитики по кошельку.
    */
   public static double getExpensesByCategories(Wallet wallet, String... categories) {
-    double result = 0.0;
+    long result = 0;
     for (String category : categories) {
-      result += getExpensesByCategory(wallet, category);
+      result += wallet.getCategoryTotalInMinorUnits(false, category);
     }
-    return result;
+    return Money.toAmount(result);
   }
 
   /**
-   * Метод находит в кошельке операции (Wallet.WalletOperation) нужного типа (доход) и одной
-   * определённой категории, возвращая суммарный доход. <br>
+   * Метод возвращает суммарный доход по одной определённой категории. Сумма берётся из индекса
+   * кошелька по категориям, поэтому операции не перебираются. <br>
    * Используется для базовой аналитики по кошельку и уведомлений.
    */
   public static double getIncomeByCategory(Wallet wallet, String category) {
-    return wallet.getWalletOperations().stream()
-        .filter(Wallet.WalletOperation::isIncome)
-        .filter(wo -> wo.getCategory().equals(category))
-        .map(Wallet.WalletOperation::getAmount)
-        .reduce(0.0, Double::sum);
+    return wallet.getCategoryTotal(true, category);
   }
 
   /**
@@ -186,16 +398,17 @@ public class WalletOperationsService {
    * Используется для расширенной фильтрации по категориям и аналитики по кошельку.
    */
   public static double getIncomeByCategories(Wallet wallet, String... categories) {
-    double result = 0.0;
+    long result = 0;
     for (String category : categories) {
-      result += getIncomeByCategory(wallet, category);
+      result += wallet.getCategoryTotalInMinorUnits(true, category);
     }
-    return result;
+    return Money.toAmount(result);
   }
 
   /**
    * Метод находит в кошельке операции (Wallet.WalletOperation) нужного типа (доход или расход) и
-   * категорий, возвращая результирующий список. <br>
+   * категорий, возвращая результирующий список. Операции отбираются по коду категории из словаря
+   * кошелька (см. Wallet.makeCategoryFilter). <br>
    * Используется для расширенной фильтрации по категориям и аналитики по кошельку.
    */
   public static ArrayList<Wallet.WalletOperation> getWalletOperationsByCategories(
@@ -204,22 +417,57 @@ public class WalletOperationsService {
     for (String category : categories) {
       result.addAll(
           wallet.getWalletOperations().stream()
-              .filter(wo -> wo.isIncome() == isIncome)
-              .filter(wo -> wo.getCategory().equals(category))
+              .filter(wallet.makeCategoryFilter(isIncome, category))
               .collect(Collectors.toCollection(ArrayList::new)));
     }
     return result;
   }
 
+  /**
+   * Метод возвращает поток операций кошелька (Wallet.WalletOperation) за нужный период,
+   * упорядоченных по дате и времени. Поток строится по индексу кошелька по дате, поэтому
+   * перебираются только операции из периода. <br>
+   * Используется для расширенной фильтрации по периодам и аналитики по кошельку.
+   */
+  public static Stream<Wallet.WalletOperation> streamWalletOperationsByPeriod(
+      Wallet wallet, LocalDateTime periodStart, LocalDateTime periodEnd) {
+    return wallet.streamWalletOperationsByPeriod(periodStart, periodEnd);
+  }
+
+  /**
+   * Метод возвращает поток операций кошелька (Wallet.WalletOperation) нужного типа (доход или
+   * расход) за нужный период. <br>
+   * Используется для расширенной фильтрации по периодам и аналитики по кошельку.
+   */
+  public static Stream<Wallet.WalletOperation> streamWalletOperationsByTypeAndPeriod(
+      Wallet wallet, boolean isIncome, LocalDateTime periodStart, LocalDateTime periodEnd) {
+    return streamWalletOperationsByPeriod(wallet, periodStart, periodEnd)
+        .filter(wo -> wo.isIncome() == isIncome);
+  }
+
+  /**
+   * Метод возвращает поток операций кошелька (Wallet.WalletOperation) нужного типа (доход или
+   * расход), категории и периода. <br>
+   * Используется для расширенной фильтрации по периодам и аналитики по кошельку.
+   */
+  public static Stream<Wallet.WalletOperation> streamWalletOperationsByTypeAndPeriodAndCategory(
+      Wallet wallet,
+      boolean isIncome,
+      String category,
+      LocalDateTime periodStart,
+      LocalDateTime periodEnd) {
+    return streamWalletOperationsByPeriod(wallet, periodStart, periodEnd)
+        .filter(wallet.makeCategoryFilter(isIncome, category));
+  }
+
   /**
    * Метод находит в кошельке операции (Wallet.WalletOperation) за нужный период, возвращая
-   * результирующий список. <br>
+   * результирующий список, упорядоченный по дате и времени. <br>
    * Используется для расширенной фильтрации по периодам и аналитики по кошельку.
    */
   public static ArrayList<Wallet.WalletOperation> getWalletOperationsByPeriod(
       Wallet wallet, LocalDateTime periodStart, LocalDateTime periodEnd) {
-    return wallet.getWalletOperations().stream()
-        .filter(wo -> wo.getDateTime().isAfter(periodStart) && wo.getDateTime().isBefore(periodEnd))
+    return streamWalletOperationsByPeriod(wallet, periodStart, periodEnd)
         .collect(Collectors.toCollection(ArrayList::new));
   }
 
@@ -230,8 +478,7 @@ public class WalletOperationsService {
    */
   public static ArrayList<Wallet.WalletOperation> getWalletOperationsByTypeAndPeriod(
       Wallet wallet, boolean isIncome, LocalDateTime periodStart, LocalDateTime periodEnd) {
-    return getWalletOperationsByPeriod(wallet, periodStart, periodEnd).stream()
-        .filter(wo -> wo.isIncome() == isIncome)
+    return streamWalletOperationsByTypeAndPeriod(wallet, isIncome, periodStart, periodEnd)
         .collect(Collectors.toCollection(ArrayList::new));
   }
 
@@ -246,21 +493,89 @@ public class WalletOperationsService {
       String category,
       LocalDateTime periodStart,
       LocalDateTime periodEnd) {
-    return getWalletOperationsByTypeAndPeriod(wallet, isIncome, periodStart, periodEnd).stream()
-        .filter(wo -> wo.getCategory().equals(category))
+    return streamWalletOperationsByTypeAndPeriodAndCategory(
+            wallet, isIncome, category, periodStart, periodEnd)
         .collect(Collectors.toCollection(ArrayList::new));
   }
 
+  /*
+   * Методы для агрегирования списков операций без создания объектов
+   */
+
   /**
    * Метод принимает список операций дохода или список операций расхода (Wallet.WalletOperation) и
-   * считает их сумму. <br>
+   * считает их сумму. Суммы складываются в копейках, поэтому результат точен. <br>
    * Используется для расширенной фильтрации по периодам и аналитики по кошельку.
    */
   public static double getWalletOperationsAmountsSum(
-      ArrayList<Wallet.WalletOperation> woList, boolean isIncome) {
-    return woList.stream()
-        .filter(wo -> wo.isIncome() == isIncome)
-        .mapToDouble(Wallet.WalletOperation::getAmount)
-        .sum();
+      List<Wallet.WalletOperation> woList, boolean isIncome) {
+    return Money.toAmount(getWalletOperationsAmountsSumInMinorUnits(woList, isIncome));
+  }
+
+  /**
+   * Метод считает сумму операций нужного типа (доход или расход) из списка в копейках. Как и
+   * остальные методы агрегирования, перебирает операции по индексу и складывает суммы в переменных
+   * примитивных типов, поэтому не создаёт ни потоков, ни итераторов, ни упакованных сумм. Список
+   * должен поддерживать быстрый доступ по индексу (как ArrayList и список операций кошелька).
+   */
+  public static long getWalletOperationsAmountsSumInMinorUnits(
+      List<Wallet.WalletOperation> woList, boolean isIncome) {
+    long result = 0;
+    for (int i = 0; i < woList.size(); i++) {
+      Wallet.WalletOperation wo = woList.get(i);
+      if (wo.isIncome() == isIncome) {
+        result += wo.getAmountInMinorUnits();
+      }
+    }
+    return result;
+  }
+
+  /** Метод считает количество операций нужного типа (доход или расход) в списке. */
+  public static int getWalletOperationsCount(
+      List<Wallet.WalletOperation> woList, boolean isIncome) {
+    int result = 0;
+    for (int i = 0; i < woList.size(); i++) {
+      if (woList.get(i).isIncome() == isIncome) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Метод находит наименьшую сумму операции нужного типа (доход или расход) в списке. Возвращает 0,
+   * если операций этого типа в списке нет.
+   */
+  public static double getWalletOperationsMinAmount(
+      List<Wallet.WalletOperation> woList, boolean isIncome) {
+    return Money.toAmount(getWalletOperationsExtremeAmount(woList, isIncome, false));
+  }
+
+  /**
+   * Метод находит наибольшую сумму операции нужного типа (доход или расход) в списке. Возвращает 0,
+   * если операций этого типа в списке нет.
+   */
+  public static double getWalletOperationsMaxAmount(
+      List<Wallet.WalletOperation> woList, boolean isIncome) {
+    return Money.toAmount(getWalletOperationsExtremeAmount(woList, isIncome, true));
+  }
+
+  /** Метод находит наименьшую или наибольшую сумму операции нужного типа в копейках. */
+  private static long getWalletOperationsExtremeAmount(
+      List<Wallet.WalletOperation> woList, boolean isIncome, boolean isMax) {
+    long result = 0;
+    boolean found = false;
+    for (int i = 0; i < woList.size(); i++) {
+      Wallet.WalletOperation wo = woList.get(i);
+      if (wo.isIncome() != isIncome) {
+        continue;
+      }
+      long amount = wo.getAmountInMinorUnits();
+      if (!found || (isMax ? amount > result : amount < result)) {
+        result = amount;
+        found = true;
+      }
+    }
+    return result;
   }
 }
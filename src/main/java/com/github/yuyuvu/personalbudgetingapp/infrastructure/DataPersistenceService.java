@@ -5,20 +5,44 @@ import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.p
 
 import com.github.yuyuvu.personalbudgetingapp.appservices.AuthorizationService;
 import com.github.yuyuvu.personalbudgetingapp.exceptions.CheckedIllegalArgumentException;
+import com.github.yuyuvu.personalbudgetingapp.exceptions.SnapshotException;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
-import java.io.FileReader;
-import java.io.FileWriter;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import com.github.yuyuvu.personalbudgetingapp.model.WalletOperationsColumns;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
 
 /**
  * Класс отвечает за сохранение данных в файловую систему и их загрузку из неё. Например, так
@@ -37,10 +61,24 @@ public class DataPersistenceService {
       relationalPathToAppdata.resolve(Path.of("analytics_reports"));
   private static final Path relationalPathToSnapshotsFiles =
       relationalPathToAppdata.resolve(Path.of("userdata_snapshots"));
+  // Журналы изменений кошельков, дописываемые между полными сохранениями данных пользователей
+  private static final Path relationalPathToUserdataJournalsFiles =
+      relationalPathToAppdata.resolve(Path.of("userdata_journals"));
+  // Индекс учётных данных: имена, хэши и соли всех пользователей в одном компактном файле, чтобы
+  // при запуске не читать файлы кошельков целиком
+  private static final Path relationalPathToUsersCredentialsIndexFile =
+      relationalPathToAppdata.resolve(Path.of("users_credentials_index.tsv"));
+  private static final String usersCredentialsIndexHeader =
+      "# personal_budgeting_app users credentials index v1";
+  private static final String usersCredentialsIndexSeparator = "\t";
 
-  // Данные кошельков сохраняются в формате json
-  private static final String dataFileExtension = ".json";
+  // Данные кошельков по умолчанию сохраняются в формате json, снимки состояния - всегда в json
+  private static final String dataFileExtension = UserdataFormat.JSON.getFileExtension();
+  private static final String journalFileExtension = ".journal";
+  private static final String tempFileExtension = ".tmp";
   private static final ObjectMapper jsonObjectMapper = new ObjectMapper();
+  // Формат, в котором сохраняются файлы пользователей, выбирается при запуске приложения
+  private static volatile UserdataFormat userdataFormat = UserdataFormat.JSON;
 
   // При загрузке класса создаются директории, где хранятся файлы приложения
   static {
@@ -49,6 +87,7 @@ public class DataPersistenceService {
       Files.createDirectories(relationalPathToUserdataFiles);
       Files.createDirectories(relationalPathToAnalyticsReportsFiles);
       Files.createDirectories(relationalPathToSnapshotsFiles);
+      Files.createDirectories(relationalPathToUserdataJournalsFiles);
     } catch (IOException e) {
       printlnRed(
           "Проблемы с созданием директорий для хранения данных приложения. "
@@ -60,99 +99,538 @@ public class DataPersistenceService {
   /**
    * Метод считывает данные кошелька пользователя, а также данные для авторизации из ранее
    * сохранённого файла с данными пользователя. Метод десериализует считанные из json-файла данные в
-   * объект класса User. Используется при авторизации (в AuthorizationService) и при переводах.
+   * объект класса User. Используется при авторизации (в AuthorizationService) и при переводах. <br>
+   * Файл читается через буферизированный байтовый поток, Jackson разбирает его по мере чтения (в
+   * кодировке UTF-8) без промежуточной строки со всем содержимым файла. Операции кошелька при этом
+   * не читаются, если это позволяет формат файла (см. readUserdataWithoutWalletOperations). <br>
+   * После чтения к кошельку применяются записи журнала изменений, сделанные после последнего
+   * полного сохранения, и к кошельку подключается журнал для дальнейших изменений. <br>
+   * Недавно загруженные и сохранённые пользователи берутся из кэша (UserdataCache), если их файл с
+   * тех пор не изменялся. Загруженный из файла пользователь помещается в кэш. <br>
+   * Файл читается в том формате, в котором он был сохранён, независимо от текущего формата
+   * сохранения (см. UserdataFormat).
    */
   public static User loadUserdataFromFile(String user) throws IOException {
     User readUser;
-    try (FileReader fr =
-        new FileReader(relationalPathToUserdataFiles.resolve(user + dataFileExtension).toFile())) {
-      readUser = jsonObjectMapper.readValue(fr, User.class);
+    Path userdataFile = findUserdataFile(user);
+    User cachedUser = UserdataCache.get(user, UserdataFileVersion.ofOrNull(userdataFile));
+    if (cachedUser != null) {
+      return cachedUser;
+    }
+    try {
+      readUser = readUserdataWithoutWalletOperations(userdataFile);
+    } catch (IOException | JacksonException e) {
+      throw new IOException("Проблемы с чтением информации из файла пользователя " + user + ".", e);
+    }
+    int replayedRecordsCount;
+    try {
+      replayedRecordsCount =
+          WalletJournal.replay(readUser, getJournalFile(readUser.getUsername()), jsonObjectMapper);
     } catch (IOException e) {
-      throw new IOException("Проблемы с чтением информации из файла пользователя " + user + ".");
+      throw new IOException("Проблемы с чтением журнала изменений пользователя " + user + ".", e);
     }
+    if (replayedRecordsCount == WalletJournal.DAMAGED_JOURNAL) {
+      // Повреждённый конец журнала (например, после сбоя во время дозаписи) отбрасывается
+      // полным сохранением уже применённых изменений, которое подключает новый журнал
+      saveUserdataToFile(readUser);
+    } else {
+      attachWalletJournal(readUser, replayedRecordsCount);
+    }
+    UserdataCache.put(readUser, UserdataFileVersion.of(userdataFile));
     return readUser;
   }
 
+  /**
+   * Метод читает данные пользователя из файла, останавливая чтение перед операциями кошелька. Это
+   * возможно для кошельков формата 3 и новее: в них сводка по операциям записывается раньше
+   * операций, а сами операции - в самом конце файла. Такой кошелёк загрузит операции из того же
+   * файла при первом обращении к ним (readWalletOperations). Файлы более старых форматов читаются
+   * целиком. <br>
+   * В файлах в двоичном формате операции записаны отдельно от остальных данных пользователя,
+   * поэтому читается только заголовок файла. Операции большого кошелька при этом отображаются в
+   * память (MappedWalletOperations), и выборки за период выполняются по файлу без загрузки
+   * операций. <br>
+   * Выборки из остальных кошельков до их изменения выполняются по операциям, прочитанным в столбцы
+   * примитивов (WalletOperationsColumns), а объекты операций создаются только при изменении
+   * кошелька.
+   */
+  private static User readUserdataWithoutWalletOperations(Path userdataFile) throws IOException {
+    UserdataFileVersion readFileVersion = UserdataFileVersion.of(userdataFile);
+    User readUser;
+    MappedWalletOperations mappedWalletOperations = null;
+    if (UserdataFormat.of(userdataFile) == UserdataFormat.BINARY) {
+      byte[] header;
+      try (DataInputStream in = createBinaryUserdataInputStream(userdataFile)) {
+        header = UserdataBinaryFormat.readHeader(in);
+      }
+      try (JsonParser parser = jsonObjectMapper.createParser(new ByteArrayInputStream(header))) {
+        readUser = readUserWithoutWalletOperations(parser);
+      }
+      mappedWalletOperations = MappedWalletOperations.map(userdataFile);
+      // Отображение должно соответствовать прочитанному заголовку, а не файлу, заменённому после
+      if (!UserdataFileVersion.of(userdataFile).equals(readFileVersion)) {
+        mappedWalletOperations = null;
+      }
+    } else {
+      try (JsonParser parser = createUserdataParser(userdataFile)) {
+        readUser = readUserWithoutWalletOperations(parser);
+      }
+    }
+    // Кошелёк без сводки по операциям (старые форматы) уже прочитан вместе с операциями
+    LazyWalletOperationsColumns walletOperationsColumns =
+        new LazyWalletOperationsColumns(userdataFile, readFileVersion);
+    readUser
+        .getWallet()
+        .deferWalletOperations(
+            walletOperationsColumns::loadWalletOperations,
+            mappedWalletOperations != null ? mappedWalletOperations : walletOperationsColumns);
+    return readUser;
+  }
+
+  /**
+   * Метод разбирает json с данными пользователя, останавливая чтение на операциях кошелька, если
+   * перед ними записана сводка по ним. Операции, не записанные в json (двоичный формат), также
+   * заменяются пустым списком. <br>
+   * Значения читаются методами самого парсера: методы ObjectMapper считают продолжение файла после
+   * значения ошибкой (FAIL_ON_TRAILING_TOKENS), а парсер здесь стоит в середине файла.
+   */
+  private static User readUserWithoutWalletOperations(JsonParser parser) throws IOException {
+    ObjectNode userTree = jsonObjectMapper.createObjectNode();
+    boolean walletOperationsSkipped = false;
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IOException("Файл пользователя представлен в некорректном формате.");
+    }
+    while (!walletOperationsSkipped && parser.nextToken() == JsonToken.PROPERTY_NAME) {
+      String propertyName = parser.currentName();
+      if (parser.nextToken() != JsonToken.START_OBJECT || !propertyName.equals("wallet")) {
+        userTree.set(propertyName, parser.<JsonNode>readValueAsTree());
+        continue;
+      }
+      ObjectNode walletTree = jsonObjectMapper.createObjectNode();
+      while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+        String walletPropertyName = parser.currentName();
+        parser.nextToken();
+        if (walletPropertyName.equals("walletOperations") && walletTree.has("walletSummary")) {
+          // Операции записаны последними, поэтому дальше файл не читается
+          walletOperationsSkipped = true;
+          break;
+        }
+        walletTree.set(walletPropertyName, parser.<JsonNode>readValueAsTree());
+      }
+      if (walletTree.has("walletSummary") && !walletTree.has("walletOperations")) {
+        walletTree.set("walletOperations", jsonObjectMapper.createArrayNode());
+      }
+      userTree.set(propertyName, walletTree);
+    }
+    return jsonObjectMapper.treeToValue(userTree, User.class);
+  }
+
+  /**
+   * Метод читает из файла пользователя только операции кошелька, пропуская остальные данные без
+   * создания объектов. Файл должен быть тем же, из которого был прочитан кошелёк: если файл с тех
+   * пор изменился, то операции не загружаются.
+   */
+  private static ArrayList<Wallet.WalletOperation> readWalletOperations(
+      Path userdataFile, UserdataFileVersion readFileVersion) throws IOException {
+    checkUserdataFileUnchanged(userdataFile, readFileVersion);
+    if (UserdataFormat.of(userdataFile) == UserdataFormat.BINARY) {
+      try (DataInputStream in = createBinaryUserdataInputStream(userdataFile)) {
+        return UserdataBinaryFormat.readWalletOperations(in);
+      }
+    }
+    try (JsonParser parser = createUserdataParser(userdataFile)) {
+      if (parser.nextToken() == JsonToken.START_OBJECT
+          && skipToProperty(parser, "wallet")
+          && parser.currentToken() == JsonToken.START_OBJECT
+          && skipToProperty(parser, "walletOperations")) {
+        return parser.readValueAs(new TypeReference<ArrayList<Wallet.WalletOperation>>() {});
+      }
+    } catch (JacksonException e) {
+      throw new IOException(
+          "Проблемы с чтением операций кошелька из файла " + userdataFile.getFileName() + ".");
+    }
+    throw new IOException("В файле " + userdataFile.getFileName() + " нет операций кошелька.");
+  }
+
+  /**
+   * Метод читает из файла пользователя операции кошелька в столбцы примитивов. Из файла в двоичном
+   * формате операции читаются сразу в столбцы без создания объектов операций.
+   */
+  private static WalletOperationsColumns readWalletOperationsColumns(
+      Path userdataFile, UserdataFileVersion readFileVersion) throws IOException {
+    if (UserdataFormat.of(userdataFile) == UserdataFormat.BINARY) {
+      checkUserdataFileUnchanged(userdataFile, readFileVersion);
+      try (DataInputStream in = createBinaryUserdataInputStream(userdataFile)) {
+        return UserdataBinaryFormat.readWalletOperationsColumns(in);
+      }
+    }
+    return WalletOperationsColumns.of(readWalletOperations(userdataFile, readFileVersion));
+  }
+
+  /** Метод проверяет, что файл пользователя не изменился с момента чтения кошелька из него. */
+  private static void checkUserdataFileUnchanged(
+      Path userdataFile, UserdataFileVersion readFileVersion) throws IOException {
+    if (!UserdataFileVersion.of(userdataFile).equals(readFileVersion)) {
+      throw new IOException(
+          "Файл пользователя "
+              + userdataFile.getFileName()
+              + " изменился после загрузки, операции кошелька не могут быть прочитаны из него.");
+    }
+  }
+
+  /** Метод создаёт поток для чтения файла пользователя в двоичном формате через буфер. */
+  private static DataInputStream createBinaryUserdataInputStream(Path userdataFile)
+      throws IOException {
+    return new DataInputStream(new BufferedInputStream(Files.newInputStream(userdataFile)));
+  }
+
+  /** Метод создаёт потоковый парсер json, читающий файл пользователя через буфер. */
+  private static JsonParser createUserdataParser(Path userdataFile) throws IOException {
+    InputStream in = new BufferedInputStream(Files.newInputStream(userdataFile));
+    return jsonObjectMapper.createParser(in);
+  }
+
+  /**
+   * Метод пропускает свойства текущего объекта json до свойства с указанным именем. Возвращает
+   * true, если свойство найдено: парсер при этом стоит на начале его значения.
+   */
+  private static boolean skipToProperty(JsonParser parser, String propertyName) {
+    while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+      boolean found = parser.currentName().equals(propertyName);
+      parser.nextToken();
+      if (found) {
+        return true;
+      }
+      parser.skipChildren();
+    }
+    return false;
+  }
+
   /**
    * Метод сохраняет данные кошелька пользователя, а также данные для авторизации в ранее созданный
    * файл для данных пользователя. Метод сериализует объект класса User в json-формат. Используется
-   * при регистрации (в AuthorizationService), выходе из аккаунта (Menu) и при переводах.
+   * при регистрации (в AuthorizationService), выходе из аккаунта (Menu) и при сжатии журнала
+   * изменений (WalletJournal). <br>
+   * Json записывается в кодировке UTF-8 через буферизированный байтовый поток по мере обхода
+   * объекта во временный файл, который после сброса на диск заменяет прежний файл пользователя.
+   * Поэтому сбой во время записи не повреждает ранее сохранённые данные. После замены журнал
+   * изменений, уже учтённый в файле, удаляется, а пользователь помещается в кэш (UserdataCache).
    */
   public static void saveUserdataToFile(User user) throws IOException {
-    try (FileWriter fw =
-        new FileWriter(
-            relationalPathToUserdataFiles
-                .resolve(user.getUsername() + dataFileExtension)
-                .toFile())) {
-      jsonObjectMapper.writeValue(fw, user);
-    } catch (IOException e) {
+    saveUserdataToFile(user, true);
+  }
+
+  /**
+   * Метод сохраняет данные пользователя, помещая его в кэш только при cacheUser = true. Без
+   * помещения в кэш сохраняются пользователи, уже вытесненные из него (см. UserdataCache).
+   */
+  static void saveUserdataToFile(User user, boolean cacheUser) throws IOException {
+    UserdataFormat format = userdataFormat;
+    Path userdataFile = getUserdataFile(user.getUsername(), format);
+    Path tempFile = userdataFile.resolveSibling(userdataFile.getFileName() + tempFileExtension);
+    UserdataFileVersion userdataFileVersion;
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+        if (format == UserdataFormat.BINARY) {
+          DataOutputStream dataOut = new DataOutputStream(out);
+          UserdataBinaryFormat.write(user, dataOut);
+          dataOut.flush();
+        } else {
+          jsonObjectMapper.writeValue(out, user);
+        }
+      }
+      try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+        channel.force(true);
+      }
+      replaceFile(tempFile, userdataFile);
+      // Файл в прежнем формате больше не нужен: данные преобразованы в текущий формат
+      for (UserdataFormat otherFormat : UserdataFormat.values()) {
+        if (otherFormat != format) {
+          Files.deleteIfExists(getUserdataFile(user.getUsername(), otherFormat));
+        }
+      }
+      Files.deleteIfExists(getJournalFile(user.getUsername()));
+      userdataFileVersion = UserdataFileVersion.of(userdataFile);
+    } catch (IOException | JacksonException e) {
       throw new IOException(
           "Проблемы с сохранением информации в файл пользователя " + user.getUsername() + ".");
     }
+    attachWalletJournal(user, 0);
+    if (cacheUser) {
+      UserdataCache.put(user, userdataFileVersion);
+    }
+  }
+
+  /**
+   * Метод подключает журнал изменений к кошельку пользователя, если он ещё не подключён.
+   * recordsCount - количество записей, уже находящихся в файле журнала.
+   */
+  private static void attachWalletJournal(User user, int recordsCount) {
+    if (user.getWallet().getChangesListener() == null) {
+      user.getWallet()
+          .setChangesListener(
+              new WalletJournal(
+                  user, getJournalFile(user.getUsername()), jsonObjectMapper, recordsCount));
+    }
+  }
+
+  /**
+   * Метод возвращает имеющийся файл пользователя. Если есть файлы в разных форматах (например,
+   * после сбоя во время преобразования), то предпочитается файл в текущем формате сохранения. Если
+   * файла нет, то возвращается путь к файлу в текущем формате.
+   */
+  private static Path findUserdataFile(String username) {
+    Path userdataFile = getUserdataFile(username, userdataFormat);
+    if (Files.exists(userdataFile)) {
+      return userdataFile;
+    }
+    for (UserdataFormat format : UserdataFormat.values()) {
+      Path otherFormatFile = getUserdataFile(username, format);
+      if (Files.exists(otherFormatFile)) {
+        return otherFormatFile;
+      }
+    }
+    return userdataFile;
+  }
+
+  private static Path getUserdataFile(String username, UserdataFormat format) {
+    return relationalPathToUserdataFiles.resolve(username + format.getFileExtension());
+  }
+
+  /**
+   * Метод задаёт формат, в котором сохраняются файлы пользователей. Файлы в другом формате
+   * по-прежнему читаются и преобразуются в новый формат при следующем сохранении пользователя.
+   */
+  public static void setUserdataFormat(UserdataFormat userdataFormat) {
+    DataPersistenceService.userdataFormat = userdataFormat;
+  }
+
+  /** Метод возвращает формат, в котором сохраняются файлы пользователей. */
+  public static UserdataFormat getUserdataFormat() {
+    return userdataFormat;
+  }
+
+  private static Path getJournalFile(String username) {
+    return relationalPathToUserdataJournalsFiles.resolve(username + journalFileExtension);
+  }
+
+  /**
+   * Метод заменяет файл временным файлом с новым содержимым. Замена выполняется атомарно, если это
+   * поддерживает файловая система, поэтому при сбое остаётся либо старый, либо новый файл целиком.
+   */
+  private static void replaceFile(Path tempFile, Path file) throws IOException {
+    try {
+      Files.move(
+          tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
   }
 
   /**
    * Метод, который используется для получения уже имеющихся имён пользователей, хэшей и солей
-   * паролей из файлов пользователей при загрузке класса AuthorizationService, чтобы можно было
-   * входить в имеющиеся аккаунты после полного перезапуска приложения.
+   * паролей при загрузке класса AuthorizationService, чтобы можно было входить в имеющиеся аккаунты
+   * после полного перезапуска приложения. <br>
+   * Данные берутся из индекса учётных данных (см. relationalPathToUsersCredentialsIndexFile), а не
+   * из самих файлов кошельков. Индекс сверяется со списком файлов кошельков: файлы пользователей,
+   * которых нет в индексе, читаются и добавляются в него, записи без файлов удаляются. Если индекс
+   * отсутствует или повреждён, то он таким образом полностью строится заново.
    */
   public static HashMap<String, String[]> getRegisteredUsernamesAndHashesAndSalts()
       throws Exception {
-    // Перебор файлов с данными кошельков, где также хранятся данные для авторизации
+    HashMap<String, String[]> result = new HashMap<>();
+    boolean indexChanged = !readUsersCredentialsIndex(result);
+
+    // Перебор имён файлов с данными кошельков без чтения их содержимого
+    HashSet<String> usernamesWithFiles = new HashSet<>();
     try (Stream<Path> files = Files.list(relationalPathToUserdataFiles)) {
-      return (HashMap<String, String[]>)
-          files
-              .map(
-                  file -> {
-                    try {
-                      return Files.readString(file);
-                    } catch (IOException e) {
-                      throw new RuntimeException(
-                          "Проблемы с чтением файлов с данными зарегистрированных пользователей.");
-                    }
-                  })
-              .map(
-                  fileContents -> {
-                    try {
-                      String[] passwordData = {
-                        jsonObjectMapper
-                            .readTree(fileContents)
-                            .get("passwordData")
-                            .get(AuthorizationService.PasswordData.HASH.ordinal())
-                            .asString(),
-                        jsonObjectMapper
-                            .readTree(fileContents)
-                            .get("passwordData")
-                            .get(AuthorizationService.PasswordData.SALT.ordinal())
-                            .asString()
-                      };
-                      return Map.entry(
-                          jsonObjectMapper.readTree(fileContents).get("username").asString(),
-                          passwordData);
-                    } catch (JacksonException | NullPointerException e) {
-                      printlnRed(
-                          "Проблемы с десериализацией json-файла отдельного пользователя "
-                              + "при получении имён и паролей зарегистрированных пользователей."
-                              + "\nФайл пользователя представлен в некорректном формате. "
-                              + "Удалите пустые и лишние файлы в ./appdata/userdata_wallets.");
-                      printlnGreen("Можно продолжать работу.");
-                    }
-                    return null;
-                  })
-              .filter(Objects::nonNull)
-              .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-    } catch (ClassCastException e) {
-      throw new Exception(
-          "Проблемы с преобразованием Map в HashMap "
-              + "при загрузке имён и паролей зарегистрированных пользователей.");
-    } catch (RuntimeException e) {
-      throw new Exception(
-          "Проблемы с получением имён зарегистрированных пользователей: " + e.getMessage());
+      files.forEach(
+          file -> {
+            UserdataFormat format = UserdataFormat.of(file);
+            if (format != null) {
+              String fileName = file.getFileName().toString();
+              usernamesWithFiles.add(
+                  fileName.substring(0, fileName.length() - format.getFileExtension().length()));
+            }
+          });
     } catch (IOException e) {
       throw new Exception(
           "Проблемы с получением имён зарегистрированных пользователей. "
               + "Невозможно прочитать директорию с данными кошельков.");
     }
+
+    // Записи индекса, для которых больше нет файлов кошельков, удаляются
+    indexChanged |= result.keySet().retainAll(usernamesWithFiles);
+
+    // Файлы пользователей, которых нет в индексе, читаются полностью
+    for (String username : usernamesWithFiles) {
+      if (!result.containsKey(username)) {
+        Map.Entry<String, String[]> credentials =
+            readCredentialsFromUserdataFile(findUserdataFile(username));
+        if (credentials != null) {
+          result.put(credentials.getKey(), credentials.getValue());
+          indexChanged = true;
+        }
+      }
+    }
+
+    if (indexChanged) {
+      try {
+        writeUsersCredentialsIndex(result);
+      } catch (IOException e) {
+        // Без индекса приложение продолжит работать, он будет построен при следующем запуске
+        printlnRed(
+            "Проблемы с сохранением индекса зарегистрированных пользователей: " + e.getMessage());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Метод добавляет данные для авторизации нового пользователя в индекс учётных данных. Вызывается
+   * при регистрации после создания файла пользователя. Повторная запись для того же имени заменяет
+   * предыдущую при чтении индекса. Записи из разных сессий не перемешиваются, так как добавляются
+   * по очереди.
+   */
+  public static synchronized void addUserToCredentialsIndex(String username, String[] passwordData)
+      throws IOException {
+    try (BufferedWriter bw =
+        Files.newBufferedWriter(
+            relationalPathToUsersCredentialsIndexFile,
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+      if (Files.size(relationalPathToUsersCredentialsIndexFile) == 0) {
+        bw.write(usersCredentialsIndexHeader);
+        bw.newLine();
+      }
+      bw.write(makeUsersCredentialsIndexLine(username, passwordData));
+      bw.newLine();
+    } catch (IOException e) {
+      throw new IOException(
+          "Проблемы с добавлением пользователя " + username + " в индекс пользователей.");
+    }
+  }
+
+  /**
+   * Метод читает индекс учётных данных в переданную хэш-таблицу. Возвращает false, если индекс
+   * отсутствует, записан в неизвестном формате или содержит повреждённые строки, то есть если его
+   * нужно перезаписать.
+   */
+  private static boolean readUsersCredentialsIndex(HashMap<String, String[]> result) {
+    if (!Files.exists(relationalPathToUsersCredentialsIndexFile)) {
+      return false;
+    }
+    boolean indexIsValid = true;
+    try (BufferedReader br =
+        Files.newBufferedReader(
+            relationalPathToUsersCredentialsIndexFile, StandardCharsets.UTF_8)) {
+      if (!usersCredentialsIndexHeader.equals(br.readLine())) {
+        return false;
+      }
+      String line;
+      while ((line = br.readLine()) != null) {
+        String[] fields = line.split(usersCredentialsIndexSeparator);
+        // Параметров хэширования нет в записях, добавленных до их сохранения
+        if (fields.length <= 1 + AuthorizationService.PasswordData.SALT.ordinal()) {
+          indexIsValid = false;
+          continue;
+        }
+        String[] passwordData = Arrays.copyOfRange(fields, 1, fields.length);
+        // Повреждённая запись перечитывается из файла пользователя при перестроении индекса
+        if (!AuthorizationService.hasValidPasswordHashParameters(passwordData)) {
+          indexIsValid = false;
+          continue;
+        }
+        result.put(fields[0], passwordData);
+      }
+    } catch (IOException e) {
+      result.clear();
+      return false;
+    }
+    return indexIsValid;
+  }
+
+  /**
+   * Метод полностью перезаписывает индекс учётных данных. Индекс сначала записывается во временный
+   * файл, который затем заменяет прежний, поэтому при сбое во время записи старый индекс остаётся
+   * целым.
+   */
+  private static void writeUsersCredentialsIndex(HashMap<String, String[]> usersCredentials)
+      throws IOException {
+    Path tempFile =
+        relationalPathToUsersCredentialsIndexFile.resolveSibling(
+            relationalPathToUsersCredentialsIndexFile.getFileName() + tempFileExtension);
+    try (BufferedWriter bw = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+      bw.write(usersCredentialsIndexHeader);
+      bw.newLine();
+      for (Map.Entry<String, String[]> entry : usersCredentials.entrySet()) {
+        bw.write(makeUsersCredentialsIndexLine(entry.getKey(), entry.getValue()));
+        bw.newLine();
+      }
+    }
+    replaceFile(tempFile, relationalPathToUsersCredentialsIndexFile);
+  }
+
+  /**
+   * Метод формирует строку индекса учётных данных: имя, хэш, соль и параметры хэширования через
+   * табуляцию.
+   */
+  private static String makeUsersCredentialsIndexLine(String username, String[] passwordData) {
+    return username
+        + usersCredentialsIndexSeparator
+        + String.join(usersCredentialsIndexSeparator, passwordData);
+  }
+
+  /**
+   * Метод читает имя пользователя, хэш, соль и параметры хэширования пароля из файла с данными
+   * пользователя. Используется только для файлов, которых ещё нет в индексе учётных данных.
+   * Возвращает null, если файл представлен в некорректном формате.
+   */
+  private static Map.Entry<String, String[]> readCredentialsFromUserdataFile(Path file)
+      throws Exception {
+    try {
+      JsonNode userTree;
+      if (UserdataFormat.of(file) == UserdataFormat.BINARY) {
+        try (DataInputStream in = createBinaryUserdataInputStream(file)) {
+          userTree = jsonObjectMapper.readTree(UserdataBinaryFormat.readHeader(in));
+        }
+      } else {
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+          userTree = jsonObjectMapper.readTree(br);
+        }
+      }
+      JsonNode passwordDataNode = userTree.get("passwordData");
+      // Хэш и соль обязательны, параметров хэширования может не быть в старых файлах
+      int passwordDataLength =
+          Math.max(
+              AuthorizationService.PasswordData.SALT.ordinal() + 1,
+              Math.min(
+                  passwordDataNode.size(), AuthorizationService.PasswordData.values().length));
+      String[] passwordData = new String[passwordDataLength];
+      for (int i = 0; i < passwordDataLength; i++) {
+        passwordData[i] = passwordDataNode.get(i).asString();
+      }
+      if (!AuthorizationService.hasValidPasswordHashParameters(passwordData)) {
+        throw new StreamCorruptedException("Некорректные параметры хэширования пароля.");
+      }
+      return Map.entry(userTree.get("username").asString(), passwordData);
+    } catch (JacksonException
+        | NullPointerException
+        | EOFException
+        | StreamCorruptedException e) {
+      printlnRed(
+          "Проблемы с десериализацией файла отдельного пользователя "
+              + "при получении имён и паролей зарегистрированных пользователей."
+              + "\nФайл пользователя представлен в некорректном формате. "
+              + "Удалите пустые и лишние файлы в ./appdata/userdata_wallets.");
+      printlnGreen("Можно продолжать работу.");
+    } catch (IOException e) {
+      throw new Exception(
+          "Проблемы с получением имён зарегистрированных пользователей: "
+              + "Проблемы с чтением файлов с данными зарегистрированных пользователей.");
+    }
+    return null;
   }
 
   /**
@@ -163,8 +641,8 @@ public class DataPersistenceService {
   public static String makeNewUserWalletFile(String inputNewUsername) throws IOException {
     String pathWhereSaved = null;
     try {
-      Path potentialPath =
-          relationalPathToUserdataFiles.resolve(inputNewUsername + dataFileExtension);
+      // Файл создаётся в текущем формате, если у пользователя нет файла ни в одном из форматов
+      Path potentialPath = findUserdataFile(inputNewUsername);
       if (!Files.exists(potentialPath)) {
         Files.createFile(potentialPath);
         pathWhereSaved = potentialPath.toString();
@@ -185,7 +663,7 @@ public class DataPersistenceService {
     try {
       Files.write(
           pathWhereSave,
-          fileContent.getBytes(),
+          fileContent.getBytes(StandardCharsets.UTF_8),
           StandardOpenOption.CREATE,
           StandardOpenOption.TRUNCATE_EXISTING);
     } catch (IOException e) {
@@ -196,14 +674,14 @@ public class DataPersistenceService {
 
   /**
    * Метод, сохраняющий данные снимка состояния кошелька пользователя, подготовленные
-   * SnapshotsService, в json-файл. Используется в CheckpointsSaveAndLoadMenu.
+   * SnapshotsService, в json-файл.
    */
   public static String saveSnapshotToFile(String fileContent, String fileName) throws IOException {
     Path pathWhereSave = relationalPathToSnapshotsFiles.resolve(fileName + dataFileExtension);
     try {
       Files.write(
           pathWhereSave,
-          fileContent.getBytes(),
+          fileContent.getBytes(StandardCharsets.UTF_8),
           StandardOpenOption.CREATE,
           StandardOpenOption.TRUNCATE_EXISTING);
     } catch (IOException e) {
@@ -212,9 +690,25 @@ public class DataPersistenceService {
     return pathWhereSave.toString();
   }
 
+  /**
+   * Метод, сохраняющий снимок состояния кошелька пользователя в json-файл без промежуточной строки:
+   * SnapshotsService записывает содержимое снимка сразу в буферизированный поток файла.
+   * Используется в CheckpointsSaveAndLoadMenu.
+   */
+  public static String saveSnapshotToFile(SnapshotContentsWriter contentsWriter, String fileName)
+      throws IOException, SnapshotException {
+    Path pathWhereSave = relationalPathToSnapshotsFiles.resolve(fileName + dataFileExtension);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(pathWhereSave))) {
+      contentsWriter.writeTo(out);
+    } catch (IOException e) {
+      throw new IOException("Проблемы с сохранением отчёта в файл: " + e.getMessage());
+    }
+    return pathWhereSave.toString();
+  }
+
   /**
    * Метод, загружающий данные из ранее созданного снимка состояния кошелька пользователя из
-   * json-файла. Используется в CheckpointsSaveAndLoadMenu.
+   * json-файла в виде строки.
    */
   public static String loadSnapshotFromFile(String filePath)
       throws CheckedIllegalArgumentException, IOException {
@@ -224,12 +718,123 @@ public class DataPersistenceService {
       if (!Files.exists(pathToSnapshot)) {
         throw new CheckedIllegalArgumentException("Файла по указанному пути не существует.");
       }
-      result = Files.readString(pathToSnapshot);
-      // println(result);
+      result = Files.readString(pathToSnapshot, StandardCharsets.UTF_8);
     } catch (IOException e) {
       throw new IOException(
           "Проблемы с чтением информации из файла снапшота: " + e.getMessage() + ".");
     }
     return result;
   }
+
+  /**
+   * Метод, загружающий данные из ранее созданного снимка состояния кошелька пользователя из
+   * json-файла без промежуточной строки: SnapshotsService читает снимок сразу из буферизированного
+   * потока файла. Используется в CheckpointsSaveAndLoadMenu.
+   */
+  public static void loadSnapshotFromFile(String filePath, SnapshotContentsReader contentsReader)
+      throws CheckedIllegalArgumentException, IOException, SnapshotException {
+    Path pathToSnapshot = Path.of(filePath);
+    if (!Files.exists(pathToSnapshot)) {
+      throw new CheckedIllegalArgumentException("Файла по указанному пути не существует.");
+    }
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(pathToSnapshot))) {
+      contentsReader.readFrom(in);
+    } catch (IOException e) {
+      throw new IOException(
+          "Проблемы с чтением информации из файла снапшота: " + e.getMessage() + ".");
+    }
+  }
+
+  /** Функция, записывающая содержимое снимка состояния в поток файла. */
+  @FunctionalInterface
+  public interface SnapshotContentsWriter {
+    /** Метод записывает содержимое снимка в переданный поток. */
+    void writeTo(OutputStream out) throws SnapshotException;
+  }
+
+  /** Функция, читающая содержимое снимка состояния из потока файла. */
+  @FunctionalInterface
+  public interface SnapshotContentsReader {
+    /** Метод читает содержимое снимка из переданного потока. */
+    void readFrom(InputStream in) throws SnapshotException;
+  }
+
+  /**
+   * Хранилище операций кошелька, прочитанного без них, которое читает операции из файла
+   * пользователя в столбцы (WalletOperationsColumns) при первой выборке. Если столбцы уже
+   * прочитаны, то при изменении кошелька объекты операций создаются по ним без повторного чтения
+   * файла.
+   */
+  private static final class LazyWalletOperationsColumns implements Wallet.WalletOperationsStore {
+    private final Path userdataFile;
+    private final UserdataFileVersion readFileVersion;
+    private WalletOperationsColumns columns;
+
+    LazyWalletOperationsColumns(Path userdataFile, UserdataFileVersion readFileVersion) {
+      this.userdataFile = userdataFile;
+      this.readFileVersion = readFileVersion;
+    }
+
+    /** Метод загружает операции для кошелька (см. Wallet.WalletOperationsLoader). */
+    ArrayList<Wallet.WalletOperation> loadWalletOperations() throws IOException {
+      if (columns != null) {
+        return columns.toWalletOperations();
+      }
+      return readWalletOperations(userdataFile, readFileVersion);
+    }
+
+    private WalletOperationsColumns getColumns() {
+      if (columns == null) {
+        try {
+          columns = readWalletOperationsColumns(userdataFile, readFileVersion);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return columns;
+    }
+
+    @Override
+    public Stream<Wallet.WalletOperation> streamByPeriod(
+        LocalDateTime periodStart, LocalDateTime periodEnd) {
+      return getColumns().streamByPeriod(periodStart, periodEnd);
+    }
+
+    @Override
+    public Stream<Wallet.WalletOperation> streamByType(boolean isIncome) {
+      return getColumns().streamByType(isIncome);
+    }
+  }
+
+  /**
+   * Формат файлов пользователей. JSON - исходный текстовый формат. BINARY - компактный двоичный
+   * формат с хранением операций кошелька по столбцам (см. UserdataBinaryFormat). Выбирается при
+   * запуске приложения, файлы в любом формате читаются всегда.
+   */
+  public enum UserdataFormat {
+    JSON(".json"),
+    BINARY(".bin");
+
+    private final String fileExtension;
+
+    UserdataFormat(String fileExtension) {
+      this.fileExtension = fileExtension;
+    }
+
+    /** Метод возвращает расширение файлов пользователей в данном формате. */
+    public String getFileExtension() {
+      return fileExtension;
+    }
+
+    /** Метод определяет формат файла пользователя по расширению. Возвращает null для других. */
+    static UserdataFormat of(Path file) {
+      String fileName = file.getFileName().toString();
+      for (UserdataFormat format : values()) {
+        if (fileName.endsWith(format.fileExtension)) {
+          return format;
+        }
+      }
+      return null;
+    }
+  }
 }
@@ -0,0 +1,232 @@
+package com.github.yuyuvu.personalbudgetingapp.infrastructure;
+
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import com.github.yuyuvu.personalbudgetingapp.model.WalletOperationsColumns;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Класс MappedWalletOperations - хранилище операций кошелька, отображённое в память прямо из файла
+ * пользователя в двоичном формате (см. UserdataBinaryFormat). Используется кошельками, прочитанными
+ * без операций, для выборок за период: начало и конец периода находятся двоичным поиском по столбцу
+ * номеров операций, упорядоченных по дате, а объекты WalletOperation создаются только для операций
+ * из периода. Сами столбцы остаются в страничном кэше операционной системы, а не в куче. <br>
+ * Хранилище создаётся только для кошельков, в которых не меньше MIN_MAPPED_WALLET_OPERATIONS
+ * операций: для небольших кошельков загрузка всех операций дешевле отображения файла. Кроме того,
+ * отображение используется только на файловых системах POSIX, где файл пользователя при сохранении
+ * можно заменить, пока прежний файл отображён в память: отображение при этом продолжает указывать
+ * на прежний файл и остаётся согласованным со сводкой, прочитанной вместе с ним.
+ */
+final class MappedWalletOperations implements Wallet.WalletOperationsStore {
+  // Минимальное количество операций кошелька, при котором файл отображается в память
+  static final int MIN_MAPPED_WALLET_OPERATIONS = 10_000;
+
+  private static final boolean MAPPING_SUPPORTED =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private final ByteBuffer buffer;
+  private final int version;
+  private final int count;
+  private final int idsOffset;
+  private final int amountsOffset;
+  private final int epochSecondsOffset;
+  private final int nanosOffset;
+  private final int codesOffset;
+  private final int incomeOperationsWordsOffset;
+  private final int incomeOperationsWordsCount;
+  private final int dateOrderOffset;
+  private final String[] categories;
+
+  /** Конструктор разбирает расположение столбцов в отображённом файле. */
+  private MappedWalletOperations(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    // Сигнатура и версия формата уже проверены, далее - длина заголовка
+    version = buffer.getInt(Integer.BYTES);
+    buffer.position(2 * Integer.BYTES);
+    skip(readLength(buffer));
+    count = readLength(buffer);
+    idsOffset = buffer.position();
+    amountsOffset = columnEnd(idsOffset, Long.BYTES);
+    epochSecondsOffset = columnEnd(amountsOffset, Long.BYTES);
+    nanosOffset = columnEnd(epochSecondsOffset, Long.BYTES);
+    buffer.position(columnEnd(nanosOffset, Integer.BYTES));
+    categories = new String[readLength(buffer)];
+    for (int i = 0; i < categories.length; i++) {
+      byte[] categoryBytes = new byte[readLength(buffer)];
+      buffer.get(categoryBytes);
+      categories[i] = new String(categoryBytes, StandardCharsets.UTF_8);
+    }
+    codesOffset = buffer.position();
+    buffer.position(columnEnd(codesOffset, Integer.BYTES));
+    incomeOperationsWordsCount = readLength(buffer);
+    incomeOperationsWordsOffset = buffer.position();
+    dateOrderOffset =
+        columnEnd(incomeOperationsWordsOffset, incomeOperationsWordsCount, Long.BYTES);
+    if (columnEnd(dateOrderOffset, Integer.BYTES) > buffer.limit()) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+  }
+
+  /**
+   * Метод отображает в память операции кошелька из файла пользователя в двоичном формате.
+   * Возвращает null, если отображение не поддерживается, файл записан версией формата без столбца
+   * номеров операций по дате, операций меньше MIN_MAPPED_WALLET_OPERATIONS или файл слишком велик
+   * для отображения одним буфером.
+   */
+  static MappedWalletOperations map(Path userdataFile) throws IOException {
+    if (!MAPPING_SUPPORTED) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(userdataFile, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt(0) != UserdataBinaryFormat.MAGIC
+          || buffer.getInt(Integer.BYTES) < UserdataBinaryFormat.DATE_ORDER_FORMAT_VERSION) {
+        return null;
+      }
+      // Количество операций записано сразу после заголовка
+      int headerLengthOffset = 2 * Integer.BYTES;
+      int countOffset = headerLengthOffset + Integer.BYTES + buffer.getInt(headerLengthOffset);
+      if (buffer.getInt(countOffset) < MIN_MAPPED_WALLET_OPERATIONS) {
+        return null;
+      }
+      return new MappedWalletOperations(buffer);
+    } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+  }
+
+  /**
+   * Метод возвращает поток операций строго внутри периода (границы не включаются), упорядоченных по
+   * дате и времени. Границы периода находятся двоичным поиском за O(log N).
+   */
+  @Override
+  public Stream<Wallet.WalletOperation> streamByPeriod(
+      LocalDateTime periodStart, LocalDateTime periodEnd) {
+    if (!periodStart.isBefore(periodEnd)) {
+      return Stream.empty();
+    }
+    int from = findFirstAfter(periodStart, false);
+    int to = findFirstAfter(periodEnd, true);
+    return IntStream.range(from, to).mapToObj(k -> getWalletOperation(getDateOrder(k)));
+  }
+
+  /** Метод возвращает поток операций определённого типа в порядке их добавления. */
+  @Override
+  public Stream<Wallet.WalletOperation> streamByType(boolean isIncome) {
+    return IntStream.range(0, count)
+        .filter(i -> isIncome(i) == isIncome)
+        .mapToObj(this::getWalletOperation);
+  }
+
+  /**
+   * Метод возвращает позицию в столбце номеров операций по дате первой операции, которая позже
+   * указанного момента (или не раньше него при inclusive = true).
+   */
+  private int findFirstAfter(LocalDateTime dateTime, boolean inclusive) {
+    long seconds = dateTime.toEpochSecond(ZoneOffset.UTC);
+    int nano = dateTime.getNano();
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int i = getDateOrder(middle);
+      int comparison =
+          WalletOperationsColumns.compareDateTimes(
+              buffer.getLong(epochSecondsOffset + i * Long.BYTES),
+              buffer.getInt(nanosOffset + i * Integer.BYTES),
+              seconds,
+              nano);
+      if (comparison < 0 || (comparison == 0 && !inclusive)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Метод создаёт объект операции по её номеру в столбцах. Сумма из файла до версии 3 формата
+   * переводится из double в копейки.
+   */
+  private Wallet.WalletOperation getWalletOperation(int i) {
+    int nano = buffer.getInt(nanosOffset + i * Integer.BYTES);
+    LocalDateTime dateTime =
+        nano == WalletOperationsColumns.NULL_NANOS
+            ? null
+            : LocalDateTime.ofEpochSecond(
+                buffer.getLong(epochSecondsOffset + i * Long.BYTES), nano, ZoneOffset.UTC);
+    int code = buffer.getInt(codesOffset + i * Integer.BYTES);
+    long amountInMinorUnits;
+    try {
+      amountInMinorUnits =
+          UserdataBinaryFormat.readAmountInMinorUnits(
+              buffer.getLong(amountsOffset + i * Long.BYTES), version);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Wallet.WalletOperation(
+        buffer.getLong(idsOffset + i * Long.BYTES),
+        amountInMinorUnits,
+        isIncome(i),
+        code == WalletOperationsColumns.NULL_CATEGORY_CODE ? null : categories[code],
+        dateTime);
+  }
+
+  /** Метод проверяет по битовому множеству типов, является ли операция доходом. */
+  private boolean isIncome(int i) {
+    int word = i / Long.SIZE;
+    if (word >= incomeOperationsWordsCount) {
+      return false;
+    }
+    long bits = buffer.getLong(incomeOperationsWordsOffset + word * Long.BYTES);
+    return (bits & (1L << (i % Long.SIZE))) != 0;
+  }
+
+  private int getDateOrder(int k) {
+    return buffer.getInt(dateOrderOffset + k * Integer.BYTES);
+  }
+
+  /** Метод возвращает позицию после столбца из count значений указанной ширины. */
+  private int columnEnd(int columnOffset, int width) throws IOException {
+    return columnEnd(columnOffset, count, width);
+  }
+
+  private int columnEnd(int columnOffset, int length, int width) throws IOException {
+    long end = columnOffset + (long) length * width;
+    if (end > buffer.limit()) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+    return (int) end;
+  }
+
+  private void skip(int length) throws IOException {
+    buffer.position(columnEnd(buffer.position(), length, 1));
+  }
+
+  /** Метод читает длину или количество элементов и проверяет, что значение не отрицательно. */
+  private static int readLength(ByteBuffer buffer) throws IOException {
+    int length = buffer.getInt();
+    if (length < 0) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+    return length;
+  }
+}
@@ -0,0 +1,268 @@
+package com.github.yuyuvu.personalbudgetingapp.infrastructure;
+
+import com.github.yuyuvu.personalbudgetingapp.model.User;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Класс UserSessionsRegistry хранит пользователей, которые сейчас находятся в аккаунте, и
+ * блокировки для работы с их данными. <br>
+ * Блокировки распределены по фиксированному набору полос (USERS_LOCKS_STRIPES) по хэшу имени
+ * пользователя: данные одного пользователя всегда защищены одной и той же блокировкой, а операции с
+ * разными пользователями в большинстве случаев выполняются параллельно. <br>
+ * Пока пользователь в аккаунте, его данные изменяет только поток его сессии, удерживая блокировку
+ * при обработке команды и отпуская её на время ожидания ввода. Переводы такому пользователю
+ * применяются к его кошельку в оперативной памяти, а не к файлу, поэтому выход из аккаунта не
+ * перезаписывает полученные переводы.
+ */
+public class UserSessionsRegistry {
+  private static final int USERS_LOCKS_STRIPES = 64;
+  private static final ReentrantLock[] usersLocks = new ReentrantLock[USERS_LOCKS_STRIPES];
+  private static final ConcurrentHashMap<String, UserSession> activeUsersSessions =
+      new ConcurrentHashMap<>();
+
+  static {
+    for (int i = 0; i < usersLocks.length; i++) {
+      usersLocks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Метод открывает сессию пользователя. Если пользователь уже в аккаунте (в другой сессии), то
+   * возвращается тот же объект пользователя, иначе он получается через переданный загрузчик под
+   * блокировкой пользователя.
+   */
+  public static User openSession(String username, UserLoader userLoader) throws IOException {
+    User[] result = new User[1];
+    runWithUsersLocked(
+        () -> {
+          UserSession session = activeUsersSessions.get(username);
+          if (session == null) {
+            session = new UserSession(userLoader.load(username));
+            activeUsersSessions.put(username, session);
+          }
+          session.sessionsCount++;
+          result[0] = session.user;
+        },
+        username);
+    return result[0];
+  }
+
+  /**
+   * Метод закрывает сессию пользователя, предварительно сохраняя его данные переданным методом.
+   * Пользователь перестаёт считаться находящимся в аккаунте после закрытия всех его сессий, даже
+   * если сохранение завершилось ошибкой.
+   */
+  public static void closeSession(User user, UserSaver userSaver) throws IOException {
+    runWithUsersLocked(
+        () -> {
+          try {
+            userSaver.save(user);
+          } finally {
+            UserSession session = activeUsersSessions.get(user.getUsername());
+            if (session != null && session.user == user && --session.sessionsCount == 0) {
+              activeUsersSessions.remove(user.getUsername());
+            }
+          }
+        },
+        user.getUsername());
+  }
+
+  /**
+   * Метод возвращает объект пользователя, который сейчас в аккаунте, или null. Пользоваться
+   * результатом можно только под блокировкой этого пользователя (см. runWithUsersLocked).
+   */
+  public static User getActiveUser(String username) {
+    UserSession session = activeUsersSessions.get(username);
+    return session == null ? null : session.user;
+  }
+
+  /**
+   * Метод выполняет действие под блокировками данных указанных пользователей. Блокировки, уже
+   * удерживаемые текущим потоком (например, блокировка пользователя сессии на время команды), не
+   * отпускаются, поэтому действие выполняется внутри них. Недостающие блокировки захватываются в
+   * порядке номеров полос, что исключает взаимную блокировку. <br>
+   * Если для этого пришлось бы ждать полосу с номером меньше уже удерживаемой, то выбрасывается
+   * IllegalStateException: такие действия нужно выполнять через tryRunWithUsersLocked, а при его
+   * неудаче - через runWithUsersRelocked.
+   */
+  public static <E extends Exception> void runWithUsersLocked(
+      UsersAction<E> action, String... usernames) throws E {
+    int[] missingStripes = getMissingStripes(usernames);
+    if (missingStripes.length > 0 && missingStripes[0] < getHighestHeldStripe()) {
+      throw new IllegalStateException(
+          "Блокировки пользователей нельзя захватить по порядку, пока удерживаются другие.");
+    }
+    for (int stripe : missingStripes) {
+      usersLocks[stripe].lock();
+    }
+    try {
+      action.run();
+    } finally {
+      unlockStripes(missingStripes, missingStripes.length);
+    }
+  }
+
+  /**
+   * Метод выполняет действие под блокировками указанных пользователей, не отпуская уже удерживаемые
+   * текущим потоком блокировки. Недостающие полосы с номером больше удерживаемых захватываются с
+   * ожиданием, остальные - только если они свободны. Если хотя бы одна из них занята, то действие
+   * не выполняется, захваченные здесь блокировки отпускаются и возвращается false.
+   */
+  public static <E extends Exception> boolean tryRunWithUsersLocked(
+      UsersAction<E> action, String... usernames) throws E {
+    int[] missingStripes = getMissingStripes(usernames);
+    int highestHeldStripe = getHighestHeldStripe();
+    int lockedCount = 0;
+    try {
+      for (int stripe : missingStripes) {
+        if (stripe > highestHeldStripe) {
+          usersLocks[stripe].lock();
+        } else if (!usersLocks[stripe].tryLock()) {
+          return false;
+        }
+        lockedCount++;
+      }
+      action.run();
+      return true;
+    } finally {
+      unlockStripes(missingStripes, lockedCount);
+    }
+  }
+
+  /**
+   * Метод явно перезахватывает блокировки: отпускает все блокировки данных пользователей,
+   * удерживаемые текущим потоком, и захватывает их вместе с блокировками указанных пользователей в
+   * порядке номеров полос, после чего выполняет действие. После действия прежние блокировки
+   * остаются захваченными, а добавленные отпускаются. <br>
+   * Пока блокировки отпущены, данные пользователей, в том числе пользователя сессии, могут быть
+   * изменены другими потоками. Поэтому метод предназначен только для действий, которые сами
+   * проверяют всё, от чего зависят (существование получателя, баланс и т.п.), и после которых
+   * вызывающий код не полагается на проверки, сделанные до вызова.
+   */
+  public static <E extends Exception> void runWithUsersRelocked(
+      UsersAction<E> action, String... usernames) throws E {
+    int[] holdCounts = releaseHeldUsersLocks();
+    boolean[] isNeeded = new boolean[USERS_LOCKS_STRIPES];
+    for (String username : usernames) {
+      isNeeded[getStripe(username)] = true;
+    }
+    int[] neededStripes = new int[USERS_LOCKS_STRIPES];
+    int neededCount = 0;
+    try {
+      for (int i = 0; i < USERS_LOCKS_STRIPES; i++) {
+        if (isNeeded[i] || holdCounts[i] > 0) {
+          usersLocks[i].lock();
+          if (isNeeded[i]) {
+            neededStripes[neededCount++] = i;
+          } else {
+            holdCounts[i]--;
+          }
+        }
+      }
+      action.run();
+    } finally {
+      unlockStripes(neededStripes, neededCount);
+      // Прежние блокировки восстанавливаются без ожидания: их полосы уже захвачены
+      reacquireUsersLocks(holdCounts);
+    }
+  }
+
+  /**
+   * Метод выполняет ожидание (например, ввода пользователя), отпустив на это время все блокировки
+   * данных пользователей, удерживаемые текущим потоком. Вызывается только на границах команд, когда
+   * вызывающий код не полагается на проверки, сделанные до ожидания.
+   */
+  public static <T> T callWithoutUsersLocks(Supplier<T> waiting) {
+    int[] releasedHoldCounts = releaseHeldUsersLocks();
+    try {
+      return waiting.get();
+    } finally {
+      reacquireUsersLocks(releasedHoldCounts);
+    }
+  }
+
+  private static int getStripe(String username) {
+    return Math.floorMod(username.hashCode(), USERS_LOCKS_STRIPES);
+  }
+
+  /** Метод возвращает упорядоченные номера полос пользователей, не захваченных текущим потоком. */
+  private static int[] getMissingStripes(String... usernames) {
+    int[] stripes =
+        Arrays.stream(usernames)
+            .mapToInt(UserSessionsRegistry::getStripe)
+            .distinct()
+            .filter(stripe -> !usersLocks[stripe].isHeldByCurrentThread())
+            .toArray();
+    Arrays.sort(stripes);
+    return stripes;
+  }
+
+  private static int getHighestHeldStripe() {
+    for (int i = USERS_LOCKS_STRIPES - 1; i >= 0; i--) {
+      if (usersLocks[i].isHeldByCurrentThread()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void unlockStripes(int[] stripes, int count) {
+    for (int i = 0; i < count; i++) {
+      usersLocks[stripes[i]].unlock();
+    }
+  }
+
+  private static int[] releaseHeldUsersLocks() {
+    int[] holdCounts = new int[USERS_LOCKS_STRIPES];
+    for (int i = 0; i < USERS_LOCKS_STRIPES; i++) {
+      holdCounts[i] = usersLocks[i].getHoldCount();
+      for (int j = 0; j < holdCounts[i]; j++) {
+        usersLocks[i].unlock();
+      }
+    }
+    return holdCounts;
+  }
+
+  private static void reacquireUsersLocks(int[] holdCounts) {
+    for (int i = 0; i < USERS_LOCKS_STRIPES; i++) {
+      for (int j = 0; j < holdCounts[i]; j++) {
+        usersLocks[i].lock();
+      }
+    }
+  }
+
+  /** Пользователь в аккаунте и количество его открытых сессий. */
+  private static final class UserSession {
+    private final User user;
+    private int sessionsCount;
+
+    private UserSession(User user) {
+      this.user = user;
+    }
+  }
+
+  /** Действие, выполняемое под блокировками данных пользователей. */
+  @FunctionalInterface
+  public interface UsersAction<E extends Exception> {
+    /** Метод выполняет действие. */
+    void run() throws E;
+  }
+
+  /** Функция, загружающая данные пользователя при открытии первой сессии. */
+  @FunctionalInterface
+  public interface UserLoader {
+    /** Метод загружает данные пользователя по имени. */
+    User load(String username) throws IOException;
+  }
+
+  /** Функция, сохраняющая данные пользователя при закрытии сессии. */
+  @FunctionalInterface
+  public interface UserSaver {
+    /** Метод сохраняет данные пользователя. */
+    void save(User user) throws IOException;
+  }
+}
@@ -0,0 +1,216 @@
+package com.github.yuyuvu.personalbudgetingapp.infrastructure;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.github.yuyuvu.personalbudgetingapp.model.Money;
+import com.github.yuyuvu.personalbudgetingapp.model.User;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import com.github.yuyuvu.personalbudgetingapp.model.WalletOperationsColumns;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Класс UserdataBinaryFormat записывает и читает файл пользователя в компактном двоичном формате.
+ * Используется DataPersistenceService, если он выбран для развёртывания приложения (см.
+ * DataPersistenceService.UserdataFormat). <br>
+ * Файл состоит из заголовка и операций кошелька. Заголовок - те же данные пользователя в json, что
+ * и в обычном формате, но без операций кошелька: имя, данные для авторизации, настройки, бюджеты и
+ * сводка по операциям. Операции записываются по столбцам: ID, суммы, время в секундах от начала
+ * эпохи и наносекунды, коды категорий со словарём категорий и битовое множество типов операций.
+ * Названия полей и строки дат при этом не повторяются для каждой операции, а каждая категория
+ * записывается один раз. Столбцы файла совпадают со столбцами хранилища WalletOperationsColumns,
+ * поэтому операции читаются в него без создания объектов. <br>
+ * Все значения операций записываются без потерь (с версии 3 суммы записываются целым числом копеек,
+ * в версиях 1 и 2 - двоичным представлением double и округляются до копеек при чтении), поэтому
+ * файл можно преобразовать в json и обратно без изменения данных. <br>
+ * С версии 2 после столбцов записываются номера операций, упорядоченные по дате и времени. Все
+ * столбцы, кроме словаря категорий, имеют постоянную ширину, поэтому операции большого кошелька
+ * можно искать прямо в отображённом в память файле (см. MappedWalletOperations).
+ */
+final class UserdataBinaryFormat {
+  // Сигнатура файла ("PBAW") и версия двоичного формата
+  static final int MAGIC = 0x50424157;
+  static final int BINARY_FORMAT_VERSION = 3;
+  // Первая версия, в которой записан столбец номеров операций, упорядоченных по дате и времени
+  static final int DATE_ORDER_FORMAT_VERSION = 2;
+  // Первая версия, в которой суммы операций записаны в копейках, а не в виде double
+  static final int MINOR_UNITS_FORMAT_VERSION = 3;
+
+  // Заголовок записывается без операций кошелька, они записываются отдельно по столбцам
+  private static final ObjectMapper headerObjectMapper =
+      JsonMapper.builder().addMixIn(Wallet.class, WalletWithoutOperationsMixIn.class).build();
+
+  private UserdataBinaryFormat() {}
+
+  /** Метод записывает данные пользователя в двоичном формате. */
+  static void write(User user, DataOutputStream out) throws IOException {
+    WalletOperationsColumns columns =
+        WalletOperationsColumns.of(user.getWallet().getWalletOperations());
+    byte[] header = headerObjectMapper.writeValueAsBytes(user);
+    out.writeInt(MAGIC);
+    out.writeInt(BINARY_FORMAT_VERSION);
+    out.writeInt(header.length);
+    out.write(header);
+
+    int count = columns.size();
+    out.writeInt(count);
+    WalletOperationsColumns.Cursor cursor = columns.cursor();
+    for (int i = 0; i < count; i++) {
+      out.writeLong(cursor.moveTo(i).getId());
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeLong(cursor.moveTo(i).getAmountInMinorUnits());
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeLong(cursor.moveTo(i).getEpochSecond());
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeInt(cursor.moveTo(i).getNano());
+    }
+    // Словарь категорий в порядке первого появления и коды категорий операций
+    List<String> categories = columns.getCategories();
+    out.writeInt(categories.size());
+    for (String category : categories) {
+      byte[] categoryBytes = category.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(categoryBytes.length);
+      out.write(categoryBytes);
+    }
+    BitSet incomeOperations = new BitSet(count);
+    for (int i = 0; i < count; i++) {
+      out.writeInt(cursor.moveTo(i).getCategoryCode());
+      incomeOperations.set(i, cursor.isIncome());
+    }
+    long[] incomeOperationsWords = incomeOperations.toLongArray();
+    out.writeInt(incomeOperationsWords.length);
+    for (long word : incomeOperationsWords) {
+      out.writeLong(word);
+    }
+    for (int k = 0; k < count; k++) {
+      out.writeInt(columns.getDateOrder(k));
+    }
+  }
+
+  /**
+   * Метод читает заголовок файла: данные пользователя в json без операций кошелька. После чтения
+   * поток стоит на начале операций.
+   */
+  static byte[] readHeader(DataInputStream in) throws IOException {
+    readVersion(in);
+    return in.readNBytes(readLength(in));
+  }
+
+  /** Метод проверяет сигнатуру файла и возвращает версию двоичного формата. */
+  private static int readVersion(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new StreamCorruptedException(
+          "Файл пользователя не является файлом в двоичном формате.");
+    }
+    int version = in.readInt();
+    if (version > BINARY_FORMAT_VERSION) {
+      throw new IOException(
+          "Версия двоичного формата " + version + " не поддерживается данной версией приложения.");
+    }
+    return version;
+  }
+
+  /** Метод читает операции кошелька, пропуская заголовок файла. */
+  static ArrayList<Wallet.WalletOperation> readWalletOperations(DataInputStream in)
+      throws IOException {
+    return readWalletOperationsColumns(in).toWalletOperations();
+  }
+
+  /**
+   * Метод читает операции кошелька по столбцам, пропуская заголовок файла, без создания объектов
+   * операций. В файлах версии 1 номера операций по дате не записаны и вычисляются после чтения, а
+   * суммы из файлов версий 1 и 2 переводятся из double в копейки.
+   */
+  static WalletOperationsColumns readWalletOperationsColumns(DataInputStream in)
+      throws IOException {
+    int version = readVersion(in);
+    in.skipNBytes(readLength(in));
+    int count = readLength(in);
+    long[] ids = new long[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = in.readLong();
+    }
+    long[] amountsInMinorUnits = new long[count];
+    for (int i = 0; i < count; i++) {
+      amountsInMinorUnits[i] = readAmountInMinorUnits(in.readLong(), version);
+    }
+    long[] epochSeconds = new long[count];
+    for (int i = 0; i < count; i++) {
+      epochSeconds[i] = in.readLong();
+    }
+    int[] nanos = new int[count];
+    for (int i = 0; i < count; i++) {
+      nanos[i] = in.readInt();
+    }
+    String[] categories = new String[readLength(in)];
+    for (int i = 0; i < categories.length; i++) {
+      categories[i] = new String(in.readNBytes(readLength(in)), StandardCharsets.UTF_8);
+    }
+    int[] codes = new int[count];
+    for (int i = 0; i < count; i++) {
+      codes[i] = in.readInt();
+    }
+    long[] incomeOperationsWords = new long[readLength(in)];
+    for (int i = 0; i < incomeOperationsWords.length; i++) {
+      incomeOperationsWords[i] = in.readLong();
+    }
+    int[] dateOrder = null;
+    if (version >= DATE_ORDER_FORMAT_VERSION) {
+      dateOrder = new int[count];
+      for (int k = 0; k < count; k++) {
+        dateOrder[k] = in.readInt();
+      }
+    }
+    try {
+      return new WalletOperationsColumns(
+          ids,
+          amountsInMinorUnits,
+          epochSeconds,
+          nanos,
+          categories,
+          codes,
+          BitSet.valueOf(incomeOperationsWords),
+          dateOrder);
+    } catch (IllegalArgumentException e) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+  }
+
+  /**
+   * Метод возвращает сумму операции в копейках по значению из столбца сумм. В файлах до версии
+   * MINOR_UNITS_FORMAT_VERSION в столбце записаны двоичные представления double.
+   */
+  static long readAmountInMinorUnits(long value, int version) throws IOException {
+    if (version >= MINOR_UNITS_FORMAT_VERSION) {
+      return value;
+    }
+    try {
+      return Money.toMinorUnits(Double.longBitsToDouble(value));
+    } catch (IllegalArgumentException e) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+  }
+
+  /** Метод читает длину или количество элементов и проверяет, что значение не отрицательно. */
+  private static int readLength(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new StreamCorruptedException("Файл пользователя в двоичном формате повреждён.");
+    }
+    return length;
+  }
+
+  /** Исключает операции кошелька из заголовка файла. */
+  @JsonIgnoreProperties({"walletOperations"})
+  private abstract static class WalletWithoutOperationsMixIn {}
+}
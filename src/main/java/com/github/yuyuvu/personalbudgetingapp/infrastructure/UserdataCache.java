@@ -0,0 +1,310 @@
+package com.github.yuyuvu.personalbudgetingapp.infrastructure;
+
+import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnRed;
+
+import com.github.yuyuvu.personalbudgetingapp.model.User;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс UserdataCache хранит в оперативной памяти недавно загруженных и сохранённых пользователей,
+ * чтобы переводы и повторные входы в аккаунт не читали и не разбирали файл пользователя заново (см.
+ * DataPersistenceService.loadUserdataFromFile). <br>
+ * Размер кэша ограничен количеством пользователей и их примерным весом в памяти (в байтах, с учётом
+ * загруженных операций кошелька). При превышении любого ограничения вытесняются давно не
+ * использованные пользователи. Пользователь из кэша возвращается, только если его файл не изменялся
+ * после загрузки или сохранения этого объекта, иначе он загружается из файла заново. <br>
+ * Изменения кошельков сразу дописываются в журналы (WalletJournal), а полное сохранение изменённых
+ * пользователей, которые не находятся в аккаунте (например, получателей переводов), выполняется
+ * отложенно в фоновом потоке: через некоторое время после изменения и при вытеснении из кэша. Так
+ * много переводов одному пользователю приводят к одному полному сохранению вместо роста журнала.
+ * Пользователи в аккаунте сохраняются при выходе из него, как и раньше. <br>
+ * Для наблюдения за работой кэша есть методы, возвращающие счётчики попаданий, промахов, вытеснений
+ * и отложенных сохранений.
+ */
+public class UserdataCache {
+  // Ограничения по умолчанию: количество пользователей и их суммарный примерный вес в байтах
+  public static final int DEFAULT_MAX_CACHED_USERS = 1000;
+  public static final long DEFAULT_MAX_CACHED_USERS_WEIGHT = 64L * 1024 * 1024;
+  // Примерный вес пользователя без операций кошелька и одной загруженной операции
+  private static final long USER_WEIGHT = 4 * 1024;
+  private static final long WALLET_OPERATION_WEIGHT = 256;
+  // Периодичность проверки и время, которое изменённый пользователь ждёт отложенного сохранения
+  private static final long WRITE_BEHIND_INTERVAL_SECONDS = 10;
+  private static final long WRITE_BEHIND_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private static int maxCachedUsers = DEFAULT_MAX_CACHED_USERS;
+  private static long maxCachedUsersWeight = DEFAULT_MAX_CACHED_USERS_WEIGHT;
+
+  // Порядок доступа: первым идёт пользователь, который дольше всех не использовался
+  private static final LinkedHashMap<String, CacheEntry> cachedUsers =
+      new LinkedHashMap<>(16, 0.75f, true);
+  // Вытесненные изменённые пользователи, ожидающие отложенного сохранения. До сохранения они
+  // возвращаются в кэш при обращении, чтобы у пользователя не появилось двух разных объектов
+  private static final LinkedHashMap<String, CacheEntry> evictedChangedUsers =
+      new LinkedHashMap<>();
+  private static long cachedUsersWeight;
+
+  private static final AtomicLong hitsCount = new AtomicLong();
+  private static final AtomicLong missesCount = new AtomicLong();
+  private static final AtomicLong evictionsCount = new AtomicLong();
+  private static final AtomicLong writeBehindSavesCount = new AtomicLong();
+
+  private static final ScheduledExecutorService writeBehindExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          task -> {
+            Thread thread = new Thread(task, "userdata-write-behind");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  static {
+    writeBehindExecutor.scheduleWithFixedDelay(
+        () -> flushChangedUsers(WRITE_BEHIND_DELAY_NANOS),
+        WRITE_BEHIND_INTERVAL_SECONDS,
+        WRITE_BEHIND_INTERVAL_SECONDS,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * Метод возвращает пользователя из кэша или null. Вызывается под блокировкой пользователя.
+   * Передаётся версия файла пользователя (null, если файла нет): если она не совпадает с версией,
+   * запомненной при загрузке или сохранении, то пользователь удаляется из кэша.
+   */
+  static synchronized User get(String username, UserdataFileVersion fileVersion) {
+    CacheEntry entry = cachedUsers.get(username);
+    if (entry == null) {
+      entry = evictedChangedUsers.remove(username);
+      if (entry != null) {
+        cachedUsers.put(username, entry);
+        cachedUsersWeight += entry.weight;
+      }
+    }
+    if (entry == null || !entry.fileVersion.equals(fileVersion)) {
+      if (entry != null) {
+        remove(username);
+      }
+      missesCount.incrementAndGet();
+      return null;
+    }
+    hitsCount.incrementAndGet();
+    updateWeight(entry);
+    evictIfNeeded();
+    return entry.user;
+  }
+
+  /**
+   * Метод помещает в кэш пользователя, только что загруженного из файла или сохранённого в файл,
+   * вместе с версией файла. Вызывается под блокировкой пользователя.
+   */
+  static synchronized void put(User user, UserdataFileVersion fileVersion) {
+    evictedChangedUsers.remove(user.getUsername());
+    CacheEntry entry = cachedUsers.get(user.getUsername());
+    if (entry == null || entry.user != user) {
+      if (entry != null) {
+        remove(user.getUsername());
+      }
+      entry = new CacheEntry(user);
+      cachedUsers.put(user.getUsername(), entry);
+    }
+    entry.fileVersion = fileVersion;
+    entry.changed = false;
+    updateWeight(entry);
+    evictIfNeeded();
+  }
+
+  /**
+   * Метод отмечает, что кошелёк пользователя изменился после его загрузки или сохранения, то есть
+   * пользователя нужно сохранить отложенно. Вызывается журналом изменений кошелька.
+   */
+  static synchronized void userChanged(User user) {
+    CacheEntry entry = cachedUsers.get(user.getUsername());
+    if (entry != null && entry.user == user) {
+      if (!entry.changed) {
+        entry.changed = true;
+        entry.changedAtNanos = System.nanoTime();
+      }
+      updateWeight(entry);
+      evictIfNeeded();
+    }
+  }
+
+  /**
+   * Метод удаляет пользователя из кэша, в том числе из ожидающих отложенного сохранения. Изменения
+   * его кошелька при этом не теряются: они остаются в журнале изменений и будут применены при
+   * следующей загрузке из файла.
+   */
+  public static synchronized void invalidate(String username) {
+    remove(username);
+    evictedChangedUsers.remove(username);
+  }
+
+  /**
+   * Метод сразу сохраняет изменённых пользователей, которые не находятся в аккаунте: и находящихся
+   * в кэше, и уже вытесненных из него. Фоновый поток периодически сохраняет только пользователей,
+   * изменённых не позднее WRITE_BEHIND_DELAY_NANOS назад, чтобы несколько изменений подряд
+   * приводили к одному сохранению. <br>
+   * Сохранение выполняется в том же фоновом потоке, поэтому метод дожидается и уже начатых
+   * отложенных сохранений. Не должен вызываться под блокировками данных пользователей.
+   */
+  public static void flushChangedUsers() throws IOException {
+    try {
+      writeBehindExecutor.submit(() -> flushChangedUsers(0)).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Сохранение изменённых пользователей прервано.");
+    } catch (ExecutionException e) {
+      throw new IOException("Проблемы с сохранением изменённых пользователей.", e.getCause());
+    }
+  }
+
+  private static void flushChangedUsers(long minChangeAgeNanos) {
+    List<CacheEntry> changedEntries = new ArrayList<>();
+    long now = System.nanoTime();
+    synchronized (UserdataCache.class) {
+      changedEntries.addAll(evictedChangedUsers.values());
+      for (CacheEntry entry : cachedUsers.values()) {
+        if (entry.changed && now - entry.changedAtNanos >= minChangeAgeNanos) {
+          changedEntries.add(entry);
+        }
+      }
+    }
+    for (CacheEntry entry : changedEntries) {
+      save(entry);
+    }
+  }
+
+  /**
+   * Метод задаёт ограничения размера кэша: максимальное количество пользователей и их максимальный
+   * суммарный примерный вес в байтах. Лишние пользователи сразу вытесняются.
+   */
+  public static synchronized void setLimits(int maxCachedUsers, long maxCachedUsersWeight) {
+    if (maxCachedUsers < 1 || maxCachedUsersWeight < 1) {
+      throw new IllegalArgumentException("Ограничения размера кэша должны быть положительными.");
+    }
+    UserdataCache.maxCachedUsers = maxCachedUsers;
+    UserdataCache.maxCachedUsersWeight = maxCachedUsersWeight;
+    evictIfNeeded();
+  }
+
+  /** Метод возвращает количество загрузок пользователей, выполненных из кэша. */
+  public static long getHitsCount() {
+    return hitsCount.get();
+  }
+
+  /** Метод возвращает количество загрузок пользователей, для которых пришлось читать файл. */
+  public static long getMissesCount() {
+    return missesCount.get();
+  }
+
+  /** Метод возвращает количество пользователей, вытесненных из кэша из-за его ограничений. */
+  public static long getEvictionsCount() {
+    return evictionsCount.get();
+  }
+
+  /** Метод возвращает количество отложенных сохранений изменённых пользователей. */
+  public static long getWriteBehindSavesCount() {
+    return writeBehindSavesCount.get();
+  }
+
+  /** Метод возвращает количество пользователей в кэше. */
+  public static synchronized int getCachedUsersCount() {
+    return cachedUsers.size();
+  }
+
+  /** Метод возвращает суммарный примерный вес пользователей в кэше в байтах. */
+  public static synchronized long getCachedUsersWeight() {
+    return cachedUsersWeight;
+  }
+
+  /**
+   * Метод сохраняет изменённого пользователя под его блокировкой, если он всё ещё ожидает
+   * сохранения этим объектом и не находится в аккаунте.
+   */
+  private static void save(CacheEntry entry) {
+    String username = entry.user.getUsername();
+    try {
+      UserSessionsRegistry.runWithUsersLocked(
+          () -> {
+            boolean isEvicted;
+            synchronized (UserdataCache.class) {
+              isEvicted = evictedChangedUsers.remove(username, entry);
+              if (!isEvicted && (cachedUsers.get(username) != entry || !entry.changed)) {
+                return;
+              }
+            }
+            if (UserSessionsRegistry.getActiveUser(username) == entry.user) {
+              return;
+            }
+            // Вытесненный пользователь сохраняется без возвращения в кэш
+            DataPersistenceService.saveUserdataToFile(entry.user, !isEvicted);
+            writeBehindSavesCount.incrementAndGet();
+          },
+          username);
+    } catch (IOException e) {
+      // Изменения остаются в журнале и будут применены при следующей загрузке пользователя
+      printlnRed(e.getMessage());
+    }
+  }
+
+  /**
+   * Метод вытесняет давно не использованных пользователей, пока превышено любое из ограничений.
+   * Последний использованный пользователь не вытесняется. Изменённые пользователи ставятся в
+   * очередь отложенного сохранения.
+   */
+  private static void evictIfNeeded() {
+    Iterator<CacheEntry> iterator = cachedUsers.values().iterator();
+    while (cachedUsers.size() > 1
+        && (cachedUsers.size() > maxCachedUsers || cachedUsersWeight > maxCachedUsersWeight)) {
+      CacheEntry eldest = iterator.next();
+      iterator.remove();
+      cachedUsersWeight -= eldest.weight;
+      evictionsCount.incrementAndGet();
+      if (eldest.changed) {
+        evictedChangedUsers.put(eldest.user.getUsername(), eldest);
+        writeBehindExecutor.execute(() -> save(eldest));
+      }
+    }
+  }
+
+  private static void remove(String username) {
+    CacheEntry entry = cachedUsers.remove(username);
+    if (entry != null) {
+      cachedUsersWeight -= entry.weight;
+    }
+  }
+
+  /** Метод пересчитывает примерный вес пользователя по количеству загруженных операций. */
+  private static void updateWeight(CacheEntry entry) {
+    Wallet wallet = entry.user.getWallet();
+    long weight = USER_WEIGHT;
+    if (wallet.areWalletOperationsLoaded()) {
+      weight += WALLET_OPERATION_WEIGHT * wallet.getWalletOperations().size();
+    }
+    cachedUsersWeight += weight - entry.weight;
+    entry.weight = weight;
+  }
+
+  /** Пользователь в кэше и сведения о нём. */
+  private static final class CacheEntry {
+    private final User user;
+    private UserdataFileVersion fileVersion;
+    // Кошелёк изменён после последней загрузки или сохранения и ожидает отложенного сохранения
+    private boolean changed;
+    private long changedAtNanos;
+    private long weight;
+
+    private CacheEntry(User user) {
+      this.user = user;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.yuyuvu.personalbudgetingapp.infrastructure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * Класс UserdataFileVersion - версия файла пользователя, по которой проверяется, что файл не был
+ * заменён или изменён с момента чтения (для отложенной загрузки операций кошелька и для кэша
+ * пользователей). <br>
+ * Одного времени последнего изменения для этого недостаточно: его точность в файловой системе
+ * бывает грубой, и сохранение в тот же момент времени его не меняет. Поэтому вместе с ним
+ * сравниваются ключ файла в файловой системе (при сохранении файл заменяется новым, и ключ меняется
+ * там, где он поддерживается) и размер файла.
+ */
+final class UserdataFileVersion {
+  private final FileTime lastModifiedTime;
+  private final Object fileKey;
+  private final long size;
+
+  private UserdataFileVersion(BasicFileAttributes attributes) {
+    this.lastModifiedTime = attributes.lastModifiedTime();
+    this.fileKey = attributes.fileKey();
+    this.size = attributes.size();
+  }
+
+  /** Метод читает текущую версию файла. */
+  static UserdataFileVersion of(Path file) throws IOException {
+    return new UserdataFileVersion(Files.readAttributes(file, BasicFileAttributes.class));
+  }
+
+  /** Метод читает текущую версию файла или возвращает null, если файла нет. */
+  static UserdataFileVersion ofOrNull(Path file) {
+    try {
+      return of(file);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof UserdataFileVersion that)) {
+      return false;
+    }
+    return size == that.size
+        && lastModifiedTime.equals(that.lastModifiedTime)
+        && Objects.equals(fileKey, that.fileKey);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(lastModifiedTime, fileKey, size);
+  }
+}
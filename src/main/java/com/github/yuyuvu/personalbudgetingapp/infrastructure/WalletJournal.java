@@ -0,0 +1,232 @@
+package com.github.yuyuvu.personalbudgetingapp.infrastructure;
+
+import static com.github.yuyuvu.personalbudgetingapp.presentation.ColorPrinter.printlnRed;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.yuyuvu.personalbudgetingapp.model.User;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import com.github.yuyuvu.personalbudgetingapp.model.WalletChangesListener;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Set;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Класс WalletJournal - журнал изменений операций кошелька отдельного пользователя. Каждое
+ * изменение (добавление, удаление, очистка операций, переименование категорий) дописывается в конец
+ * файла журнала одной строкой json с порядковым номером записи, поэтому новая операция не требует
+ * перезаписи всего файла пользователя. <br>
+ * При загрузке пользователя записи журнала с номерами больше сохранённого в файле пользователя
+ * применяются к кошельку заново. После COMPACTION_THRESHOLD записей, при выходе из аккаунта и при
+ * замене кошелька целиком данные пользователя сохраняются полностью, а журнал удаляется (см.
+ * DataPersistenceService.saveUserdataToFile). Изменённые пользователи, которые не находятся в
+ * аккаунте, также сохраняются полностью отложенно в фоновом потоке (см. UserdataCache).
+ */
+class WalletJournal implements WalletChangesListener {
+  // Количество записей в журнале, после которого данные пользователя сохраняются полностью
+  static final int COMPACTION_THRESHOLD = 1000;
+  // Результат replay для журнала с повреждённой записью
+  static final int DAMAGED_JOURNAL = -1;
+
+  private final User user;
+  private final Path journalFile;
+  private final ObjectMapper jsonObjectMapper;
+  // Количество записей в текущем файле журнала: применённых при загрузке и добавленных затем
+  private int recordsCount;
+
+  /**
+   * Конструктор журнала. recordsCount - количество записей, уже находящихся в файле журнала
+   * (применённых при загрузке пользователя), чтобы журнал, который много раз применялся при
+   * загрузке, всё равно сжимался после COMPACTION_THRESHOLD записей.
+   */
+  WalletJournal(User user, Path journalFile, ObjectMapper jsonObjectMapper, int recordsCount) {
+    this.user = user;
+    this.journalFile = journalFile;
+    this.jsonObjectMapper = jsonObjectMapper;
+    this.recordsCount = recordsCount;
+  }
+
+  @Override
+  public void walletOperationAdded(Wallet.WalletOperation wo) {
+    JournalRecord record = new JournalRecord(JournalRecordType.ADD);
+    record.walletOperation = wo;
+    append(record);
+  }
+
+  @Override
+  public void walletOperationRemoved(long walletOperationId) {
+    JournalRecord record = new JournalRecord(JournalRecordType.REMOVE);
+    record.walletOperationId = walletOperationId;
+    append(record);
+  }
+
+  @Override
+  public void walletOperationsCleared() {
+    append(new JournalRecord(JournalRecordType.CLEAR));
+  }
+
+  @Override
+  public void categoriesRenamed(boolean isIncome, String newName, Set<String> oldCategories) {
+    JournalRecord record = new JournalRecord(JournalRecordType.RENAME);
+    record.isIncome = isIncome;
+    record.newCategoryName = newName;
+    record.oldCategoryNames = new ArrayList<>(oldCategories);
+    append(record);
+  }
+
+  /** При замене кошелька целиком журнал бесполезен, поэтому данные сразу сохраняются полностью. */
+  @Override
+  public void walletReplaced(Wallet wallet) {
+    compact();
+  }
+
+  /**
+   * Метод дописывает запись в конец журнала одним вызовом записи в файл. Если файла журнала нет
+   * (его удалило полное сохранение), то он создаётся заново и отсчёт записей начинается с нуля.
+   */
+  private void append(JournalRecord record) {
+    UserdataCache.userChanged(user);
+    record.seq = user.getLastJournalRecordNumber() + 1;
+    try {
+      if (!Files.exists(journalFile)) {
+        recordsCount = 0;
+      }
+      byte[] recordLine =
+          (jsonObjectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+      Files.write(journalFile, recordLine, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException | JacksonException e) {
+      // Изменение остаётся в оперативной памяти и попадёт в файл при полном сохранении
+      printlnRed(
+          "Проблемы с записью в журнал изменений пользователя "
+              + user.getUsername()
+              + ". Данные будут сохранены полностью при выходе из аккаунта.");
+      return;
+    }
+    user.setLastJournalRecordNumber(record.seq);
+    if (++recordsCount >= COMPACTION_THRESHOLD) {
+      compact();
+    }
+  }
+
+  private void compact() {
+    try {
+      DataPersistenceService.saveUserdataToFile(user);
+      recordsCount = 0;
+    } catch (IOException e) {
+      printlnRed(e.getMessage());
+    }
+  }
+
+  /**
+   * Метод применяет к кошельку пользователя записи журнала, которых ещё нет в сохранённых данных
+   * пользователя, и возвращает количество применённых записей. Чтение останавливается на первой
+   * повреждённой записи (например, строке, дописанной не до конца из-за сбоя). Если такая запись
+   * была найдена, то есть журнал нужно заменить полным сохранением данных, то возвращается
+   * DAMAGED_JOURNAL.
+   */
+  static int replay(User user, Path journalFile, ObjectMapper jsonObjectMapper)
+      throws IOException {
+    if (!Files.exists(journalFile)) {
+      return 0;
+    }
+    int replayedRecordsCount = 0;
+    try (BufferedReader br = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        JournalRecord record;
+        try {
+          record = jsonObjectMapper.readValue(line, JournalRecord.class);
+        } catch (JacksonException e) {
+          return DAMAGED_JOURNAL;
+        }
+        if (record.seq <= user.getLastJournalRecordNumber()) {
+          // Запись уже учтена в файле пользователя
+          continue;
+        }
+        if (record.seq != user.getLastJournalRecordNumber() + 1 || !record.applyTo(user)) {
+          return DAMAGED_JOURNAL;
+        }
+        user.setLastJournalRecordNumber(record.seq);
+        replayedRecordsCount++;
+      }
+    }
+    return replayedRecordsCount;
+  }
+
+  /** Типы записей журнала. */
+  enum JournalRecordType {
+    ADD,
+    REMOVE,
+    CLEAR,
+    RENAME
+  }
+
+  /** Запись журнала. В файл попадают только поля, заполненные для данного типа записи. */
+  @JsonAutoDetect(
+      fieldVisibility = JsonAutoDetect.Visibility.ANY,
+      getterVisibility = JsonAutoDetect.Visibility.NONE,
+      isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private static final class JournalRecord {
+    private long seq;
+    private JournalRecordType type;
+    private Wallet.WalletOperation walletOperation;
+    private Long walletOperationId;
+    private Boolean isIncome;
+    private String newCategoryName;
+    private ArrayList<String> oldCategoryNames;
+
+    /** Данный конструктор должен использоваться только библиотекой Jackson для десериализации. */
+    @JsonCreator
+    private JournalRecord() {}
+
+    private JournalRecord(JournalRecordType type) {
+      this.type = type;
+    }
+
+    /**
+     * Метод применяет запись к кошельку пользователя. Возвращает false, если запись не содержит
+     * нужных для её типа полей.
+     */
+    private boolean applyTo(User user) {
+      Wallet wallet = user.getWallet();
+      if (type == null) {
+        return false;
+      }
+      switch (type) {
+        case ADD -> {
+          if (walletOperation == null) {
+            return false;
+          }
+          wallet.getWalletOperations().add(walletOperation);
+        }
+        case REMOVE -> {
+          if (walletOperationId == null) {
+            return false;
+          }
+          wallet.removeWalletOperationById(walletOperationId);
+        }
+        case CLEAR -> wallet.getWalletOperations().clear();
+        case RENAME -> {
+          if (isIncome == null || newCategoryName == null || oldCategoryNames == null) {
+            return false;
+          }
+          wallet.renameCategories(
+              isIncome, newCategoryName, oldCategoryNames.toArray(new String[0]));
+        }
+        default -> {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.yuyuvu.personalbudgetingapp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Класс CategoryDictionary - словарь категорий операций одного типа (доходов или расходов) одного
+ * кошелька. Каждому названию категории выдаётся плотный целочисленный код, операции кошелька хранят
+ * код и ссылку на словарь вместо собственной строки с названием. Поэтому каждое название хранится в
+ * кошельке один раз, а отбор операций по категории сравнивает коды, а не строки. <br>
+ * Переименование и объединение категорий выполняются таблицей псевдонимов: код старой категории
+ * начинает ссылаться на код новой, а коды в самих операциях не меняются. Стоимость переименования
+ * поэтому не зависит от количества операций. Код, на который ссылаются операции, переводится в код
+ * действующей категории (resolve) по цепочке ссылок, которая сокращается при каждом проходе. <br>
+ * Не сохраняется в файл: Wallet заполняет словарь заново при добавлении операций в индекс.
+ */
+final class CategoryDictionary {
+  /** Код, возвращаемый для названия, которого нет в словаре. */
+  static final int NO_CODE = -1;
+
+  private final ArrayList<String> names = new ArrayList<>();
+  // Названия действующих категорий и их коды. Названия переименованных категорий удаляются, чтобы
+  // новая операция со старым названием попала в новую отдельную категорию
+  private final HashMap<String, Integer> codes = new HashMap<>();
+  // Таблица псевдонимов: для каждого кода - код категории, в которую он переименован, или он сам
+  private int[] aliases = new int[8];
+
+  /** Метод возвращает код категории, добавляя её в словарь, если её там ещё нет. */
+  int encode(String name) {
+    Integer code = codes.get(name);
+    if (code == null) {
+      code = names.size();
+      names.add(name);
+      codes.put(name, code);
+      if (code == aliases.length) {
+        aliases = Arrays.copyOf(aliases, aliases.length * 2);
+      }
+      aliases[code] = code;
+    }
+    return code;
+  }
+
+  /** Метод возвращает код действующей категории или NO_CODE, если категории нет в словаре. */
+  int find(String name) {
+    return codes.getOrDefault(name, NO_CODE);
+  }
+
+  /** Метод возвращает название категории по коду, в том числе по коду переименованной категории. */
+  String decode(int code) {
+    return names.get(resolve(code));
+  }
+
+  /**
+   * Метод возвращает код действующей категории, в которую переименована категория с указанным кодом
+   * (или сам код, если она не переименовывалась). Цепочка ссылок при этом сокращается вдвое.
+   */
+  int resolve(int code) {
+    while (aliases[code] != code) {
+      aliases[code] = aliases[aliases[code]];
+      code = aliases[code];
+    }
+    return code;
+  }
+
+  /**
+   * Метод переименовывает категорию. Если категория с новым названием уже есть, то старая
+   * объединяется с ней.
+   */
+  void rename(String name, String newName) {
+    Integer code = codes.get(name);
+    if (code == null || Objects.equals(name, newName)) {
+      return;
+    }
+    int newCode = encode(newName);
+    codes.remove(name);
+    aliases[code] = newCode;
+  }
+}
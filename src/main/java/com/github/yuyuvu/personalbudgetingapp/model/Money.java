@@ -0,0 +1,41 @@
+package com.github.yuyuvu.personalbudgetingapp.model;
+
+/**
+ * Класс Money переводит денежные суммы между значениями double, с которыми работают меню, отчёты и
+ * файлы, и целым количеством минимальных единиц валюты (копеек), в котором суммы хранятся и
+ * складываются внутри кошелька. Суммы в копейках складываются и вычитаются точно и без упаковки в
+ * объекты, поэтому итоговые суммы не накапливают погрешность, а нулевой баланс или остаток бюджета
+ * проверяется точным сравнением с нулём. <br>
+ * Суммы из файлов старых версий, записанные как double, при чтении округляются до копеек.
+ */
+public final class Money {
+  /** Количество минимальных единиц (копеек) в одной единице валюты. */
+  public static final long MINOR_UNITS_PER_UNIT = 100;
+
+  // Наибольшая по модулю сумма, которую можно перевести в копейки без переполнения long
+  private static final double MAX_AMOUNT = (double) (Long.MAX_VALUE / MINOR_UNITS_PER_UNIT);
+
+  private Money() {}
+
+  /**
+   * Метод переводит сумму в копейки с округлением до ближайшей копейки. Для сумм, которые нельзя
+   * представить в копейках (бесконечность, NaN или слишком большое значение), выбрасывает
+   * IllegalArgumentException.
+   */
+  public static long toMinorUnits(double amount) {
+    if (!(Math.abs(amount) <= MAX_AMOUNT)) {
+      throw new IllegalArgumentException("Сумма слишком велика или не является числом.");
+    }
+    return Math.round(amount * MINOR_UNITS_PER_UNIT);
+  }
+
+  /** Метод переводит сумму в копейках в значение double для вывода и записи в файл. */
+  public static double toAmount(long minorUnits) {
+    return (double) minorUnits / MINOR_UNITS_PER_UNIT;
+  }
+
+  /** Метод округляет сумму до копеек. */
+  public static double round(double amount) {
+    return toAmount(toMinorUnits(amount));
+  }
+}
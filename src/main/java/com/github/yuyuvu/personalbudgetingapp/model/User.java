@@ -1,6 +1,7 @@
 package com.github.yuyuvu.personalbudgetingapp.model;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.util.Arrays;
 import java.util.Properties;
 
@@ -14,11 +15,21 @@ import java.util.Properties;
  * кошелька (getWallet).
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+// Кошелёк записывается последним, а его операции - в самом конце файла (см. Wallet)
+@JsonPropertyOrder({
+  "username",
+  "passwordData",
+  "userAppConfig",
+  "lastJournalRecordNumber",
+  "wallet"
+})
 public class User {
   private String username;
   private String[] passwordData;
   private Properties userAppConfig;
   private Wallet wallet;
+  // Номер последней записи журнала изменений кошелька, уже учтённой в сохранённом файле
+  private long lastJournalRecordNumber;
 
   /** Данный конструктор должен использоваться только библиотекой Jackson для десериализации. */
   private User() {}
@@ -36,6 +47,16 @@ public class User {
     return username;
   }
 
+  /** Метод для получения данных для аутентификации: хэша, соли и параметров хэширования. */
+  public String[] getPasswordData() {
+    return passwordData;
+  }
+
+  /** Метод для замены данных для аутентификации после повторного вычисления хэша пароля. */
+  public void setPasswordData(String[] passwordData) {
+    this.passwordData = passwordData;
+  }
+
   /** Метод для получения экземпляра кошелька, который привязан к данному пользователю. */
   public Wallet getWallet() {
     return wallet;
@@ -46,9 +67,28 @@ public class User {
     return userAppConfig;
   }
 
-  /** Метод для смены экземпляра кошелька при загрузке снимка состояния из файла. */
+  /**
+   * Метод для смены экземпляра кошелька при загрузке снимка состояния из файла. Получатель
+   * уведомлений об изменениях (журнал) переносится на новый кошелёк и узнаёт о замене.
+   */
   public void setWallet(Wallet wallet) {
+    WalletChangesListener changesListener =
+        this.wallet != null ? this.wallet.getChangesListener() : null;
     this.wallet = wallet;
+    if (changesListener != null) {
+      this.wallet.setChangesListener(changesListener);
+      changesListener.walletReplaced(wallet);
+    }
+  }
+
+  /** Метод для получения номера последней записи журнала, учтённой в данных пользователя. */
+  public long getLastJournalRecordNumber() {
+    return lastJournalRecordNumber;
+  }
+
+  /** Метод для изменения номера последней записи журнала, учтённой в данных пользователя. */
+  public void setLastJournalRecordNumber(long lastJournalRecordNumber) {
+    this.lastJournalRecordNumber = lastJournalRecordNumber;
   }
 
   /**
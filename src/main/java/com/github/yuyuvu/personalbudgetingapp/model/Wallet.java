@@ -2,11 +2,25 @@ package com.github.yuyuvu.personalbudgetingapp.model;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Объекты класса Wallet хранят: <br>
@@ -17,6 +31,15 @@ import java.util.stream.Collectors;
  * 2) хэш-таблицу с названиями категорий расходов, на которые установлен бюджет, с соответствующими
  * заданными бюджетами - HashMap < String, Double > budgetCategoriesAndLimits. <br>
  * <br>
+ * 3) последний выданный ID операции - long lastWalletOperationId. <br>
+ * <br>
+ * 4) версию формата, в котором кошелёк сохраняется в файл - int formatVersion. <br>
+ * <br>
+ * Кошелёк, прочитанный из файла без операций (см. deferWalletOperations), загружает их при первом
+ * обращении, которому нужны сами операции. До этого баланс, итоговые суммы, количество операций и
+ * категории берутся из сохранённой вместе с кошельком сводки, а выборки за период и по типу - из
+ * хранилища операций (WalletOperationsStore), если оно передано вместе с загрузчиком. <br>
+ * <br>
  * Объект Wallet создаётся в конструкторе пользователя и привязывается к нему. Может быть получен
  * через getWallet класса User. Также в класс Wallet вложен статический класс WalletOperation,
  * представляющий отдельную операцию дохода или расхода. <br>
@@ -26,16 +49,80 @@ import java.util.stream.Collectors;
  * операции в кошельке, операции определённого типа (дохода или расхода), а также бюджеты по
  * категориям расходов.
  */
-@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@JsonAutoDetect(
+    fieldVisibility = JsonAutoDetect.Visibility.ANY,
+    getterVisibility = JsonAutoDetect.Visibility.NONE,
+    isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonIgnoreProperties({
+  "balance",
+  "totalIncome",
+  "totalExpenses",
+  "incomeWalletOperations",
+  "expensesWalletOperations",
+  "walletOperationsIncomeCategories",
+  "walletOperationsExpensesCategories"
+})
+// Операции записываются последними, чтобы при загрузке можно было остановить чтение перед ними
+@JsonPropertyOrder({
+  "formatVersion",
+  "budgetCategoriesAndLimits",
+  "lastWalletOperationId",
+  "walletSummary",
+  "walletOperations"
+})
 public class Wallet {
-  // Все операции кошелька
+  /**
+   * Текущая версия формата сохранения кошелька. <br>
+   * 1 - исходный формат без версии: вместе с операциями сохранялись и все вычисляемые значения
+   * (баланс, итоги, отдельные списки доходов и расходов, множества категорий). Такие файлы
+   * по-прежнему читаются, лишние поля при этом пропускаются. <br>
+   * 2 - сохраняются только поля кошелька, каждая операция записывается один раз. <br>
+   * 3 - перед операциями сохраняется сводка по ним (walletSummary), а сами операции записываются
+   * последними, поэтому остальные данные кошелька можно прочитать, не читая операции.
+   */
+  public static final int FORMAT_VERSION = 3;
+
+  // Версия формата. При сохранении всегда записывается текущая версия
+  private int formatVersion = FORMAT_VERSION;
+  // Все операции кошелька. Равен null, пока не загружены операции кошелька, прочитанного без них
   private ArrayList<WalletOperation> walletOperations;
   // Все бюджеты по категориям расходов
   private HashMap<String, Double> budgetCategoriesAndLimits;
+  // Последний выданный ID операции. Сохраняется вместе с кошельком, чтобы новые ID выдавались
+  // последовательно и после перезапуска приложения
+  private long lastWalletOperationId;
 
-  /** Данный конструктор должен использоваться только библиотекой Jackson для десериализации. */
+  // Индекс операций кошелька, не сохраняется в файл и строится заново при первом обращении
+  private transient WalletOperationsIndex walletOperationsIndex;
+  // Словари категорий доходов и расходов, заполняются при добавлении операций в индекс
+  private final transient CategoryDictionary incomeCategoriesDictionary = new CategoryDictionary();
+  private final transient CategoryDictionary expensesCategoriesDictionary =
+      new CategoryDictionary();
+  // Получатель уведомлений об изменениях операций (журнал изменений), не сохраняется в файл
+  private transient WalletChangesListener changesListener;
+  // Сводка по операциям, прочитанная из файла. Используется только для отложенной загрузки
+  private transient WalletOperationsSummary readWalletSummary;
+  // Загрузчик операций и индекс, построенный по сводке, до загрузки операций кошелька
+  private transient WalletOperationsLoader walletOperationsLoader;
+  private transient WalletOperationsIndex walletSummaryIndex;
+  // Хранилище для выборок за период до загрузки операций кошелька (может отсутствовать)
+  private transient WalletOperationsStore walletOperationsStore;
+
+  /**
+   * Данный конструктор должен использоваться только библиотекой Jackson для десериализации. Список
+   * операций и бюджеты обязательны: по их наличию данные всего кошелька отличаются от других типов
+   * снимков состояния без предварительного разбора файла в дерево.
+   */
   @JsonCreator
-  private Wallet() {}
+  private Wallet(
+      @JsonProperty(value = "walletOperations", required = true)
+          ArrayList<WalletOperation> walletOperations,
+      @JsonProperty(value = "budgetCategoriesAndLimits", required = true)
+          HashMap<String, Double> budgetCategoriesAndLimits) {
+    this.walletOperations = walletOperations != null ? walletOperations : new ArrayList<>();
+    this.budgetCategoriesAndLimits =
+        budgetCategoriesAndLimits != null ? budgetCategoriesAndLimits : new HashMap<>();
+  }
 
   /**
    * Основной конструктор, используемый при создании нового пользователя или при загрузке данных из
@@ -46,6 +133,205 @@ public class Wallet {
     budgetCategoriesAndLimits = new HashMap<>();
   }
 
+  /**
+   * Используется только библиотекой Jackson при десериализации. Файлы старого формата версию не
+   * содержат и читаются без проверки, файлы более новых версий, чем поддерживает приложение, не
+   * загружаются.
+   */
+  @JsonSetter("formatVersion")
+  private void checkFormatVersion(int formatVersion) {
+    if (formatVersion > FORMAT_VERSION) {
+      throw new IllegalArgumentException(
+          "Версия формата кошелька "
+              + formatVersion
+              + " не поддерживается данной версией приложения.");
+    }
+  }
+
+  /** Используется только библиотекой Jackson при десериализации. */
+  @JsonSetter("walletSummary")
+  private void setReadWalletSummary(WalletOperationsSummary walletSummary) {
+    this.readWalletSummary = walletSummary;
+  }
+
+  /** Используется только библиотекой Jackson при сериализации: сводка записывается до операций. */
+  @JsonGetter("walletSummary")
+  private WalletOperationsSummary makeWalletSummary() {
+    return getWalletOperationsIndex().makeSummary();
+  }
+
+  /**
+   * Метод переводит кошелёк, прочитанный из файла без операций, в режим отложенной загрузки
+   * операций: они будут загружены переданным загрузчиком при первом обращении, которому нужны сами
+   * операции. Возвращает false и ничего не меняет, если в файле не было сводки по операциям (формат
+   * старше 3) или операции в кошельке уже есть.
+   */
+  public boolean deferWalletOperations(WalletOperationsLoader walletOperationsLoader) {
+    return deferWalletOperations(walletOperationsLoader, null);
+  }
+
+  /**
+   * Метод переводит кошелёк в режим отложенной загрузки операций так же, как
+   * deferWalletOperations(WalletOperationsLoader), но до загрузки операций выборки за период
+   * выполняются в переданном хранилище операций (оно может быть null). Хранилище должно содержать
+   * те же операции, что вернёт загрузчик.
+   */
+  public boolean deferWalletOperations(
+      WalletOperationsLoader walletOperationsLoader, WalletOperationsStore walletOperationsStore) {
+    if (readWalletSummary == null || walletOperations == null || !walletOperations.isEmpty()) {
+      return false;
+    }
+    walletSummaryIndex = new WalletOperationsIndex(readWalletSummary);
+    this.walletOperationsLoader = walletOperationsLoader;
+    this.walletOperationsStore = walletOperationsStore;
+    walletOperations = null;
+    walletOperationsIndex = null;
+    return true;
+  }
+
+  /** Метод проверяет, загружены ли операции кошелька. */
+  public boolean areWalletOperationsLoaded() {
+    return walletOperations != null;
+  }
+
+  /**
+   * Метод возвращает список операций кошелька, при необходимости загружая их. Используется вместо
+   * прямого обращения к полю walletOperations, а также при сериализации кошелька.
+   */
+  @JsonGetter("walletOperations")
+  private ArrayList<WalletOperation> getLoadedWalletOperations() {
+    if (walletOperations == null) {
+      try {
+        walletOperations = walletOperationsLoader.load();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      walletOperationsLoader = null;
+      walletSummaryIndex = null;
+      walletOperationsStore = null;
+    }
+    return walletOperations;
+  }
+
+  /**
+   * Метод возвращает индекс операций кошелька. После десериализации индекс отсутствует, поэтому
+   * строится по уже загруженному списку операций. Операции с повторяющимися ID (например, из
+   * повреждённого файла) при этом получают новые ID.
+   */
+  private WalletOperationsIndex getWalletOperationsIndex() {
+    if (walletOperationsIndex == null) {
+      ArrayList<WalletOperation> loadedWalletOperations = getLoadedWalletOperations();
+      walletOperationsIndex = new WalletOperationsIndex();
+      for (WalletOperation wo : loadedWalletOperations) {
+        registerWalletOperation(wo);
+      }
+    }
+    return walletOperationsIndex;
+  }
+
+  /**
+   * Метод возвращает индекс, в котором достаточно сумм, количества операций и категорий. До
+   * загрузки операций это индекс, построенный по сводке, поэтому операции не загружаются.
+   */
+  private WalletOperationsIndex getWalletOperationsAggregates() {
+    return walletOperations == null ? walletSummaryIndex : getWalletOperationsIndex();
+  }
+
+  /**
+   * Метод добавляет операцию в индекс. Если ID операции уже занят (например, при импорте снимка
+   * состояния другого кошелька), то операции присваивается новый свободный ID. Категория операции
+   * при этом заменяется кодом из словаря категорий кошелька.
+   */
+  private void registerWalletOperation(WalletOperation wo) {
+    if (walletOperationsIndex.containsId(wo.id)) {
+      wo.id = generateNewWalletOperationId();
+    }
+    lastWalletOperationId = Math.max(lastWalletOperationId, wo.id);
+    CategoryDictionary dictionary = getCategoriesDictionary(wo.isIncome);
+    if (wo.categoriesDictionary != dictionary) {
+      wo.categoryCode = dictionary.encode(wo.getCategory());
+      wo.categoriesDictionary = dictionary;
+      wo.category = null;
+    }
+    walletOperationsIndex.add(wo);
+  }
+
+  private CategoryDictionary getCategoriesDictionary(boolean isIncome) {
+    return isIncome ? incomeCategoriesDictionary : expensesCategoriesDictionary;
+  }
+
+  /**
+   * Метод возвращает условие отбора операций кошелька определённого типа и категории. Название
+   * категории переводится в код словаря категорий один раз, после чего операции кошелька
+   * сравниваются по коду без сравнения строк. Операции, ещё не добавленные в кошелёк (например, из
+   * хранилища операций до их загрузки), сравниваются по названию категории.
+   */
+  public Predicate<WalletOperation> makeCategoryFilter(boolean isIncome, String category) {
+    if (walletOperations != null) {
+      // Операции получают коды категорий при построении индекса
+      getWalletOperationsIndex();
+    }
+    CategoryDictionary dictionary = getCategoriesDictionary(isIncome);
+    int code = dictionary.find(category);
+    return wo -> {
+      if (wo.isIncome() != isIncome) {
+        return false;
+      }
+      if (wo.categoriesDictionary == dictionary) {
+        return dictionary.resolve(wo.categoryCode) == code;
+      }
+      return Objects.equals(wo.getCategory(), category);
+    };
+  }
+
+  /**
+   * Метод для генерации нового уникального ID операции. ID выдаются последовательно после
+   * последнего выданного или самого большого из имеющихся, проверка занятости выполняется по
+   * хэш-таблице индекса, поэтому генерация не зависит от количества операций в кошельке.
+   */
+  private long generateNewWalletOperationId() {
+    WalletOperationsIndex index = getWalletOperationsIndex();
+    long id = lastWalletOperationId;
+    do {
+      // При переполнении начинаем заново с единицы, пропуская занятые ID
+      id = (id == Long.MAX_VALUE) ? 1 : id + 1;
+    } while (index.containsId(id));
+    lastWalletOperationId = id;
+    return id;
+  }
+
+  /**
+   * Метод удаляет операцию с указанным ID из кошелька. По индексу выполняется только поиск операции
+   * по ID; удаление из списка операций, упорядоченного по времени добавления, по-прежнему
+   * перебирает список и сдвигает следующие за операцией элементы, то есть занимает время,
+   * пропорциональное количеству операций.
+   */
+  public boolean removeWalletOperationById(long id) {
+    WalletOperation wo = getWalletOperationsIndex().getById(id);
+    if (wo == null) {
+      return false;
+    }
+    walletOperationsIndex.remove(wo);
+    getLoadedWalletOperations().remove(wo);
+    if (changesListener != null) {
+      changesListener.walletOperationRemoved(id);
+    }
+    return true;
+  }
+
+  /**
+   * Метод задаёт получателя уведомлений об изменениях операций кошелька. У кошелька может быть
+   * только один получатель, null отключает уведомления.
+   */
+  public void setChangesListener(WalletChangesListener changesListener) {
+    this.changesListener = changesListener;
+  }
+
+  /** Метод возвращает получателя уведомлений об изменениях операций кошелька или null. */
+  public WalletChangesListener getChangesListener() {
+    return changesListener;
+  }
+
   /**
    * Используется для отладки. <br>
    * Метод для перевода значений полей, хранимых в объекте кошелька, в строку.
@@ -60,6 +346,29 @@ public class Wallet {
         + '}';
   }
 
+  /**
+   * Хранилище операций кошелька, прочитанного из файла без них, в котором выборки выполняются без
+   * загрузки всех операций в кошелёк (например, WalletOperationsColumns). Операции выборки
+   * создаются заново при каждом обращении.
+   */
+  public interface WalletOperationsStore {
+    /**
+     * Метод возвращает поток операций строго внутри периода (границы не включаются), упорядоченных
+     * по дате и времени, а операции с одинаковыми датой и временем - в порядке добавления.
+     */
+    Stream<WalletOperation> streamByPeriod(LocalDateTime periodStart, LocalDateTime periodEnd);
+
+    /** Метод возвращает поток операций определённого типа в порядке их добавления. */
+    Stream<WalletOperation> streamByType(boolean isIncome);
+  }
+
+  /** Функция, загружающая операции кошелька, прочитанного из файла без них. */
+  @FunctionalInterface
+  public interface WalletOperationsLoader {
+    /** Метод загружает операции кошелька. */
+    ArrayList<WalletOperation> load() throws IOException;
+  }
+
   // Хотя, по логике, классу WalletOperation лучше быть нестатическим,
   // нет способа добавить пустой конструктор без неявного параметра родителя для вложенного
   // нестатического класса.
@@ -69,44 +378,68 @@ public class Wallet {
    * свои: <br>
    * <br>
    * 1) уникальные автогенерируемые ID; <br>
-   * 2) сумму операции (и для расходов, и для доходов она должна быть положительной!); <br>
+   * 2) сумму операции в копейках (и для расходов, и для доходов она должна быть положительной!). В
+   * файл сумма записывается числом в единицах валюты, см. Money; <br>
    * 3) тип операции (доход или расход); <br>
-   * 4) категорию операции; <br>
+   * 4) категорию операции (в операции, добавленной в кошелёк, - код из словаря категорий кошелька,
+   * см. CategoryDictionary); <br>
    * 5) дату и время, с которыми данная операции должна быть учтена.
    */
-  @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+  // Тип операции сохраняется только в поле isIncome. Поле income записывалось в исходном формате
+  // из-за автоопределения геттера isIncome() и при чтении пропускается
+  @JsonAutoDetect(
+      fieldVisibility = JsonAutoDetect.Visibility.ANY,
+      getterVisibility = JsonAutoDetect.Visibility.NONE,
+      isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+  @JsonIgnoreProperties({"income"})
+  @JsonPropertyOrder({"id", "amount", "isIncome", "category", "dateTime"})
   public static class WalletOperation {
     private long id;
-    private double amount;
+    @JsonIgnore private long amountInMinorUnits;
     private boolean isIncome;
+    // Категория операции, ещё не добавленной в кошелёк. После добавления вместо неё хранится код
+    // из словаря категорий кошелька
     private String category;
     private LocalDateTime dateTime;
+    private transient CategoryDictionary categoriesDictionary;
+    private transient int categoryCode;
 
     // Геттеры и сеттеры
     public long getId() {
       return id;
     }
 
+    @JsonGetter("amount")
     public double getAmount() {
-      return amount;
+      return Money.toAmount(amountInMinorUnits);
+    }
+
+    public long getAmountInMinorUnits() {
+      return amountInMinorUnits;
+    }
+
+    /**
+     * Используется только библиотекой Jackson при десериализации: сумма из файла округляется до
+     * копеек.
+     */
+    @JsonSetter("amount")
+    private void setAmount(double amount) {
+      this.amountInMinorUnits = Money.toMinorUnits(amount);
     }
 
     public boolean isIncome() {
       return isIncome;
     }
 
+    @JsonGetter("category")
     public String getCategory() {
-      return category;
+      return categoriesDictionary != null ? categoriesDictionary.decode(categoryCode) : category;
     }
 
     public LocalDateTime getDateTime() {
       return dateTime;
     }
 
-    public void setCategory(String category) {
-      this.category = category;
-    }
-
     /** Данный конструктор должен использоваться только библиотекой Jackson для десериализации. */
     @JsonCreator
     private WalletOperation() {}
@@ -114,86 +447,177 @@ public class Wallet {
     /** Основной конструктор, используемый при добавлении нового дохода или расхода. */
     public WalletOperation(
         Wallet wallet, double amount, boolean isIncome, String category, LocalDateTime dateTime) {
-      this.id = generateNewWalletOperationId(wallet);
-      this.amount = amount;
+      this.id = wallet.generateNewWalletOperationId();
+      this.amountInMinorUnits = Money.toMinorUnits(amount);
       this.isIncome = isIncome;
       this.category = category;
       this.dateTime = dateTime;
     }
 
-    /** Метод для генерации нового уникального ID операции. */
-    private long generateNewWalletOperationId(Wallet wallet) {
-      long id;
-      boolean idAlreadyExists = false;
-      while (true) {
-        id = (long) (Math.random() * Long.MAX_VALUE);
-        for (WalletOperation wo : wallet.getWalletOperations()) {
-          if (wo.getId() == id) {
-            idAlreadyExists = true;
-            break;
-          }
-        }
-        if (!idAlreadyExists) {
-          return id;
-        }
-      }
+    /**
+     * Конструктор операции с уже выданным ID и суммой в копейках. Используется при чтении кошелька
+     * из файла не в формате json (например, в двоичном формате с хранением операций по столбцам).
+     */
+    public WalletOperation(
+        long id,
+        long amountInMinorUnits,
+        boolean isIncome,
+        String category,
+        LocalDateTime dateTime) {
+      this.id = id;
+      this.amountInMinorUnits = amountInMinorUnits;
+      this.isIncome = isIncome;
+      this.category = category;
+      this.dateTime = dateTime;
     }
   }
 
-  /** Получение баланса доходов и расходов кошелька. */
+  /**
+   * Получение баланса доходов и расходов кошелька. Итоговые суммы поддерживаются индексом операций,
+   * поэтому метод не перебирает список операций.
+   */
   public double getBalance() {
-    return getTotalIncome() - getTotalExpenses();
+    return Money.toAmount(getBalanceInMinorUnits());
+  }
+
+  /** Получение точного баланса доходов и расходов кошелька в копейках. */
+  public long getBalanceInMinorUnits() {
+    return getTotalIncomeInMinorUnits() - getTotalExpensesInMinorUnits();
   }
 
   /** Получение суммы всех доходов кошелька (всегда положительное значение). */
   public double getTotalIncome() {
-    return this.getWalletOperations().stream()
-        .filter(WalletOperation::isIncome)
-        .map(WalletOperation::getAmount)
-        .reduce(0.0, Double::sum);
+    return Money.toAmount(getTotalIncomeInMinorUnits());
+  }
+
+  /** Получение суммы всех доходов кошелька в копейках. */
+  public long getTotalIncomeInMinorUnits() {
+    return getWalletOperationsAggregates().getTotalIncome();
   }
 
   /** Получение суммы всех расходов кошелька (всегда положительное значение). */
   public double getTotalExpenses() {
-    return this.getWalletOperations().stream()
-        .filter(wo -> !wo.isIncome())
-        .map(WalletOperation::getAmount)
-        .reduce(0.0, Double::sum);
+    return Money.toAmount(getTotalExpensesInMinorUnits());
   }
 
-  /** Получение всех добавленных операций кошелька (доходов и расходов). */
-  public ArrayList<WalletOperation> getWalletOperations() {
-    return walletOperations;
+  /** Получение суммы всех расходов кошелька в копейках. */
+  public long getTotalExpensesInMinorUnits() {
+    return getWalletOperationsAggregates().getTotalExpenses();
+  }
+
+  /**
+   * Получение суммы операций определённого типа (доход или расход) и категории. Значение берётся из
+   * индекса по категориям без перебора операций.
+   */
+  public double getCategoryTotal(boolean isIncome, String category) {
+    return Money.toAmount(getCategoryTotalInMinorUnits(isIncome, category));
+  }
+
+  /** Получение суммы операций определённого типа и категории в копейках. */
+  public long getCategoryTotalInMinorUnits(boolean isIncome, String category) {
+    return getWalletOperationsAggregates().getCategoryTotal(isIncome, category);
+  }
+
+  /** Получение количества операций определённого типа (доход или расход) и категории. */
+  public int getCategoryWalletOperationsCount(boolean isIncome, String category) {
+    return getWalletOperationsAggregates().getCategoryWalletOperationsCount(isIncome, category);
+  }
+
+  /**
+   * Метод меняет категорию у всех операций определённого типа (доход или расход) из старых
+   * категорий на новую. При нескольких старых категориях они объединяются в новую. Операции при
+   * этом не перебираются: старые категории становятся псевдонимами новой в словаре категорий, а
+   * индекс по категориям обновляется переносом сумм. Поэтому стоимость переименования зависит
+   * только от количества переименовываемых категорий.
+   */
+  public void renameCategories(boolean isIncome, String newName, String... oldCategories) {
+    HashSet<String> categoriesToRename = new HashSet<>(List.of(oldCategories));
+    categoriesToRename.remove(newName);
+    if (categoriesToRename.isEmpty()) {
+      return;
+    }
+    // Все операции кошелька должны получить коды категорий до переименования
+    WalletOperationsIndex index = getWalletOperationsIndex();
+    CategoryDictionary dictionary = getCategoriesDictionary(isIncome);
+    for (String category : categoriesToRename) {
+      dictionary.rename(category, newName);
+      index.renameCategory(isIncome, category, newName);
+    }
+    if (changesListener != null) {
+      changesListener.categoriesRenamed(isIncome, newName, categoriesToRename);
+    }
+  }
+
+  /**
+   * Получение операций кошелька за период (границы периода не включаются), упорядоченных по дате и
+   * времени. Операции берутся из индекса по дате без перебора и копирования всего списка, а до
+   * загрузки операций кошелька - из хранилища операций, если оно есть.
+   */
+  public Stream<WalletOperation> streamWalletOperationsByPeriod(
+      LocalDateTime periodStart, LocalDateTime periodEnd) {
+    if (walletOperations == null && walletOperationsStore != null) {
+      return walletOperationsStore.streamByPeriod(periodStart, periodEnd);
+    }
+    return getWalletOperationsIndex().streamByPeriod(periodStart, periodEnd);
   }
 
-  /** Получение всех добавленных доходных операций кошелька. */
+  /** Проверка наличия в кошельке хотя бы одной операции дохода. */
+  public boolean hasIncomeWalletOperations() {
+    return getWalletOperationsAggregates().getIncomeWalletOperationsCount() > 0;
+  }
+
+  /** Проверка наличия в кошельке хотя бы одной операции расхода. */
+  public boolean hasExpensesWalletOperations() {
+    return getWalletOperationsAggregates().getExpensesWalletOperationsCount() > 0;
+  }
+
+  /**
+   * Получение всех добавленных операций кошелька (доходов и расходов). <br>
+   * Возвращается представление списка операций: изменения через него (добавление, удаление,
+   * очистка) сразу отражаются в индексе операций кошелька.
+   */
+  public List<WalletOperation> getWalletOperations() {
+    return new WalletOperationsView();
+  }
+
+  /**
+   * Получение всех добавленных доходных операций кошелька. До загрузки операций они берутся из
+   * хранилища операций, если оно есть.
+   */
   public ArrayList<WalletOperation> getIncomeWalletOperations() {
-    return walletOperations.stream()
-        .filter(WalletOperation::isIncome)
-        .collect(Collectors.toCollection(ArrayList::new));
+    return streamWalletOperationsByType(true).collect(Collectors.toCollection(ArrayList::new));
   }
 
-  /** Получение всех добавленных расходных операций кошелька. */
+  /**
+   * Получение всех добавленных расходных операций кошелька. До загрузки операций они берутся из
+   * хранилища операций, если оно есть.
+   */
   public ArrayList<WalletOperation> getExpensesWalletOperations() {
-    return walletOperations.stream()
-        .filter(wo -> !wo.isIncome())
-        .collect(Collectors.toCollection(ArrayList::new));
+    return streamWalletOperationsByType(false).collect(Collectors.toCollection(ArrayList::new));
   }
 
-  /** Получение всех категорий добавленных расходных операций кошелька. */
-  public HashSet<String> getWalletOperationsExpensesCategories() {
-    return getWalletOperations().stream()
-        .filter(wo -> !wo.isIncome()) // проверка на расход
-        .map(WalletOperation::getCategory)
-        .collect(Collectors.toCollection(HashSet::new));
+  private Stream<WalletOperation> streamWalletOperationsByType(boolean isIncome) {
+    if (walletOperations == null && walletOperationsStore != null) {
+      return walletOperationsStore.streamByType(isIncome);
+    }
+    return getLoadedWalletOperations().stream().filter(wo -> wo.isIncome() == isIncome);
+  }
+
+  /**
+   * Получение всех категорий добавленных расходных операций кошелька. <br>
+   * Возвращается неизменяемое представление множества категорий из индекса операций: оно не
+   * пересоздаётся при каждом вызове и отражает последующие изменения кошелька.
+   */
+  public Set<String> getWalletOperationsExpensesCategories() {
+    return getWalletOperationsAggregates().getCategories(false);
   }
 
-  /** Получение всех категорий добавленных доходных операций кошелька. */
-  public HashSet<String> getWalletOperationsIncomeCategories() {
-    return getWalletOperations().stream()
-        .filter(WalletOperation::isIncome) // проверка на доход
-        .map(WalletOperation::getCategory)
-        .collect(Collectors.toCollection(HashSet::new));
+  /**
+   * Получение всех категорий добавленных доходных операций кошелька. <br>
+   * Возвращается неизменяемое представление множества категорий из индекса операций.
+   */
+  public Set<String> getWalletOperationsIncomeCategories() {
+    return getWalletOperationsAggregates().getCategories(true);
   }
 
   /**
@@ -203,4 +627,78 @@ public class Wallet {
   public HashMap<String, Double> getBudgetCategoriesAndLimits() {
     return budgetCategoriesAndLimits;
   }
+
+  /**
+   * Представление списка операций кошелька. Все изменения списка проходят через индекс операций,
+   * поэтому индекс всегда соответствует содержимому кошелька. Получатель уведомлений узнаёт об
+   * изменении только после того, как оно применено и к списку, и к индексу.
+   */
+  private class WalletOperationsView extends AbstractList<WalletOperation> {
+    @Override
+    public WalletOperation get(int index) {
+      return getLoadedWalletOperations().get(index);
+    }
+
+    @Override
+    public int size() {
+      return getLoadedWalletOperations().size();
+    }
+
+    @Override
+    public void add(int index, WalletOperation wo) {
+      getWalletOperationsIndex();
+      registerWalletOperation(wo);
+      getLoadedWalletOperations().add(index, wo);
+      if (changesListener != null) {
+        changesListener.walletOperationAdded(wo);
+      }
+    }
+
+    @Override
+    public WalletOperation set(int index, WalletOperation wo) {
+      WalletOperation previous = remove(index);
+      add(index, wo);
+      return previous;
+    }
+
+    @Override
+    public WalletOperation remove(int index) {
+      WalletOperation removed = getLoadedWalletOperations().remove(index);
+      getWalletOperationsIndex().remove(removed);
+      if (changesListener != null) {
+        changesListener.walletOperationRemoved(removed.getId());
+      }
+      return removed;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super WalletOperation> filter) {
+      WalletOperationsIndex index = getWalletOperationsIndex();
+      ArrayList<WalletOperation> removed = new ArrayList<>();
+      getLoadedWalletOperations().removeIf(
+          wo -> {
+            if (filter.test(wo)) {
+              index.remove(wo);
+              removed.add(wo);
+              return true;
+            }
+            return false;
+          });
+      if (changesListener != null) {
+        for (WalletOperation wo : removed) {
+          changesListener.walletOperationRemoved(wo.getId());
+        }
+      }
+      return !removed.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+      getWalletOperationsIndex().clear();
+      walletOperations.clear();
+      if (changesListener != null) {
+        changesListener.walletOperationsCleared();
+      }
+    }
+  }
 }
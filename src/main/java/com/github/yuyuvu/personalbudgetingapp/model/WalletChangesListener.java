@@ -0,0 +1,27 @@
+package com.github.yuyuvu.personalbudgetingapp.model;
+
+import java.util.Set;
+
+/**
+ * Интерфейс WalletChangesListener описывает получателя уведомлений об изменениях операций кошелька.
+ * Кошелёк уведомляет его после того, как изменение уже применено к списку операций и индексу.
+ * Используется журналом изменений кошелька (см. WalletJournal), который дописывает каждое изменение
+ * в файл вместо полной перезаписи файла пользователя. <br>
+ * Изменения бюджетов через этот интерфейс не передаются.
+ */
+public interface WalletChangesListener {
+  /** Метод вызывается после добавления операции в кошелёк. */
+  void walletOperationAdded(Wallet.WalletOperation wo);
+
+  /** Метод вызывается после удаления операции из кошелька. */
+  void walletOperationRemoved(long walletOperationId);
+
+  /** Метод вызывается после удаления всех операций кошелька. */
+  void walletOperationsCleared();
+
+  /** Метод вызывается после переименования (объединения) категорий операций. */
+  void categoriesRenamed(boolean isIncome, String newName, Set<String> oldCategories);
+
+  /** Метод вызывается после замены кошелька пользователя целиком (импорт снимка состояния). */
+  void walletReplaced(Wallet wallet);
+}
@@ -0,0 +1,334 @@
+package com.github.yuyuvu.personalbudgetingapp.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Класс WalletOperationsColumns - хранилище операций кошелька в куче в виде параллельных массивов
+ * примитивов: ID, суммы в копейках, время в секундах от начала эпохи и наносекунды, коды категорий
+ * со словарём категорий, битовое множество типов операций и номера операций, упорядоченные по дате
+ * и времени. Миллион операций занимает в нём около 36 МБ вместо нескольких сотен МБ для объектов
+ * WalletOperation вместе с их датами, категориями и индексом кошелька. <br>
+ * Хранилище только для чтения: используется кошельком до загрузки операций (см.
+ * Wallet.deferWalletOperations), а при изменении кошелька операции создаются заново по столбцам
+ * (toWalletOperations). Для перебора операций без создания объектов используется курсор (Cursor) с
+ * теми же геттерами, что и у WalletOperation. <br>
+ * Операции без даты (например, из повреждённого файла) записываются с наносекундами NULL_NANOS и
+ * считаются самыми ранними, но в выборки за период не попадают.
+ */
+public final class WalletOperationsColumns implements Wallet.WalletOperationsStore {
+  /** Значение наносекунд для операций без даты. */
+  public static final int NULL_NANOS = -1;
+
+  /** Код категории для операций без категории. */
+  public static final int NULL_CATEGORY_CODE = -1;
+
+  private final long[] ids;
+  private final long[] amountsInMinorUnits;
+  private final long[] epochSeconds;
+  private final int[] nanos;
+  private final String[] categories;
+  private final int[] categoryCodes;
+  private final BitSet incomeOperations;
+  private final int[] dateOrder;
+
+  /**
+   * Конструктор хранилища по готовым столбцам одинаковой длины. Массивы не копируются и не должны
+   * изменяться после передачи. Если номера операций по дате не переданы (null), то они вычисляются.
+   */
+  public WalletOperationsColumns(
+      long[] ids,
+      long[] amountsInMinorUnits,
+      long[] epochSeconds,
+      int[] nanos,
+      String[] categories,
+      int[] categoryCodes,
+      BitSet incomeOperations,
+      int[] dateOrder) {
+    int count = ids.length;
+    if (amountsInMinorUnits.length != count
+        || epochSeconds.length != count
+        || nanos.length != count
+        || categoryCodes.length != count
+        || (dateOrder != null && dateOrder.length != count)) {
+      throw new IllegalArgumentException("Столбцы операций кошелька имеют разную длину.");
+    }
+    for (int code : categoryCodes) {
+      if (code < NULL_CATEGORY_CODE || code >= categories.length) {
+        throw new IllegalArgumentException("Некорректный код категории операции кошелька.");
+      }
+    }
+    if (dateOrder != null) {
+      for (int i : dateOrder) {
+        if (i < 0 || i >= count) {
+          throw new IllegalArgumentException("Некорректный номер операции кошелька.");
+        }
+      }
+    }
+    this.ids = ids;
+    this.amountsInMinorUnits = amountsInMinorUnits;
+    this.epochSeconds = epochSeconds;
+    this.nanos = nanos;
+    this.categories = categories;
+    this.categoryCodes = categoryCodes;
+    this.incomeOperations = incomeOperations;
+    this.dateOrder = dateOrder != null ? dateOrder : sortByDateTime(epochSeconds, nanos);
+  }
+
+  /**
+   * Метод раскладывает операции по столбцам. Категории записываются в словарь в порядке первого
+   * появления, каждая - один раз.
+   */
+  public static WalletOperationsColumns of(List<Wallet.WalletOperation> walletOperations) {
+    int count = walletOperations.size();
+    long[] ids = new long[count];
+    long[] amountsInMinorUnits = new long[count];
+    long[] epochSeconds = new long[count];
+    int[] nanos = new int[count];
+    int[] categoryCodes = new int[count];
+    BitSet incomeOperations = new BitSet(count);
+    HashMap<String, Integer> categoriesCodes = new HashMap<>();
+    ArrayList<String> categories = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Wallet.WalletOperation wo = walletOperations.get(i);
+      ids[i] = wo.getId();
+      amountsInMinorUnits[i] = wo.getAmountInMinorUnits();
+      LocalDateTime dateTime = wo.getDateTime();
+      epochSeconds[i] = dateTime == null ? 0 : dateTime.toEpochSecond(ZoneOffset.UTC);
+      nanos[i] = dateTime == null ? NULL_NANOS : dateTime.getNano();
+      if (wo.getCategory() == null) {
+        categoryCodes[i] = NULL_CATEGORY_CODE;
+      } else {
+        categoryCodes[i] =
+            categoriesCodes.computeIfAbsent(
+                wo.getCategory(),
+                category -> {
+                  categories.add(category);
+                  return categories.size() - 1;
+                });
+      }
+      incomeOperations.set(i, wo.isIncome());
+    }
+    return new WalletOperationsColumns(
+        ids,
+        amountsInMinorUnits,
+        epochSeconds,
+        nanos,
+        categories.toArray(new String[0]),
+        categoryCodes,
+        incomeOperations,
+        null);
+  }
+
+  /** Метод возвращает количество операций в хранилище. */
+  public int size() {
+    return ids.length;
+  }
+
+  /** Метод возвращает неизменяемый словарь категорий: категория операции - элемент по её коду. */
+  public List<String> getCategories() {
+    return List.of(categories);
+  }
+
+  /** Метод возвращает номер операции, стоящей на указанной позиции при упорядочении по дате. */
+  public int getDateOrder(int position) {
+    return dateOrder[position];
+  }
+
+  /** Метод создаёт курсор, стоящий на первой операции. */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /** Метод создаёт объекты всех операций в порядке их добавления. */
+  public ArrayList<Wallet.WalletOperation> toWalletOperations() {
+    ArrayList<Wallet.WalletOperation> walletOperations = new ArrayList<>(size());
+    Cursor cursor = cursor();
+    for (int i = 0; i < size(); i++) {
+      walletOperations.add(cursor.moveTo(i).toWalletOperation());
+    }
+    return walletOperations;
+  }
+
+  /**
+   * Метод возвращает поток операций строго внутри периода (границы не включаются), упорядоченных по
+   * дате и времени. Границы периода находятся двоичным поиском за O(log N), объекты создаются
+   * только для операций из периода.
+   */
+  @Override
+  public Stream<Wallet.WalletOperation> streamByPeriod(
+      LocalDateTime periodStart, LocalDateTime periodEnd) {
+    if (!periodStart.isBefore(periodEnd)) {
+      return Stream.empty();
+    }
+    int from = findFirstAfter(periodStart, false);
+    int to = findFirstAfter(periodEnd, true);
+    Cursor cursor = cursor();
+    return IntStream.range(from, to)
+        .mapToObj(k -> cursor.moveTo(dateOrder[k]).toWalletOperation());
+  }
+
+  /**
+   * Метод возвращает поток операций определённого типа в порядке их добавления. Тип проверяется по
+   * битовому множеству, объекты создаются только для подходящих операций.
+   */
+  @Override
+  public Stream<Wallet.WalletOperation> streamByType(boolean isIncome) {
+    Cursor cursor = cursor();
+    return IntStream.range(0, size())
+        .filter(i -> incomeOperations.get(i) == isIncome)
+        .mapToObj(i -> cursor.moveTo(i).toWalletOperation());
+  }
+
+  /**
+   * Метод возвращает позицию в порядке по дате первой операции, которая позже указанного момента
+   * (или не раньше него при inclusive = true).
+   */
+  private int findFirstAfter(LocalDateTime dateTime, boolean inclusive) {
+    long seconds = dateTime.toEpochSecond(ZoneOffset.UTC);
+    int nano = dateTime.getNano();
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int i = dateOrder[middle];
+      int comparison = compareDateTimes(epochSeconds[i], nanos[i], seconds, nano);
+      if (comparison < 0 || (comparison == 0 && !inclusive)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Метод возвращает номера операций, упорядоченные по дате и времени (операции без даты - в
+   * начале). Операции с одинаковыми датой и временем остаются в порядке добавления, как и в индексе
+   * кошелька. Сортировка слиянием выполняется над массивом номеров без создания объектов.
+   */
+  private static int[] sortByDateTime(long[] epochSeconds, int[] nanos) {
+    int count = epochSeconds.length;
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    int[] buffer = new int[count];
+    for (int width = 1; width < count; width *= 2) {
+      for (int start = 0; start < count - width; start += 2 * width) {
+        int middle = start + width;
+        int end = Math.min(start + 2 * width, count);
+        int left = start;
+        int right = middle;
+        int k = start;
+        while (left < middle && right < end) {
+          int r = order[right];
+          int l = order[left];
+          if (compareDateTimes(epochSeconds[r], nanos[r], epochSeconds[l], nanos[l]) < 0) {
+            buffer[k++] = order[right++];
+          } else {
+            buffer[k++] = order[left++];
+          }
+        }
+        while (left < middle) {
+          buffer[k++] = order[left++];
+        }
+        while (right < end) {
+          buffer[k++] = order[right++];
+        }
+        System.arraycopy(buffer, start, order, start, end - start);
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Метод сравнивает дату и время, записанные секундами от начала эпохи и наносекундами. Операции
+   * без даты (NULL_NANOS) считаются самыми ранними.
+   */
+  public static int compareDateTimes(
+      long firstSeconds, int firstNanos, long secondSeconds, int secondNanos) {
+    if (firstNanos == NULL_NANOS || secondNanos == NULL_NANOS) {
+      return Boolean.compare(firstNanos != NULL_NANOS, secondNanos != NULL_NANOS);
+    }
+    int result = Long.compare(firstSeconds, secondSeconds);
+    return result != 0 ? result : Integer.compare(firstNanos, secondNanos);
+  }
+
+  /**
+   * Курсор - представление одной операции хранилища с теми же геттерами, что и у WalletOperation.
+   * Один курсор переставляется по операциям (moveTo), поэтому перебор операций не создаёт объектов,
+   * кроме дат, запрошенных через getDateTime.
+   */
+  public final class Cursor {
+    private int position;
+
+    private Cursor() {}
+
+    /** Метод переставляет курсор на операцию с указанным номером (в порядке добавления). */
+    public Cursor moveTo(int position) {
+      this.position = position;
+      return this;
+    }
+
+    /** Метод возвращает ID операции. */
+    public long getId() {
+      return ids[position];
+    }
+
+    /** Метод возвращает сумму операции. */
+    public double getAmount() {
+      return Money.toAmount(amountsInMinorUnits[position]);
+    }
+
+    /** Метод возвращает сумму операции в копейках. */
+    public long getAmountInMinorUnits() {
+      return amountsInMinorUnits[position];
+    }
+
+    /** Метод возвращает true для дохода и false для расхода. */
+    public boolean isIncome() {
+      return incomeOperations.get(position);
+    }
+
+    /** Метод возвращает категорию операции из словаря категорий или null. */
+    public String getCategory() {
+      int code = categoryCodes[position];
+      return code == NULL_CATEGORY_CODE ? null : categories[code];
+    }
+
+    /** Метод возвращает код категории в словаре категорий или NULL_CATEGORY_CODE. */
+    public int getCategoryCode() {
+      return categoryCodes[position];
+    }
+
+    /** Метод возвращает дату операции в секундах от начала эпохи (по UTC). */
+    public long getEpochSecond() {
+      return epochSeconds[position];
+    }
+
+    /** Метод возвращает наносекунды даты операции или NULL_NANOS для операции без даты. */
+    public int getNano() {
+      return nanos[position];
+    }
+
+    /** Метод создаёт дату и время операции или возвращает null для операции без даты. */
+    public LocalDateTime getDateTime() {
+      return nanos[position] == NULL_NANOS
+          ? null
+          : LocalDateTime.ofEpochSecond(epochSeconds[position], nanos[position], ZoneOffset.UTC);
+    }
+
+    /** Метод создаёт объект операции, на которой стоит курсор. */
+    public Wallet.WalletOperation toWalletOperation() {
+      return new Wallet.WalletOperation(
+          getId(), getAmountInMinorUnits(), isIncome(), getCategory(), getDateTime());
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.github.yuyuvu.personalbudgetingapp.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Класс WalletOperationsIndex хранит вспомогательные структуры для быстрого доступа к операциям
+ * кошелька. Не сохраняется в файл (сохраняется только сводка по нему): Wallet строит индекс заново
+ * по списку операций после загрузки и поддерживает его в актуальном состоянии при каждом изменении
+ * списка. <br>
+ * Сейчас хранит: <br>
+ * 1) хэш-таблицу операций по их ID; <br>
+ * 2) суммы (в копейках) и количество операций дохода и расхода, чтобы баланс и итоговые суммы не
+ * пересчитывались по всему списку операций при каждом обращении; <br>
+ * 3) суммы и количество операций по каждой категории отдельно для доходов и для расходов, а также
+ * множества имеющихся категорий; <br>
+ * 4) упорядоченную по дате и времени таблицу операций для выборок за период. <br>
+ * Индекс, построенный по сводке (WalletOperationsSummary), содержит только суммы, количество
+ * операций и категории (пункты 2 и 3) и используется до загрузки операций кошелька.
+ */
+class WalletOperationsIndex {
+  private final HashMap<Long, Wallet.WalletOperation> walletOperationsById = new HashMap<>();
+
+  private long totalIncome;
+  private long totalExpenses;
+  private int incomeWalletOperationsCount;
+  private int expensesWalletOperationsCount;
+
+  private final HashMap<String, CategoryAggregate> incomeCategoriesAggregates = new HashMap<>();
+  private final HashMap<String, CategoryAggregate> expensesCategoriesAggregates = new HashMap<>();
+  // Неизменяемые представления множеств категорий. Категория присутствует в множестве, пока по ней
+  // есть хотя бы одна операция (счётчик операций в CategoryAggregate больше нуля)
+  private final Set<String> incomeCategories =
+      Collections.unmodifiableSet(incomeCategoriesAggregates.keySet());
+  private final Set<String> expensesCategories =
+      Collections.unmodifiableSet(expensesCategoriesAggregates.keySet());
+
+  // Операции, сгруппированные по дате и времени; в одной группе - в порядке добавления
+  private final TreeMap<LocalDateTime, ArrayList<Wallet.WalletOperation>>
+      walletOperationsByDateTime = new TreeMap<>();
+
+  /** Конструктор пустого индекса, в который затем добавляются операции кошелька. */
+  WalletOperationsIndex() {}
+
+  /** Конструктор индекса без самих операций, содержащего только значения из сводки. */
+  WalletOperationsIndex(WalletOperationsSummary summary) {
+    totalIncome = summary.getTotalIncome();
+    totalExpenses = summary.getTotalExpenses();
+    incomeWalletOperationsCount = summary.getIncomeOperationsCount();
+    expensesWalletOperationsCount = summary.getExpensesOperationsCount();
+    for (boolean isIncome : new boolean[] {true, false}) {
+      summary
+          .getCategories(isIncome)
+          .forEach(
+              (category, categorySummary) -> {
+                CategoryAggregate aggregate = new CategoryAggregate();
+                aggregate.sum = categorySummary.getTotal();
+                aggregate.count = categorySummary.getCount();
+                getCategoriesAggregates(isIncome).put(category, aggregate);
+              });
+    }
+  }
+
+  /** Метод составляет сводку по операциям для сохранения вместе с кошельком. */
+  WalletOperationsSummary makeSummary() {
+    WalletOperationsSummary summary =
+        new WalletOperationsSummary(
+            getTotalIncome(),
+            getTotalExpenses(),
+            incomeWalletOperationsCount,
+            expensesWalletOperationsCount);
+    for (boolean isIncome : new boolean[] {true, false}) {
+      getCategoriesAggregates(isIncome)
+          .forEach(
+              (category, aggregate) ->
+                  summary
+                      .getCategories(isIncome)
+                      .put(
+                          category,
+                          new WalletOperationsSummary.CategorySummary(
+                              aggregate.sum, aggregate.count)));
+    }
+    return summary;
+  }
+
+  /** Метод проверяет, занят ли ID какой-либо операцией кошелька. */
+  boolean containsId(long id) {
+    return walletOperationsById.containsKey(id);
+  }
+
+  /** Метод возвращает операцию с указанным ID или null, если такой операции нет. */
+  Wallet.WalletOperation getById(long id) {
+    return walletOperationsById.get(id);
+  }
+
+  /** Метод учитывает новую операцию в индексе. */
+  void add(Wallet.WalletOperation wo) {
+    walletOperationsById.put(wo.getId(), wo);
+    if (wo.isIncome()) {
+      totalIncome += wo.getAmountInMinorUnits();
+      incomeWalletOperationsCount++;
+    } else {
+      totalExpenses += wo.getAmountInMinorUnits();
+      expensesWalletOperationsCount++;
+    }
+    getCategoriesAggregates(wo.isIncome())
+        .computeIfAbsent(wo.getCategory(), c -> new CategoryAggregate())
+        .add(wo.getAmountInMinorUnits());
+    walletOperationsByDateTime.computeIfAbsent(wo.getDateTime(), d -> new ArrayList<>()).add(wo);
+  }
+
+  /** Метод убирает операцию из индекса. */
+  void remove(Wallet.WalletOperation wo) {
+    if (!walletOperationsById.remove(wo.getId(), wo)) {
+      return;
+    }
+    if (wo.isIncome()) {
+      totalIncome -= wo.getAmountInMinorUnits();
+      incomeWalletOperationsCount--;
+    } else {
+      totalExpenses -= wo.getAmountInMinorUnits();
+      expensesWalletOperationsCount--;
+    }
+    HashMap<String, CategoryAggregate> categoriesAggregates =
+        getCategoriesAggregates(wo.isIncome());
+    CategoryAggregate aggregate = categoriesAggregates.get(wo.getCategory());
+    if (aggregate != null) {
+      aggregate.remove(wo.getAmountInMinorUnits());
+      if (aggregate.count == 0) {
+        categoriesAggregates.remove(wo.getCategory());
+      }
+    }
+    ArrayList<Wallet.WalletOperation> sameDateTimeOperations =
+        walletOperationsByDateTime.get(wo.getDateTime());
+    if (sameDateTimeOperations != null) {
+      sameDateTimeOperations.remove(wo);
+      if (sameDateTimeOperations.isEmpty()) {
+        walletOperationsByDateTime.remove(wo.getDateTime());
+      }
+    }
+  }
+
+  /**
+   * Метод переносит суммы и количество операций категории на новое название. Если категория с новым
+   * названием уже есть, то значения объединяются (так работает объединение категорий).
+   */
+  void renameCategory(boolean isIncome, String category, String newName) {
+    HashMap<String, CategoryAggregate> categoriesAggregates = getCategoriesAggregates(isIncome);
+    CategoryAggregate aggregate = categoriesAggregates.remove(category);
+    if (aggregate == null) {
+      return;
+    }
+    categoriesAggregates.merge(newName, aggregate, CategoryAggregate::mergeWith);
+  }
+
+  /** Метод полностью очищает индекс. */
+  void clear() {
+    walletOperationsById.clear();
+    totalIncome = 0;
+    totalExpenses = 0;
+    incomeWalletOperationsCount = 0;
+    expensesWalletOperationsCount = 0;
+    incomeCategoriesAggregates.clear();
+    expensesCategoriesAggregates.clear();
+    walletOperationsByDateTime.clear();
+  }
+
+  /**
+   * Метод возвращает поток операций строго внутри периода (границы не включаются), упорядоченных по
+   * дате и времени. Поиск начала периода выполняется за O(log N), далее перебираются только
+   * операции из периода. Поток является представлением индекса и должен быть прочитан до следующего
+   * изменения кошелька.
+   */
+  Stream<Wallet.WalletOperation> streamByPeriod(
+      LocalDateTime periodStart, LocalDateTime periodEnd) {
+    if (!periodStart.isBefore(periodEnd)) {
+      return Stream.empty();
+    }
+    return walletOperationsByDateTime
+        .subMap(periodStart, false, periodEnd, false)
+        .values()
+        .stream()
+        .flatMap(List::stream);
+  }
+
+  /** Метод возвращает сумму всех доходов в копейках. */
+  long getTotalIncome() {
+    return totalIncome;
+  }
+
+  /** Метод возвращает сумму всех расходов в копейках. */
+  long getTotalExpenses() {
+    return totalExpenses;
+  }
+
+  int getIncomeWalletOperationsCount() {
+    return incomeWalletOperationsCount;
+  }
+
+  int getExpensesWalletOperationsCount() {
+    return expensesWalletOperationsCount;
+  }
+
+  /**
+   * Метод возвращает сумму операций определённого типа и категории в копейках (0, если операций
+   * нет).
+   */
+  long getCategoryTotal(boolean isIncome, String category) {
+    CategoryAggregate aggregate = getCategoriesAggregates(isIncome).get(category);
+    return aggregate == null ? 0 : aggregate.sum;
+  }
+
+  /** Метод возвращает количество операций определённого типа и категории. */
+  int getCategoryWalletOperationsCount(boolean isIncome, String category) {
+    CategoryAggregate aggregate = getCategoriesAggregates(isIncome).get(category);
+    return aggregate == null ? 0 : aggregate.count;
+  }
+
+  /**
+   * Метод возвращает неизменяемое представление множества категорий операций определённого типа.
+   * Представление отражает все последующие изменения индекса.
+   */
+  Set<String> getCategories(boolean isIncome) {
+    return isIncome ? incomeCategories : expensesCategories;
+  }
+
+  private HashMap<String, CategoryAggregate> getCategoriesAggregates(boolean isIncome) {
+    return isIncome ? incomeCategoriesAggregates : expensesCategoriesAggregates;
+  }
+
+  /** Сумма в копейках и количество операций одной категории. */
+  private static final class CategoryAggregate {
+    private long sum;
+    private int count;
+
+    void add(long amountInMinorUnits) {
+      sum += amountInMinorUnits;
+      count++;
+    }
+
+    void remove(long amountInMinorUnits) {
+      sum -= amountInMinorUnits;
+      count--;
+    }
+
+    CategoryAggregate mergeWith(CategoryAggregate other) {
+      sum += other.sum;
+      count += other.count;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.yuyuvu.personalbudgetingapp.model;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.util.HashMap;
+
+/**
+ * Класс WalletOperationsSummary - сводка по операциям кошелька, сохраняемая в файл перед самими
+ * операциями: итоговые суммы и количество операций дохода и расхода, в том числе по каждой
+ * категории. По сводке строится индекс операций без самих операций, поэтому баланс, итоги и
+ * категории кошелька доступны до загрузки его операций (см. Wallet.deferWalletOperations). <br>
+ * Суммы записываются в файл в единицах валюты, как и суммы операций, а геттеры и конструктор
+ * работают с копейками (см. Money).
+ */
+@JsonAutoDetect(
+    fieldVisibility = JsonAutoDetect.Visibility.ANY,
+    getterVisibility = JsonAutoDetect.Visibility.NONE,
+    isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+final class WalletOperationsSummary {
+  private double totalIncome;
+  private double totalExpenses;
+  private int incomeOperationsCount;
+  private int expensesOperationsCount;
+  private HashMap<String, CategorySummary> incomeCategories = new HashMap<>();
+  private HashMap<String, CategorySummary> expensesCategories = new HashMap<>();
+
+  /** Данный конструктор должен использоваться только библиотекой Jackson для десериализации. */
+  @JsonCreator
+  private WalletOperationsSummary() {}
+
+  /** Конструктор, используемый индексом операций при сохранении кошелька. */
+  WalletOperationsSummary(
+      long totalIncome,
+      long totalExpenses,
+      int incomeOperationsCount,
+      int expensesOperationsCount) {
+    this.totalIncome = Money.toAmount(totalIncome);
+    this.totalExpenses = Money.toAmount(totalExpenses);
+    this.incomeOperationsCount = incomeOperationsCount;
+    this.expensesOperationsCount = expensesOperationsCount;
+  }
+
+  long getTotalIncome() {
+    return Money.toMinorUnits(totalIncome);
+  }
+
+  long getTotalExpenses() {
+    return Money.toMinorUnits(totalExpenses);
+  }
+
+  int getIncomeOperationsCount() {
+    return incomeOperationsCount;
+  }
+
+  int getExpensesOperationsCount() {
+    return expensesOperationsCount;
+  }
+
+  /** Метод возвращает сводки по категориям операций определённого типа. */
+  HashMap<String, CategorySummary> getCategories(boolean isIncome) {
+    return isIncome ? incomeCategories : expensesCategories;
+  }
+
+  /** Сумма и количество операций одной категории. */
+  @JsonAutoDetect(
+      fieldVisibility = JsonAutoDetect.Visibility.ANY,
+      getterVisibility = JsonAutoDetect.Visibility.NONE,
+      isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+  static final class CategorySummary {
+    private double total;
+    private int count;
+
+    /** Данный конструктор должен использоваться только библиотекой Jackson для десериализации. */
+    @JsonCreator
+    private CategorySummary() {}
+
+    CategorySummary(long total, int count) {
+      this.total = Money.toAmount(total);
+      this.count = count;
+    }
+
+    long getTotal() {
+      return Money.toMinorUnits(total);
+    }
+
+    int getCount() {
+      return count;
+    }
+  }
+}
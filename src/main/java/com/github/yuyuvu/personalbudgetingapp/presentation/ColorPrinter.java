@@ -1,6 +1,11 @@
 package com.github.yuyuvu.personalbudgetingapp.presentation;
 
-/** Класс ColorPrinter содержит методы для окрашивания текста, выводимого в консоль. */
+import com.github.yuyuvu.personalbudgetingapp.PersonalBudgetingApp;
+
+/**
+ * Класс ColorPrinter содержит методы для окрашивания текста, выводимого в консоль. Текст выводится
+ * в поток вывода сессии текущего потока (в консоль или в подключение в режиме сервера).
+ */
 public class ColorPrinter {
   private static final String RESET = "\033[0m"; // Text Reset
 
@@ -13,63 +18,63 @@ public class ColorPrinter {
   // вывод без новой строки
   /** Печать в консоль без новой строки. Цвет: жёлтый. */
   public static void printYellow(String message) {
-    System.out.print(YELLOW + message + RESET);
+    PersonalBudgetingApp.getUserOutput().print(YELLOW + message + RESET);
   }
 
   /** Печать в консоль без новой строки. Цвет: зелёный. */
   public static void printGreen(String message) {
-    System.out.print(GREEN + message + RESET);
+    PersonalBudgetingApp.getUserOutput().print(GREEN + message + RESET);
   }
 
   /** Печать в консоль без новой строки. Цвет: красный. */
   public static void printRed(String message) {
-    System.out.print(RED + message + RESET);
+    PersonalBudgetingApp.getUserOutput().print(RED + message + RESET);
   }
 
   /** Печать в консоль без новой строки. Цвет: бирюзовый. */
   public static void printCyan(String message) {
-    System.out.print(CYAN + message + RESET);
+    PersonalBudgetingApp.getUserOutput().print(CYAN + message + RESET);
   }
 
   /** Печать в консоль без новой строки. Цвет: сиреневый. */
   public static void printPurple(String message) {
-    System.out.print(PURPLE + message + RESET);
+    PersonalBudgetingApp.getUserOutput().print(PURPLE + message + RESET);
   }
 
   /** Печать в консоль без новой строки. Цвет: белый. */
   public static void print(String message) {
-    System.out.print(message);
+    PersonalBudgetingApp.getUserOutput().print(message);
   }
 
   // вывод с новой строкой
   /** Печать в консоль с новой строкой. Цвет: жёлтый. */
   public static void printlnYellow(String message) {
-    System.out.println(YELLOW + message + RESET);
+    PersonalBudgetingApp.getUserOutput().println(YELLOW + message + RESET);
   }
 
   /** Печать в консоль с новой строкой. Цвет: зелёный. */
   public static void printlnGreen(String message) {
-    System.out.println(GREEN + message + RESET);
+    PersonalBudgetingApp.getUserOutput().println(GREEN + message + RESET);
   }
 
   /** Печать в консоль с новой строкой. Цвет: красный. */
   public static void printlnRed(String message) {
-    System.out.println(RED + message + RESET);
+    PersonalBudgetingApp.getUserOutput().println(RED + message + RESET);
   }
 
   /** Печать в консоль с новой строкой. Цвет: бирюзовый. */
   public static void printlnCyan(String message) {
-    System.out.println(CYAN + message + RESET);
+    PersonalBudgetingApp.getUserOutput().println(CYAN + message + RESET);
   }
 
   /** Печать в консоль с новой строкой. Цвет: сиреневый. */
   public static void printlnPurple(String message) {
-    System.out.println(PURPLE + message + RESET);
+    PersonalBudgetingApp.getUserOutput().println(PURPLE + message + RESET);
   }
 
   /** Печать в консоль с новой строкой. Цвет: белый. */
   public static void println(String message) {
-    System.out.println(message);
+    PersonalBudgetingApp.getUserOutput().println(message);
   }
 
   // возврат окрашенной строки
@@ -111,7 +116,7 @@ public class ColorPrinter {
 
   /** Пропуск строки. */
   public static void skipLine() {
-    System.out.println();
+    PersonalBudgetingApp.getUserOutput().println();
   }
 
   /** Символ для прекращения окрашивания последующих символов. */
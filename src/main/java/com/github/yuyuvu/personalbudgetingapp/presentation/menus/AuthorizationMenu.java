@@ -62,6 +62,9 @@ public class AuthorizationMenu extends Menu {
       // или с загрузкой данных из него при авторизации.
       // В таком случае не пускаем в приложение.
       printlnRed(e.getMessage());
+    } catch (InvalidCredentialsException e) {
+      // Имя заняла одновременная регистрация в другой сессии уже после проверки введённого имени
+      printlnRed(e.getMessage());
     }
   }
 
@@ -69,7 +72,8 @@ public class AuthorizationMenu extends Menu {
    * Обработка ввода для регистрации. Валидация введённых значений. При успехе вызов метода
    * регистрации registerUser из AuthorizationService.
    */
-  private User handleRegistration() throws CancellationRequestedException, IOException {
+  private User handleRegistration()
+      throws CancellationRequestedException, IOException, InvalidCredentialsException {
     String inputNewUsername;
     String inputNewPassword;
 
@@ -102,7 +106,7 @@ public class AuthorizationMenu extends Menu {
         printlnRed(e.getMessage());
       }
     }
-    // Данный вызов может выбрасывать IOException
+    // Данный вызов может выбрасывать IOException и InvalidCredentialsException
     User registeredUser = AuthorizationService.registerUser(inputNewUsername, inputNewPassword);
     printlnGreen("Успешная регистрация пользователя " + inputNewUsername + "!");
     return registeredUser;
@@ -142,22 +142,14 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
   private void handleTotalExport(Wallet wallet) {
     printlnYellow("Экспорт снимка всего кошелька.");
 
-    // Сериализация объекта из текущего кошелька
-    String exportContents;
-    try {
-      exportContents = SnapshotsService.makeTotalExportContents(wallet);
-    } catch (SnapshotException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
-
-    // Запись в файл
+    // Сериализация объекта из текущего кошелька сразу в файл
     String whereSaved;
     try {
       whereSaved =
           DataPersistenceService.saveSnapshotToFile(
-              exportContents, makeFilenameForReportFile("wallet_total_data"));
-    } catch (IOException e) {
+              out -> SnapshotsService.writeTotalExportContents(wallet, out),
+              makeFilenameForReportFile("wallet_total_data"));
+    } catch (SnapshotException | IOException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -175,20 +167,12 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
       return;
     }
     String pathToFile = requestPathToSnapshotForImport();
-    String loadedContents;
-
-    // Чтение файла снимка
-    try {
-      loadedContents = DataPersistenceService.loadSnapshotFromFile(pathToFile);
-    } catch (CheckedIllegalArgumentException | IOException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
 
-    // Десериализация и перезапись
+    // Чтение файла снимка, десериализация и перезапись
     try {
-      SnapshotsService.importTotalSnapshot(user, loadedContents);
-    } catch (SnapshotException e) {
+      DataPersistenceService.loadSnapshotFromFile(
+          pathToFile, in -> SnapshotsService.importTotalSnapshot(user, in));
+    } catch (CheckedIllegalArgumentException | IOException | SnapshotException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -213,22 +197,14 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
   private void handleIncomeExport(Wallet wallet) {
     printlnYellow("Экспорт снимка доходов.");
 
-    // Сериализация объекта из текущего кошелька
-    String exportContents;
-    try {
-      exportContents = SnapshotsService.makeOnlyIncomeExportContents(wallet);
-    } catch (SnapshotException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
-
-    // Запись в файл
+    // Сериализация объекта из текущего кошелька сразу в файл
     String whereSaved;
     try {
       whereSaved =
           DataPersistenceService.saveSnapshotToFile(
-              exportContents, makeFilenameForReportFile("wallet_only_income_data"));
-    } catch (IOException e) {
+              out -> SnapshotsService.writeOnlyIncomeExportContents(wallet, out),
+              makeFilenameForReportFile("wallet_only_income_data"));
+    } catch (SnapshotException | IOException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -246,20 +222,12 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
       return;
     }
     String pathToFile = requestPathToSnapshotForImport();
-    String loadedContents;
-
-    // Чтение файла снимка
-    try {
-      loadedContents = DataPersistenceService.loadSnapshotFromFile(pathToFile);
-    } catch (CheckedIllegalArgumentException | IOException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
 
-    // Десериализация и перезапись
+    // Чтение файла снимка, десериализация и перезапись
     try {
-      SnapshotsService.importOnlyIncomeSnapshot(user, loadedContents);
-    } catch (SnapshotException e) {
+      DataPersistenceService.loadSnapshotFromFile(
+          pathToFile, in -> SnapshotsService.importOnlyIncomeSnapshot(user, in));
+    } catch (CheckedIllegalArgumentException | IOException | SnapshotException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -284,22 +252,14 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
   private void handleExpensesExport(Wallet wallet) {
     printlnYellow("Экспорт снимка расходов.");
 
-    // Сериализация объекта из текущего кошелька
-    String exportContents;
-    try {
-      exportContents = SnapshotsService.makeOnlyExpensesExportContents(wallet);
-    } catch (SnapshotException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
-
-    // Запись в файл
+    // Сериализация объекта из текущего кошелька сразу в файл
     String whereSaved;
     try {
       whereSaved =
           DataPersistenceService.saveSnapshotToFile(
-              exportContents, makeFilenameForReportFile("wallet_only_expenses_data"));
-    } catch (IOException e) {
+              out -> SnapshotsService.writeOnlyExpensesExportContents(wallet, out),
+              makeFilenameForReportFile("wallet_only_expenses_data"));
+    } catch (SnapshotException | IOException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -317,20 +277,12 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
       return;
     }
     String pathToFile = requestPathToSnapshotForImport();
-    String loadedContents;
-
-    // Чтение файла снимка
-    try {
-      loadedContents = DataPersistenceService.loadSnapshotFromFile(pathToFile);
-    } catch (CheckedIllegalArgumentException | IOException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
 
-    // Десериализация и перезапись
+    // Чтение файла снимка, десериализация и перезапись
     try {
-      SnapshotsService.importOnlyExpensesSnapshot(user, loadedContents);
-    } catch (SnapshotException e) {
+      DataPersistenceService.loadSnapshotFromFile(
+          pathToFile, in -> SnapshotsService.importOnlyExpensesSnapshot(user, in));
+    } catch (CheckedIllegalArgumentException | IOException | SnapshotException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -355,22 +307,14 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
   private void handleBudgetsExport(Wallet wallet) {
     printlnYellow("Экспорт снимка бюджетов.");
 
-    // Сериализация объекта из текущего кошелька
-    String exportContents;
-    try {
-      exportContents = SnapshotsService.makeOnlyBudgetsExportContents(wallet);
-    } catch (SnapshotException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
-
-    // Запись в файл
+    // Сериализация объекта из текущего кошелька сразу в файл
     String whereSaved;
     try {
       whereSaved =
           DataPersistenceService.saveSnapshotToFile(
-              exportContents, makeFilenameForReportFile("wallet_only_budgets_data"));
-    } catch (IOException e) {
+              out -> SnapshotsService.writeOnlyBudgetsExportContents(wallet, out),
+              makeFilenameForReportFile("wallet_only_budgets_data"));
+    } catch (SnapshotException | IOException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -388,20 +332,12 @@ public class CheckpointsSaveAndLoadMenu extends Menu {
       return;
     }
     String pathToFile = requestPathToSnapshotForImport();
-    String loadedContents;
-
-    // Чтение файла снимка
-    try {
-      loadedContents = DataPersistenceService.loadSnapshotFromFile(pathToFile);
-    } catch (CheckedIllegalArgumentException | IOException e) {
-      printlnRed(e.getMessage());
-      return;
-    }
 
-    // Десериализация и перезапись
+    // Чтение файла снимка, десериализация и перезапись
     try {
-      SnapshotsService.importOnlyBudgetsSnapshot(user, loadedContents);
-    } catch (SnapshotException e) {
+      DataPersistenceService.loadSnapshotFromFile(
+          pathToFile, in -> SnapshotsService.importOnlyBudgetsSnapshot(user, in));
+    } catch (CheckedIllegalArgumentException | IOException | SnapshotException e) {
       printlnRed(e.getMessage());
       return;
     }
@@ -175,7 +175,7 @@ public class IncomeAndExpensesManagementMenu extends Menu {
     // Получение имени получателя перевода
     while (true) {
       try {
-        if (wallet.getBalance() <= 0.0) {
+        if (wallet.getBalanceInMinorUnits() <= 0) {
           printlnPurple(
               "Обратите внимание: вы собираетесь зафиксировать перевод, уже имея отрицательный или нулевой баланс.");
         }
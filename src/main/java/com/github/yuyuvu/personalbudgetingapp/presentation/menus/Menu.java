@@ -13,6 +13,7 @@ import com.github.yuyuvu.personalbudgetingapp.appservices.ConfigManager;
 import com.github.yuyuvu.personalbudgetingapp.domainservices.NotificationsService;
 import com.github.yuyuvu.personalbudgetingapp.exceptions.CancellationRequestedException;
 import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
 import java.io.IOException;
 import java.time.DateTimeException;
 import java.time.LocalDateTime;
@@ -50,17 +51,22 @@ public abstract class Menu {
    */
   public abstract void handleUserInput();
 
-  /** Метод, выключающий приложение. */
+  /**
+   * Метод, выключающий приложение. В режиме сервера завершается только сессия текущего подключения.
+   */
   protected static void turnOffApplication(boolean printMessages) {
     if (printMessages) {
       printlnGreen("Выключаем приложение...");
     }
-    System.exit(0);
+    if (!PersonalBudgetingApp.finishCurrentSession()) {
+      System.exit(0);
+    }
   }
 
   /**
    * Метод, осуществляющий выход из текущего аккаунта пользователя и возврат в меню авторизации.
-   * Также сохраняет данные кошелька пользователя в файл при помощи методов DataPersistenceService.
+   * Также сохраняет данные кошелька пользователя в файл при помощи методов DataPersistenceService и
+   * закрывает сессию пользователя в UserSessionsRegistry.
    */
   protected static void logOutOfCurrentUser(boolean printMessages) {
     if (PersonalBudgetingApp.getCurrentAppUser() != null) {
@@ -71,7 +77,8 @@ public abstract class Menu {
                 PersonalBudgetingApp.getCurrentAppUser().getUsername()));
       }
       try {
-        DataPersistenceService.saveUserdataToFile(PersonalBudgetingApp.getCurrentAppUser());
+        UserSessionsRegistry.closeSession(
+            PersonalBudgetingApp.getCurrentAppUser(), DataPersistenceService::saveUserdataToFile);
       } catch (IOException e) {
         printlnRed(e.getMessage());
         printlnRed(
@@ -87,9 +94,17 @@ public abstract class Menu {
     }
   }
 
-  /** Метод для запроса ввода от пользователя. */
+  /**
+   * Метод для запроса ввода от пользователя. На время ожидания ввода блокировка данных текущего
+   * пользователя отпускается, чтобы ему можно было переводить средства из других сессий. Перед
+   * ожиданием выводятся все накопленные подсказки, иначе в режиме сервера они остались бы в буфере.
+   */
   protected void requestUserInput() {
-    currentInput = PersonalBudgetingApp.getUserInput().nextLine().strip();
+    PersonalBudgetingApp.getUserOutput().flush();
+    currentInput =
+        UserSessionsRegistry.callWithoutUsersLocks(
+                () -> PersonalBudgetingApp.getUserInput().nextLine())
+            .strip();
   }
 
   /** Метод для получения ввода от пользователя. */
@@ -204,6 +219,8 @@ public abstract class Menu {
       case "--off" -> {
         logOutOfCurrentUser(false);
         turnOffApplication(true);
+        // В режиме сервера сессия завершена, текущее действие прерывается
+        throw new CancellationRequestedException();
       }
       default -> {
         return;
@@ -1,16 +1,34 @@
 package com.github.yuyuvu.personalbudgetingapp.integration;
 
 import com.github.yuyuvu.personalbudgetingapp.appservices.AuthorizationService;
+import com.github.yuyuvu.personalbudgetingapp.appservices.PasswordHasher;
 import com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsService;
 import com.github.yuyuvu.personalbudgetingapp.exceptions.CheckedIllegalArgumentException;
 import com.github.yuyuvu.personalbudgetingapp.exceptions.InvalidCredentialsException;
 import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserdataCache;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
+import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,17 +49,23 @@ public class AuthorizationAndDataPersistenceServicesTest {
   @Test
   void registerAndLoginUserTest() {
     // Ошибки чтения / записи не выбрасываются
-    Assertions.assertDoesNotThrow(() -> AuthorizationService.registerUser("test123", "test123"));
+    User user =
+        Assertions.assertDoesNotThrow(
+            () -> AuthorizationService.registerUser("test123", "test123"));
+
+    // Повторно занять то же имя (без учёта регистра) нельзя, данные пользователя не изменяются
+    String[] passwordData = user.getPasswordData().clone();
+    Assertions.assertThrows(
+        InvalidCredentialsException.class,
+        () -> AuthorizationService.registerUser("TEST123", "another"));
+    Assertions.assertFalse(AuthorizationService.checkUserExistence("TEST123"));
+    Assertions.assertDoesNotThrow(
+        () -> AuthorizationService.validateExistingPassword("test123", "test123"));
+    Assertions.assertArrayEquals(passwordData, user.getPasswordData());
 
     // Файл нормально сериализуется и десериализуется
     try {
-      // удаление прошлого файла
-      Path pathToFile =
-          Path.of("personal_budgeting_appdata").resolve("userdata_wallets").resolve("test123.json");
-      Files.delete(pathToFile);
-
-      // регистрация и добавление операции
-      User user = AuthorizationService.registerUser("test123", "test123");
+      // добавление операции
       String username = user.getUsername();
       WalletOperationsService.addIncome(user.getWallet(), 100, "траты", LocalDateTime.now());
 
@@ -62,13 +86,43 @@ public class AuthorizationAndDataPersistenceServicesTest {
       Assertions.assertEquals(user.getWallet().getBalance(), userLoaded.getWallet().getBalance());
 
       // удаление файла
-      Files.delete(pathToFile);
+      Files.delete(
+          Path.of("personal_budgeting_appdata")
+              .resolve("userdata_wallets")
+              .resolve("test123.json"));
 
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Проверяем вход в аккаунт после выхода из него, когда пользователя нет ни среди находящихся в
+   * аккаунте, ни в кэше (как после перезапуска приложения): данные читаются из файла.
+   */
+  @Test
+  void loginFromFileTest() throws Exception {
+    User user = AuthorizationService.registerUser("diskloginuser", "diskloginuser");
+    WalletOperationsService.addIncome(user.getWallet(), 1000, "зарплата", LocalDateTime.now());
+    WalletOperationsService.addExpense(user.getWallet(), 250.5, "еда", LocalDateTime.now());
+    UserSessionsRegistry.closeSession(user, DataPersistenceService::saveUserdataToFile);
+    Assertions.assertNull(UserSessionsRegistry.getActiveUser(user.getUsername()));
+    UserdataCache.invalidate(user.getUsername());
+
+    User userLoaded = AuthorizationService.logInToAccount(user.getUsername());
+    Assertions.assertNotSame(user, userLoaded);
+    Assertions.assertEquals(749.5, userLoaded.getWallet().getBalance());
+    Assertions.assertEquals(
+        Set.of("еда"), userLoaded.getWallet().getWalletOperationsExpensesCategories());
+    Assertions.assertEquals(2, userLoaded.getWallet().getWalletOperations().size());
+
+    UserSessionsRegistry.closeSession(userLoaded, DataPersistenceService::saveUserdataToFile);
+    Files.delete(
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".json"));
+  }
+
   /**
    * Проверяем методы, отвечающие за проверку логина, пароля и валидацию данных при регистрации и
    * аутентификации.
@@ -77,8 +131,8 @@ public class AuthorizationAndDataPersistenceServicesTest {
   void validateCredentialsTest() {
     try {
       final Path pathToFile =
-          Path.of("personal_budgeting_appdata").resolve("userdata_wallets").resolve("test123.json");
-      User alreadyRegisteredUser = AuthorizationService.registerUser("test123", "test123");
+          Path.of("personal_budgeting_appdata").resolve("userdata_wallets").resolve("test321.json");
+      User alreadyRegisteredUser = AuthorizationService.registerUser("test321", "test321");
 
       // новое имя
       Assertions.assertThrows(
@@ -105,6 +159,12 @@ public class AuthorizationAndDataPersistenceServicesTest {
             // имеющееся имя не разрешено
             AuthorizationService.validateNewUsername(alreadyRegisteredUser.getUsername());
           });
+      Assertions.assertThrows(
+          InvalidCredentialsException.class,
+          () -> {
+            // имеющееся имя в другом регистре не разрешено
+            AuthorizationService.validateNewUsername("TeSt321");
+          });
 
       // имеющееся имя
       Assertions.assertDoesNotThrow(
@@ -137,18 +197,536 @@ public class AuthorizationAndDataPersistenceServicesTest {
       Assertions.assertDoesNotThrow(
           () -> {
             // пароль подходит
-            AuthorizationService.validateExistingPassword("test123", "test123");
+            AuthorizationService.validateExistingPassword("test321", "test321");
           });
       Assertions.assertThrows(
           InvalidCredentialsException.class,
           () -> {
             // пароль не подходит
-            AuthorizationService.validateExistingPassword("test123", "incorrect");
+            AuthorizationService.validateExistingPassword("test321", "incorrect");
           });
 
       Files.delete(pathToFile);
-    } catch (IOException e) {
+    } catch (IOException | InvalidCredentialsException e) {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Проверяем одновременную регистрацию одного имени (в разном регистре) из нескольких сессий:
+   * регистрация проходит ровно у одной из них, а остальные получают ошибку и не перезаписывают
+   * данные зарегистрированного пользователя.
+   */
+  @Test
+  void concurrentRegistrationTest() throws Exception {
+    List<String> usernames = List.of("raceuser", "RaceUser", "RACEUSER", "raceUser");
+    ExecutorService executor = Executors.newFixedThreadPool(usernames.size());
+    CountDownLatch start = new CountDownLatch(1);
+    ArrayList<Future<User>> results = new ArrayList<>();
+    for (String username : usernames) {
+      results.add(
+          executor.submit(
+              () -> {
+                start.await();
+                return AuthorizationService.registerUser(username, username);
+              }));
+    }
+    start.countDown();
+
+    User registeredUser = null;
+    int rejectedCount = 0;
+    for (Future<User> result : results) {
+      try {
+        registeredUser = result.get(1, TimeUnit.MINUTES);
+      } catch (ExecutionException e) {
+        Assertions.assertInstanceOf(InvalidCredentialsException.class, e.getCause());
+        rejectedCount++;
+      }
+    }
+    executor.shutdown();
+    Assertions.assertEquals(usernames.size() - 1, rejectedCount);
+    Assertions.assertNotNull(registeredUser);
+    String registeredUsername = registeredUser.getUsername();
+    Assertions.assertDoesNotThrow(
+        () ->
+            AuthorizationService.validateExistingPassword(
+                registeredUsername, registeredUsername));
+    for (String username : usernames) {
+      Assertions.assertEquals(
+          username.equals(registeredUsername), AuthorizationService.checkUserExistence(username));
+    }
+
+    UserSessionsRegistry.closeSession(registeredUser, DataPersistenceService::saveUserdataToFile);
+    Files.delete(
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(registeredUsername + ".json"));
+  }
+
+  /**
+   * Проверяем индекс учётных данных: при отсутствии он строится заново по файлам кошельков,
+   * повреждённые записи перечитываются из файлов, а пользователи без файлов из него удаляются.
+   */
+  @Test
+  void usersCredentialsIndexTest() throws Exception {
+    final Path pathToIndex =
+        Path.of("personal_budgeting_appdata").resolve("users_credentials_index.tsv");
+    final Path pathToFile =
+        Path.of("personal_budgeting_appdata").resolve("userdata_wallets").resolve("test456.json");
+    Files.deleteIfExists(pathToFile);
+    User user = AuthorizationService.registerUser("test456", "test456");
+
+    // индекс строится заново, если его нет
+    Files.deleteIfExists(pathToIndex);
+    HashMap<String, String[]> registeredUsers =
+        DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts();
+    Assertions.assertTrue(Files.exists(pathToIndex));
+    Assertions.assertTrue(registeredUsers.containsKey(user.getUsername()));
+
+    // данные из индекса совпадают с данными из файла пользователя
+    registeredUsers = DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts();
+    Assertions.assertEquals(
+        AuthorizationService.PasswordData.values().length,
+        registeredUsers.get(user.getUsername()).length,
+        "В индексе должны быть хэш, соль и параметры хэширования");
+
+    // запись с некорректными параметрами хэширования перечитывается из файла пользователя
+    final String[] passwordData = registeredUsers.get(user.getUsername());
+    final String validLine = user.getUsername() + "\t" + String.join("\t", passwordData);
+    Files.writeString(
+        pathToIndex,
+        Files.readString(pathToIndex)
+            .replace(validLine, validLine.substring(0, validLine.lastIndexOf('\t')) + "\tabc"));
+    registeredUsers = DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts();
+    Assertions.assertArrayEquals(passwordData, registeredUsers.get(user.getUsername()));
+    Assertions.assertTrue(Files.readString(pathToIndex).contains(validLine));
+    Assertions.assertTrue(AuthorizationService.validateExistingPassword("test456", "test456"));
+
+    // после удаления файла пользователь удаляется из индекса
+    Files.delete(pathToFile);
+    registeredUsers = DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts();
+    Assertions.assertFalse(registeredUsers.containsKey(user.getUsername()));
+    Assertions.assertFalse(Files.readString(pathToIndex).contains(user.getUsername()));
+  }
+
+  /**
+   * Проверяем, что хэш пароля пользователя с устаревшими параметрами хэширования вычисляется заново
+   * с текущими параметрами при входе в аккаунт, а новые данные сохраняются в индексе.
+   */
+  @Test
+  void rehashPasswordOnLoginTest() throws Exception {
+    final Path pathToFile =
+        Path.of("personal_budgeting_appdata").resolve("userdata_wallets").resolve("test789.json");
+    Files.deleteIfExists(pathToFile);
+    final int iterationsIndex = AuthorizationService.PasswordData.ITERATIONS.ordinal();
+
+    // регистрация с меньшим количеством итераций, чем текущее
+    PasswordHasher.setCurrentIterations(PasswordHasher.MIN_ITERATIONS);
+    User user;
+    try {
+      user = AuthorizationService.registerUser("test789", "test789");
+    } finally {
+      PasswordHasher.setCurrentIterations(PasswordHasher.DEFAULT_ITERATIONS);
+    }
+    Assertions.assertEquals(
+        String.valueOf(PasswordHasher.MIN_ITERATIONS), user.getPasswordData()[iterationsIndex]);
+
+    // при входе хэш вычисляется заново
+    Assertions.assertTrue(AuthorizationService.validateExistingPassword("test789", "test789"));
+    User loggedInUser = AuthorizationService.logInToAccount("test789");
+    Assertions.assertEquals(
+        String.valueOf(PasswordHasher.DEFAULT_ITERATIONS),
+        loggedInUser.getPasswordData()[iterationsIndex]);
+    Assertions.assertEquals(
+        PasswordHasher.DEFAULT_ALGORITHM,
+        loggedInUser.getPasswordData()[AuthorizationService.PasswordData.ALGORITHM.ordinal()]);
+    Assertions.assertEquals(
+        String.valueOf(PasswordHasher.DEFAULT_ITERATIONS),
+        DataPersistenceService.getRegisteredUsernamesAndHashesAndSalts()
+            .get("test789")[iterationsIndex]);
+
+    // с новым хэшем проверка пароля работает так же
+    Assertions.assertTrue(AuthorizationService.validateExistingPassword("test789", "test789"));
+    Assertions.assertThrows(
+        InvalidCredentialsException.class,
+        () -> AuthorizationService.validateExistingPassword("test789", "incorrect"));
+
+    Files.delete(pathToFile);
+  }
+
+  /**
+   * Проверяем журнал изменений кошелька: изменения после сохранения не теряются без повторного
+   * полного сохранения, применяются при загрузке, а полное сохранение удаляет журнал. Недописанная
+   * последняя запись журнала пропускается.
+   */
+  @Test
+  void walletJournalReplayAndCompactionTest() throws Exception {
+    User user = new User("journaltest", new String[] {"hash", "salt"}, new Properties());
+    Path pathToFile =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".json");
+    DataPersistenceService.makeNewUserWalletFile(user.getUsername());
+    DataPersistenceService.saveUserdataToFile(user);
+    final long savedFileSize = Files.size(pathToFile);
+
+    // Изменения дописываются в журнал, файл пользователя не перезаписывается
+    WalletOperationsService.addIncome(user.getWallet(), 1000, "зарплата", LocalDateTime.now());
+    WalletOperationsService.addExpense(user.getWallet(), 300, "еда", LocalDateTime.now());
+    WalletOperationsService.addExpense(user.getWallet(), 200, "кафе", LocalDateTime.now());
+    long removedId = user.getWallet().getExpensesWalletOperations().get(0).getId();
+    user.getWallet().removeWalletOperationById(removedId);
+    user.getWallet().renameCategories(false, "еда", "кафе");
+    Assertions.assertEquals(savedFileSize, Files.size(pathToFile));
+    Path pathToJournal =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_journals")
+            .resolve(user.getUsername() + ".journal");
+    Assertions.assertTrue(Files.exists(pathToJournal));
+
+    // Имитируем сбой во время дозаписи следующей записи журнала
+    Files.write(pathToJournal, "{\"seq\":6,\"ty".getBytes(), StandardOpenOption.APPEND);
+
+    // Пользователь загружается из файла, а не из кэша
+    UserdataCache.invalidate(user.getUsername());
+    User userLoaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertEquals(2, userLoaded.getWallet().getWalletOperations().size());
+    Assertions.assertEquals(800, userLoaded.getWallet().getBalance());
+    Assertions.assertEquals(
+        Set.of("еда"), userLoaded.getWallet().getWalletOperationsExpensesCategories());
+    Assertions.assertTrue(
+        userLoaded.getWallet().getWalletOperations().stream()
+            .noneMatch(wo -> wo.getId() == removedId));
+    // Повреждённый журнал заменён полным сохранением
+    Assertions.assertFalse(Files.exists(pathToJournal));
+
+    // Загруженный пользователь продолжает вести журнал, а полное сохранение его удаляет
+    WalletOperationsService.addIncome(userLoaded.getWallet(), 50, "подарки", LocalDateTime.now());
+    Assertions.assertTrue(Files.exists(pathToJournal));
+    UserdataCache.invalidate(user.getUsername());
+    User userReloaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertEquals(850, userReloaded.getWallet().getBalance());
+    DataPersistenceService.saveUserdataToFile(userLoaded);
+    Assertions.assertFalse(Files.exists(pathToJournal));
+    UserdataCache.invalidate(user.getUsername());
+    userReloaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertEquals(850, userReloaded.getWallet().getBalance());
+
+    Files.delete(pathToFile);
+  }
+
+  /**
+   * Проверяем, что записи журнала, применённые при загрузке пользователя, учитываются при его
+   * сжатии: журнал, который дописывался между загрузками, всё равно заменяется полным сохранением
+   * после 1000 записей.
+   */
+  @Test
+  void walletJournalCompactionAfterReplayTest() throws Exception {
+    User user = new User("journalreplaytest", new String[] {"hash", "salt"}, new Properties());
+    DataPersistenceService.makeNewUserWalletFile(user.getUsername());
+    DataPersistenceService.saveUserdataToFile(user);
+    for (int i = 0; i < 600; i++) {
+      WalletOperationsService.addIncome(user.getWallet(), 1, "зарплата", LocalDateTime.now());
+    }
+    Path pathToJournal =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_journals")
+            .resolve(user.getUsername() + ".journal");
+    Assertions.assertTrue(Files.exists(pathToJournal));
+
+    UserdataCache.invalidate(user.getUsername());
+    User userLoaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    for (int i = 0; i < 399; i++) {
+      WalletOperationsService.addIncome(userLoaded.getWallet(), 1, "зарплата", LocalDateTime.now());
+    }
+    Assertions.assertTrue(Files.exists(pathToJournal));
+    WalletOperationsService.addIncome(userLoaded.getWallet(), 1, "зарплата", LocalDateTime.now());
+    Assertions.assertFalse(Files.exists(pathToJournal));
+
+    UserdataCache.invalidate(user.getUsername());
+    User userReloaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertEquals(1000, userReloaded.getWallet().getBalance());
+
+    Files.delete(
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".json"));
+  }
+
+  /**
+   * Проверяем отложенную загрузку операций кошелька: после загрузки пользователя баланс, итоги и
+   * категории доступны без чтения операций, а операции загружаются из файла при первом обращении к
+   * ним. Если файл с тех пор изменился, то операции из него не загружаются, даже если время его
+   * последнего изменения осталось прежним.
+   */
+  @Test
+  void lazyWalletOperationsLoadingTest() throws Exception {
+    User user = new User("lazytest", new String[] {"hash", "salt"}, new Properties());
+    DataPersistenceService.makeNewUserWalletFile(user.getUsername());
+    WalletOperationsService.addIncome(user.getWallet(), 1000, "зарплата", LocalDateTime.now());
+    WalletOperationsService.addExpense(user.getWallet(), 300, "еда", LocalDateTime.now());
+    WalletOperationsService.addExpense(user.getWallet(), 200, "еда", LocalDateTime.now());
+    user.getWallet().getBudgetCategoriesAndLimits().put("еда", 400.0);
+    DataPersistenceService.saveUserdataToFile(user);
+
+    // Итоги, категории и бюджеты доступны без загрузки операций
+    UserdataCache.invalidate(user.getUsername());
+    User userLoaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertFalse(userLoaded.getWallet().areWalletOperationsLoaded());
+    Assertions.assertEquals(500, userLoaded.getWallet().getBalance());
+    Assertions.assertEquals(500, userLoaded.getWallet().getCategoryTotal(false, "еда"));
+    Assertions.assertEquals(
+        2, userLoaded.getWallet().getCategoryWalletOperationsCount(false, "еда"));
+    Assertions.assertEquals(
+        Set.of("зарплата"), userLoaded.getWallet().getWalletOperationsIncomeCategories());
+    Assertions.assertEquals(
+        400.0, userLoaded.getWallet().getBudgetCategoriesAndLimits().get("еда"));
+    Assertions.assertFalse(userLoaded.getWallet().areWalletOperationsLoaded());
+
+    // Операции загружаются при первом обращении к ним
+    Assertions.assertEquals(3, userLoaded.getWallet().getWalletOperations().size());
+    Assertions.assertTrue(userLoaded.getWallet().areWalletOperationsLoaded());
+    Assertions.assertEquals(500, userLoaded.getWallet().getBalance());
+    WalletOperationsService.addIncome(userLoaded.getWallet(), 50, "подарки", LocalDateTime.now());
+    DataPersistenceService.saveUserdataToFile(userLoaded);
+
+    // Из изменившегося после загрузки файла операции не загружаются
+    UserdataCache.invalidate(user.getUsername());
+    User staleUser = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertEquals(550, staleUser.getWallet().getBalance());
+    Path pathToFile =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".json");
+    // Файл перезаписан, но время последнего изменения осталось прежним (грубая точность времени)
+    FileTime readFileLastModifiedTime = Files.getLastModifiedTime(pathToFile);
+    Files.writeString(pathToFile, System.lineSeparator(), StandardOpenOption.APPEND);
+    Files.setLastModifiedTime(pathToFile, readFileLastModifiedTime);
+    Assertions.assertThrows(
+        UncheckedIOException.class, () -> staleUser.getWallet().getWalletOperations().size());
+
+    Files.delete(pathToFile);
+  }
+
+  /**
+   * Проверяем кэш пользователей: повторная загрузка берёт пользователя из кэша, пока его файл не
+   * изменился, изменённый пользователь не в аккаунте сохраняется отложенно, а при превышении
+   * размера кэша давно не использованные пользователи вытесняются из него.
+   */
+  @Test
+  void userdataCacheTest() throws Exception {
+    User user = new User("cachetest", new String[] {"hash", "salt"}, new Properties());
+    User anotherUser = new User("cachetest2", new String[] {"hash", "salt"}, new Properties());
+    final Path pathToFile =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".json");
+    DataPersistenceService.makeNewUserWalletFile(user.getUsername());
+    WalletOperationsService.addIncome(user.getWallet(), 1000, "зарплата", LocalDateTime.now());
+    DataPersistenceService.saveUserdataToFile(user);
+
+    // Сохранённый пользователь загружается из кэша
+    long hitsCount = UserdataCache.getHitsCount();
+    Assertions.assertSame(user, DataPersistenceService.loadUserdataFromFile(user.getUsername()));
+    Assertions.assertEquals(hitsCount + 1, UserdataCache.getHitsCount());
+
+    // После изменения файла пользователь загружается из файла заново
+    long missesCount = UserdataCache.getMissesCount();
+    Files.setLastModifiedTime(
+        pathToFile,
+        FileTime.fromMillis(Files.getLastModifiedTime(pathToFile).toMillis() + 1000));
+    User userLoaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertNotSame(user, userLoaded);
+    Assertions.assertEquals(missesCount + 1, UserdataCache.getMissesCount());
+    Assertions.assertEquals(1000, userLoaded.getWallet().getBalance());
+
+    // Изменённый пользователь сохраняется отложенно, журнал при этом удаляется
+    final long writeBehindSavesCount = UserdataCache.getWriteBehindSavesCount();
+    Path pathToJournal =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_journals")
+            .resolve(user.getUsername() + ".journal");
+    WalletOperationsService.addIncome(userLoaded.getWallet(), 50, "подарки", LocalDateTime.now());
+    Assertions.assertTrue(Files.exists(pathToJournal));
+    UserdataCache.flushChangedUsers();
+    Assertions.assertFalse(Files.exists(pathToJournal));
+    Assertions.assertTrue(UserdataCache.getWriteBehindSavesCount() > writeBehindSavesCount);
+
+    // Изменённый пользователь, вытесненный из кэша, тоже сохраняется
+    long evictionsCount = UserdataCache.getEvictionsCount();
+    WalletOperationsService.addExpense(userLoaded.getWallet(), 30, "еда", LocalDateTime.now());
+    try {
+      UserdataCache.setLimits(1, UserdataCache.DEFAULT_MAX_CACHED_USERS_WEIGHT);
+      DataPersistenceService.makeNewUserWalletFile(anotherUser.getUsername());
+      DataPersistenceService.saveUserdataToFile(anotherUser);
+      Assertions.assertEquals(1, UserdataCache.getCachedUsersCount());
+      Assertions.assertTrue(UserdataCache.getEvictionsCount() > evictionsCount);
+      UserdataCache.flushChangedUsers();
+      Assertions.assertFalse(Files.exists(pathToJournal));
+    } finally {
+      UserdataCache.setLimits(
+          UserdataCache.DEFAULT_MAX_CACHED_USERS, UserdataCache.DEFAULT_MAX_CACHED_USERS_WEIGHT);
+    }
+    User userReloaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+    Assertions.assertNotSame(userLoaded, userReloaded);
+    Assertions.assertEquals(1020, userReloaded.getWallet().getBalance());
+
+    Files.delete(pathToFile);
+    Files.delete(pathToFile.resolveSibling(anotherUser.getUsername() + ".json"));
+  }
+
+  /**
+   * Проверяем двоичный формат файлов пользователей: файл в json преобразуется в двоичный формат при
+   * сохранении и обратно без потерь, а операции из двоичного файла загружаются при первом обращении
+   * к ним.
+   */
+  @Test
+  void binaryUserdataFormatTest() throws Exception {
+    User user = new User("binarytest", new String[] {"hash", "salt"}, new Properties());
+    Path pathToJsonFile =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".json");
+    Path pathToBinaryFile = pathToJsonFile.resolveSibling(user.getUsername() + ".bin");
+    DataPersistenceService.makeNewUserWalletFile(user.getUsername());
+    for (int i = 0; i < 100; i++) {
+      WalletOperationsService.addIncome(
+          user.getWallet(), 1000.1 + i, "зарплата", LocalDateTime.now().minusDays(i));
+      WalletOperationsService.addExpense(
+          user.getWallet(), 0.3 * (i + 1), i % 2 == 0 ? "еда" : "кафе", LocalDateTime.now());
+    }
+    long removedId = user.getWallet().getWalletOperations().get(199).getId();
+    user.getWallet().removeWalletOperationById(removedId);
+    user.getWallet().getBudgetCategoriesAndLimits().put("еда", 400.0);
+    DataPersistenceService.saveUserdataToFile(user);
+    long jsonFileSize = Files.size(pathToJsonFile);
+
+    try {
+      DataPersistenceService.setUserdataFormat(DataPersistenceService.UserdataFormat.BINARY);
+      UserdataCache.invalidate(user.getUsername());
+      DataPersistenceService.saveUserdataToFile(
+          DataPersistenceService.loadUserdataFromFile(user.getUsername()));
+      Assertions.assertTrue(Files.exists(pathToBinaryFile));
+      Assertions.assertFalse(Files.exists(pathToJsonFile));
+      Assertions.assertTrue(Files.size(pathToBinaryFile) < jsonFileSize / 2);
+
+      UserdataCache.invalidate(user.getUsername());
+      User binaryLoaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+      Assertions.assertFalse(binaryLoaded.getWallet().areWalletOperationsLoaded());
+      Assertions.assertEquals(user.getWallet().getBalance(), binaryLoaded.getWallet().getBalance());
+      // Операции по типу читаются в столбцы без загрузки операций в кошелёк
+      Assertions.assertEquals(
+          user.getWallet().getIncomeWalletOperations().size(),
+          binaryLoaded.getWallet().getIncomeWalletOperations().size());
+      Assertions.assertFalse(binaryLoaded.getWallet().areWalletOperationsLoaded());
+      assertSameWallets(user, binaryLoaded);
+
+      // Удалённый ID не выдаётся повторно
+      WalletOperationsService.addIncome(
+          binaryLoaded.getWallet(), 1, "подарки", LocalDateTime.now());
+      Assertions.assertEquals(
+          removedId + 1, binaryLoaded.getWallet().getWalletOperations().get(199).getId());
+      binaryLoaded.getWallet().removeWalletOperationById(removedId + 1);
+
+      // Обратное преобразование в json
+      DataPersistenceService.setUserdataFormat(DataPersistenceService.UserdataFormat.JSON);
+      DataPersistenceService.saveUserdataToFile(binaryLoaded);
+      Assertions.assertTrue(Files.exists(pathToJsonFile));
+      Assertions.assertFalse(Files.exists(pathToBinaryFile));
+      UserdataCache.invalidate(user.getUsername());
+      assertSameWallets(user, DataPersistenceService.loadUserdataFromFile(user.getUsername()));
+    } finally {
+      DataPersistenceService.setUserdataFormat(DataPersistenceService.UserdataFormat.JSON);
+      Files.deleteIfExists(pathToJsonFile);
+      Files.deleteIfExists(pathToBinaryFile);
+    }
+  }
+
+  /**
+   * Проверка выборок за период по отображённому в память файлу в двоичном формате: кошелёк с
+   * большим количеством операций отвечает на них так же, как загруженный кошелёк, не загружая
+   * операции.
+   */
+  @Test
+  void mappedWalletOperationsTest() throws Exception {
+    User user = new User("mappedtest", new String[] {"hash", "salt"}, new Properties());
+    Path pathToBinaryFile =
+        Path.of("personal_budgeting_appdata")
+            .resolve("userdata_wallets")
+            .resolve(user.getUsername() + ".bin");
+    LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+    for (int i = 0; i < 12_000; i++) {
+      // Операции добавляются не по порядку дат, часть из них имеет одинаковые дату и время
+      LocalDateTime dateTime = start.plusMinutes((i * 7919L) % 50_000).plusNanos(i % 3);
+      if (i % 5 == 0) {
+        WalletOperationsService.addIncome(user.getWallet(), 10 + i, "зарплата", dateTime);
+      } else {
+        WalletOperationsService.addExpense(
+            user.getWallet(), 0.5 + i % 100, "категория " + i % 20, dateTime);
+      }
+    }
+
+    try {
+      DataPersistenceService.setUserdataFormat(DataPersistenceService.UserdataFormat.BINARY);
+      DataPersistenceService.saveUserdataToFile(user);
+      UserdataCache.invalidate(user.getUsername());
+      User mappedLoaded = DataPersistenceService.loadUserdataFromFile(user.getUsername());
+
+      LocalDateTime[][] periods = {
+        {start.minusDays(1), start.plusDays(100)},
+        {start.plusMinutes(100), start.plusMinutes(2000)},
+        {start.plusMinutes(7919), start.plusMinutes(7919).plusNanos(2)},
+        {start.plusDays(10), start.plusDays(9)}
+      };
+      for (LocalDateTime[] period : periods) {
+        List<Wallet.WalletOperation> expected =
+            user.getWallet().streamWalletOperationsByPeriod(period[0], period[1]).toList();
+        List<Wallet.WalletOperation> actual =
+            mappedLoaded.getWallet().streamWalletOperationsByPeriod(period[0], period[1]).toList();
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+          Assertions.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+          Assertions.assertEquals(expected.get(i).getAmount(), actual.get(i).getAmount());
+          Assertions.assertEquals(expected.get(i).isIncome(), actual.get(i).isIncome());
+          Assertions.assertEquals(expected.get(i).getCategory(), actual.get(i).getCategory());
+          Assertions.assertEquals(expected.get(i).getDateTime(), actual.get(i).getDateTime());
+        }
+      }
+      Assertions.assertFalse(mappedLoaded.getWallet().areWalletOperationsLoaded());
+
+      // После изменения кошелёк загружает операции и отвечает по своему индексу
+      WalletOperationsService.addIncome(mappedLoaded.getWallet(), 1, "подарки", start.plusDays(1));
+      Assertions.assertTrue(mappedLoaded.getWallet().areWalletOperationsLoaded());
+      LocalDateTime end = start.plusDays(2);
+      Assertions.assertEquals(
+          user.getWallet().streamWalletOperationsByPeriod(start, end).count() + 1,
+          mappedLoaded.getWallet().streamWalletOperationsByPeriod(start, end).count());
+    } finally {
+      DataPersistenceService.setUserdataFormat(DataPersistenceService.UserdataFormat.JSON);
+      UserdataCache.invalidate(user.getUsername());
+      Files.deleteIfExists(pathToBinaryFile);
+      Files.deleteIfExists(
+          Path.of("personal_budgeting_appdata")
+              .resolve("userdata_journals")
+              .resolve(user.getUsername() + ".journal"));
+    }
+  }
+
+  private static void assertSameWallets(User expected, User actual) {
+    Assertions.assertEquals(
+        expected.getWallet().getBudgetCategoriesAndLimits(),
+        actual.getWallet().getBudgetCategoriesAndLimits());
+    Assertions.assertEquals(
+        expected.getWallet().getWalletOperations().size(),
+        actual.getWallet().getWalletOperations().size());
+    for (int i = 0; i < expected.getWallet().getWalletOperations().size(); i++) {
+      Wallet.WalletOperation expectedOperation = expected.getWallet().getWalletOperations().get(i);
+      Wallet.WalletOperation actualOperation = actual.getWallet().getWalletOperations().get(i);
+      Assertions.assertEquals(expectedOperation.getId(), actualOperation.getId());
+      Assertions.assertEquals(expectedOperation.getAmount(), actualOperation.getAmount());
+      Assertions.assertEquals(expectedOperation.isIncome(), actualOperation.isIncome());
+      Assertions.assertEquals(expectedOperation.getCategory(), actualOperation.getCategory());
+      Assertions.assertEquals(expectedOperation.getDateTime(), actualOperation.getDateTime());
+    }
+  }
 }
@@ -0,0 +1,89 @@
+package com.github.yuyuvu.personalbudgetingapp.integration;
+
+import com.github.yuyuvu.personalbudgetingapp.PersonalBudgetingServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Проверяем режим сервера: несколько подключений одновременно проходят через те же меню, что и
+ * консоль, и каждое работает со своим пользователем.
+ */
+public class PersonalBudgetingServerTest {
+
+  /** Подготавливаем нужную локаль перед каждым тестом. */
+  @BeforeEach
+  void prepareLocale() {
+    Locale.setDefault(Locale.US);
+  }
+
+  /**
+   * Два клиента одновременно регистрируются, добавляют доход и выключают свою сессию. Данные
+   * каждого пользователя сохраняются в его файл, а сервер продолжает работать.
+   */
+  @Test
+  void concurrentSessionsTest() throws Exception {
+    List<String> usernames = List.of("serverclient1", "serverclient2");
+    ExecutorService clients = Executors.newFixedThreadPool(usernames.size());
+    try (PersonalBudgetingServer server = new PersonalBudgetingServer(0)) {
+      Thread serverThread = new Thread(server::serve);
+      serverThread.start();
+
+      ArrayList<Future<String>> outputs = new ArrayList<>();
+      for (String username : usernames) {
+        outputs.add(
+            clients.submit(
+                () ->
+                    runClient(
+                        server.getPort(),
+                        String.join(
+                            "\n",
+                            List.of(
+                                "1", username, "password", "2", "1", "зарплата", "500", "нет",
+                                "--off", "")))));
+      }
+      for (int i = 0; i < usernames.size(); i++) {
+        String output = outputs.get(i).get(1, TimeUnit.MINUTES);
+        Assertions.assertTrue(output.contains("Система управления личными финансами запущена!"));
+        Assertions.assertTrue(
+            output.contains("Успешная регистрация пользователя " + usernames.get(i) + "!"));
+        Assertions.assertTrue(output.contains("Выключаем приложение..."));
+      }
+    } finally {
+      clients.shutdown();
+    }
+
+    for (String username : usernames) {
+      Path pathToFile =
+          Path.of("personal_budgeting_appdata")
+              .resolve("userdata_wallets")
+              .resolve(username + ".json");
+      Assertions.assertTrue(Files.readString(pathToFile).contains("зарплата"));
+      Files.delete(pathToFile);
+    }
+  }
+
+  /** Метод подключается к серверу, отправляет ввод и читает весь вывод до закрытия подключения. */
+  private static String runClient(int port, String input) throws IOException {
+    try (Socket socket = new Socket("localhost", port)) {
+      socket.setSoTimeout(60000);
+      OutputStream out = socket.getOutputStream();
+      out.write(input.getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -9,6 +9,7 @@ import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceServ
 import com.github.yuyuvu.personalbudgetingapp.model.User;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
@@ -123,4 +124,89 @@ public class SnapshotsAndDataPersistenceTest {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Проверяем, что снимок всего кошелька в исходном формате (с вычисляемыми полями и дублирующимся
+   * типом операции) по-прежнему импортируется, а новый экспорт содержит каждую операцию один раз и
+   * не содержит вычисляемых полей.
+   */
+  @Test
+  void legacyFormatImportAndCanonicalExportTest() throws SnapshotException {
+    String legacySnapshot =
+        """
+        {"balance":-500.0,"budgetCategoriesAndLimits":{"расход":1000.0},
+        "expensesWalletOperations":[{"amount":1000.0,"category":"расход",
+        "dateTime":"2025-01-01T10:00:00","id":2,"income":false,"isIncome":false}],
+        "incomeWalletOperations":[{"amount":500.0,"category":"доход",
+        "dateTime":"2025-01-01T09:00:00","id":1,"income":true,"isIncome":true}],
+        "totalExpenses":1000.0,"totalIncome":500.0,
+        "walletOperations":[{"amount":500.0,"category":"доход",
+        "dateTime":"2025-01-01T09:00:00","id":1,"income":true,"isIncome":true},
+        {"amount":1000.0,"category":"расход","dateTime":"2025-01-01T10:00:00","id":2,
+        "income":false,"isIncome":false}],
+        "walletOperationsExpensesCategories":["расход"],
+        "walletOperationsIncomeCategories":["доход"]}""";
+    User user = new User("user", new String[] {"hash", "salt"}, new Properties());
+    SnapshotsService.importTotalSnapshot(user, legacySnapshot);
+    Assertions.assertEquals(2, user.getWallet().getWalletOperations().size());
+    Assertions.assertEquals(-500.0, user.getWallet().getBalance());
+    Assertions.assertEquals(1000.0, user.getWallet().getBudgetCategoriesAndLimits().get("расход"));
+
+    String canonicalSnapshot = SnapshotsService.makeTotalExportContents(user.getWallet());
+    Assertions.assertTrue(canonicalSnapshot.contains("\"formatVersion\":" + Wallet.FORMAT_VERSION));
+    Assertions.assertFalse(canonicalSnapshot.contains("balance"));
+    Assertions.assertFalse(canonicalSnapshot.contains("incomeWalletOperations"));
+    Assertions.assertFalse(canonicalSnapshot.contains("\"income\""));
+    Assertions.assertEquals(2, canonicalSnapshot.split("\"isIncome\"").length - 1);
+
+    // Снимок более новой версии формата, чем поддерживает приложение, не загружается
+    Assertions.assertThrows(
+        SnapshotException.class,
+        () ->
+            SnapshotsService.importTotalSnapshot(
+                user,
+                canonicalSnapshot.replace(
+                    "\"formatVersion\":" + Wallet.FORMAT_VERSION,
+                    "\"formatVersion\":" + (Wallet.FORMAT_VERSION + 1))));
+  }
+
+  /**
+   * Проверяем экспорт и импорт снимка всего кошелька через потоки файлов, без промежуточной строки.
+   * Кириллица в категориях должна сохраняться в UTF-8 и читаться без искажений.
+   */
+  @Test
+  void exportAndThenImportSnapshotWithStreamsTest() throws Exception {
+    WalletOperationsService.addExpense(wallet, 1000, "коммунальные услуги", LocalDateTime.now());
+    WalletOperationsService.addIncome(wallet, 500, "зарплата", LocalDateTime.now());
+    BudgetingService.addNewExpensesCategoryLimit(wallet, "коммунальные услуги", 1500);
+
+    String whereSaved =
+        DataPersistenceService.saveSnapshotToFile(
+            out -> SnapshotsService.writeTotalExportContents(wallet, out), "snap_streams");
+    Path pathToSnapshot = Path.of(whereSaved);
+    Assertions.assertTrue(
+        new String(Files.readAllBytes(pathToSnapshot), StandardCharsets.UTF_8)
+            .contains("коммунальные услуги"));
+
+    User user = new User("user", new String[] {"hash", "salt"}, new Properties());
+    DataPersistenceService.loadSnapshotFromFile(
+        whereSaved, in -> SnapshotsService.importTotalSnapshot(user, in));
+    Assertions.assertEquals(2, user.getWallet().getWalletOperations().size());
+    Assertions.assertTrue(
+        user.getWallet().getWalletOperationsExpensesCategories().contains("коммунальные услуги"));
+    Assertions.assertEquals(wallet.getBalance(), user.getWallet().getBalance());
+
+    // Снимок бюджетов нельзя загрузить как снимок всего кошелька
+    String budgetsSaved =
+        DataPersistenceService.saveSnapshotToFile(
+            out -> SnapshotsService.writeOnlyBudgetsExportContents(wallet, out), "snap_budgets");
+    Assertions.assertThrows(
+        SnapshotException.class,
+        () ->
+            DataPersistenceService.loadSnapshotFromFile(
+                budgetsSaved, in -> SnapshotsService.importTotalSnapshot(user, in)));
+
+    Files.delete(pathToSnapshot);
+    Files.delete(Path.of(budgetsSaved));
+  }
 }
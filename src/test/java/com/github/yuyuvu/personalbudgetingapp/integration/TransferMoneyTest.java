@@ -2,14 +2,22 @@ package com.github.yuyuvu.personalbudgetingapp.integration;
 
 import com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsService;
 import com.github.yuyuvu.personalbudgetingapp.infrastructure.DataPersistenceService;
+import com.github.yuyuvu.personalbudgetingapp.infrastructure.UserSessionsRegistry;
 import com.github.yuyuvu.personalbudgetingapp.model.User;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -77,4 +85,239 @@ public class TransferMoneyTest {
     Assertions.assertEquals(15000, recipientAfterTransfer.getWallet().getBalance());
     Assertions.assertTrue(recipientOperations.get(0).isIncome());
   }
+
+  /**
+   * Проверяем, что перевод пользователю, который сейчас в аккаунте, попадает в его кошелёк в
+   * оперативной памяти и не теряется после его выхода из аккаунта.
+   */
+  @Test
+  void transferMoneyToLoggedInUserTest() throws IOException {
+    User sender = new User("username3", new String[] {"hash", "salt"}, new Properties());
+    User recipient = new User("username4", new String[] {"hash", "salt"}, new Properties());
+    final String pathWhereSaved =
+        DataPersistenceService.makeNewUserWalletFile(recipient.getUsername());
+    DataPersistenceService.saveUserdataToFile(recipient);
+
+    // Получатель в аккаунте
+    User recipientSession =
+        UserSessionsRegistry.openSession(recipient.getUsername(), username -> recipient);
+    WalletOperationsService.transferMoneyToAnotherUser(sender, recipient.getUsername(), 700);
+    Assertions.assertEquals(700, recipientSession.getWallet().getBalance());
+
+    // Перевод самому себе отклоняется и под блокировками, без изменения кошелька
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            WalletOperationsService.transferMoneyToAnotherUser(
+                recipientSession, recipient.getUsername(), 100));
+    Assertions.assertEquals(700, recipientSession.getWallet().getBalance());
+
+    // Выход из аккаунта сохраняет полученный перевод
+    UserSessionsRegistry.closeSession(recipientSession, DataPersistenceService::saveUserdataToFile);
+    Assertions.assertNull(UserSessionsRegistry.getActiveUser(recipient.getUsername()));
+    User recipientAfterLogout =
+        DataPersistenceService.loadUserdataFromFile(recipient.getUsername());
+    Assertions.assertEquals(700, recipientAfterLogout.getWallet().getBalance());
+    Assertions.assertEquals(1, recipientAfterLogout.getWallet().getWalletOperations().size());
+
+    Files.deleteIfExists(Path.of(pathWhereSaved));
+  }
+
+  /**
+   * Проверяем одновременные переводы между несколькими пользователями в аккаунтах из нескольких
+   * потоков, в том числе навстречу друг другу: ни один перевод не теряется и взаимной блокировки не
+   * возникает.
+   */
+  @Test
+  void concurrentTransfersTest() throws Exception {
+    int usersCount = 4;
+    int threadsCount = 8;
+    int transfersPerThread = 200;
+    User[] users = new User[usersCount];
+    String[] pathsWhereSaved = new String[usersCount];
+    for (int i = 0; i < usersCount; i++) {
+      User user = new User("concurrent" + i, new String[] {"hash", "salt"}, new Properties());
+      pathsWhereSaved[i] = DataPersistenceService.makeNewUserWalletFile(user.getUsername());
+      DataPersistenceService.saveUserdataToFile(user);
+      users[i] = UserSessionsRegistry.openSession(user.getUsername(), username -> user);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+    ArrayList<Future<?>> results = new ArrayList<>();
+    for (int t = 0; t < threadsCount; t++) {
+      int from = t % usersCount;
+      int to = (t + 1 + t / usersCount) % usersCount;
+      results.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < transfersPerThread; i++) {
+                  User sender = users[from];
+                  UserSessionsRegistry.runWithUsersLocked(
+                      () ->
+                          WalletOperationsService.transferMoneyToAnotherUser(
+                              sender, users[to].getUsername(), 1),
+                      sender.getUsername());
+                }
+                return null;
+              }));
+    }
+    for (Future<?> result : results) {
+      result.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    double totalBalance = 0;
+    int totalWalletOperations = 0;
+    for (User user : users) {
+      totalBalance += user.getWallet().getBalance();
+      totalWalletOperations += user.getWallet().getWalletOperations().size();
+    }
+    Assertions.assertEquals(0, totalBalance);
+    Assertions.assertEquals(2 * threadsCount * transfersPerThread, totalWalletOperations);
+
+    for (int i = 0; i < usersCount; i++) {
+      UserSessionsRegistry.closeSession(users[i], DataPersistenceService::saveUserdataToFile);
+      Files.deleteIfExists(Path.of(pathsWhereSaved[i]));
+    }
+  }
+
+  /**
+   * Проверяем, что перевод из команды сессии (под блокировкой отправителя) не отпускает блокировку
+   * отправителя: другой поток, ожидающий её, получает её только после завершения всей команды.
+   */
+  @Test
+  void transferKeepsSenderLockTest() throws Exception {
+    User sender = new User("locksender", new String[] {"hash", "salt"}, new Properties());
+    User recipient = new User("lockrecipient", new String[] {"hash", "salt"}, new Properties());
+    final String pathWhereSaved =
+        DataPersistenceService.makeNewUserWalletFile(recipient.getUsername());
+    DataPersistenceService.saveUserdataToFile(recipient);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    AtomicBoolean commandFinished = new AtomicBoolean();
+
+    ArrayList<Future<Boolean>> otherThreadResult = new ArrayList<>();
+    UserSessionsRegistry.runWithUsersLocked(
+        () -> {
+          // Другой поток начинает ждать блокировку отправителя во время команды
+          otherThreadResult.add(
+              executor.submit(
+                  () -> {
+                    AtomicBoolean sawFinishedCommand = new AtomicBoolean();
+                    UserSessionsRegistry.runWithUsersLocked(
+                        () -> sawFinishedCommand.set(commandFinished.get()),
+                        sender.getUsername());
+                    return sawFinishedCommand.get();
+                  }));
+          Thread.sleep(200);
+          WalletOperationsService.transferMoneyToAnotherUser(sender, recipient.getUsername(), 100);
+          Thread.sleep(200);
+          commandFinished.set(true);
+        },
+        sender.getUsername());
+    Assertions.assertTrue(otherThreadResult.get(0).get(1, TimeUnit.MINUTES));
+    executor.shutdown();
+    Assertions.assertEquals(-100, sender.getWallet().getBalance());
+    Assertions.assertEquals(
+        100,
+        DataPersistenceService.loadUserdataFromFile(recipient.getUsername())
+            .getWallet()
+            .getBalance());
+
+    Files.deleteIfExists(Path.of(pathWhereSaved));
+  }
+
+  /**
+   * Проверяем пакетный перевод: переводы одному получателю объединяются, получатель в аккаунте
+   * получает их в кошелёк в оперативной памяти, а по несуществующему получателю и переводу себе
+   * возвращается ошибка без списания у отправителя.
+   */
+  @Test
+  void batchTransferTest() throws IOException {
+    User sender = new User("batchsender", new String[] {"hash", "salt"}, new Properties());
+    User offlineRecipient =
+        new User("batchoffline", new String[] {"hash", "salt"}, new Properties());
+    User onlineRecipient = new User("batchonline", new String[] {"hash", "salt"}, new Properties());
+    final String offlinePath =
+        DataPersistenceService.makeNewUserWalletFile(offlineRecipient.getUsername());
+    DataPersistenceService.saveUserdataToFile(offlineRecipient);
+    final String onlinePath =
+        DataPersistenceService.makeNewUserWalletFile(onlineRecipient.getUsername());
+    DataPersistenceService.saveUserdataToFile(onlineRecipient);
+    User onlineSession =
+        UserSessionsRegistry.openSession(
+            onlineRecipient.getUsername(), username -> onlineRecipient);
+
+    LinkedHashMap<String, WalletOperationsService.BatchTransferResult> results =
+        WalletOperationsService.transferMoneyToAnotherUsers(
+            sender,
+            List.of(
+                new WalletOperationsService.Transfer("batchoffline", 100),
+                new WalletOperationsService.Transfer("batchonline", 200),
+                new WalletOperationsService.Transfer("batchmissing", 300),
+                new WalletOperationsService.Transfer("batchoffline", 50),
+                new WalletOperationsService.Transfer("batchsender", 10)));
+
+    Assertions.assertEquals(
+        List.of("batchoffline", "batchonline", "batchmissing", "batchsender"),
+        new ArrayList<>(results.keySet()));
+    Assertions.assertTrue(results.get("batchoffline").isSuccessful());
+    Assertions.assertEquals(2, results.get("batchoffline").getTransfersCount());
+    Assertions.assertEquals(150, results.get("batchoffline").getTotalAmount());
+    Assertions.assertTrue(results.get("batchonline").isSuccessful());
+    Assertions.assertFalse(results.get("batchmissing").isSuccessful());
+    Assertions.assertNotNull(results.get("batchmissing").getErrorMessage());
+    Assertions.assertFalse(results.get("batchsender").isSuccessful());
+
+    // Списано только то, что зачислено
+    Assertions.assertEquals(-350, sender.getWallet().getBalance());
+    Assertions.assertEquals(3, sender.getWallet().getWalletOperations().size());
+    Assertions.assertEquals(200, onlineSession.getWallet().getBalance());
+    User offlineAfterTransfer =
+        DataPersistenceService.loadUserdataFromFile(offlineRecipient.getUsername());
+    Assertions.assertEquals(150, offlineAfterTransfer.getWallet().getBalance());
+
+    // Неположительные суммы не принимаются
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            WalletOperationsService.transferMoneyToAnotherUsers(
+                sender, List.of(new WalletOperationsService.Transfer("batchoffline", 0))));
+
+    UserSessionsRegistry.closeSession(onlineSession, DataPersistenceService::saveUserdataToFile);
+    DataPersistenceService.saveUserdataToFile(offlineAfterTransfer);
+    Files.deleteIfExists(Path.of(offlinePath));
+    Files.deleteIfExists(Path.of(onlinePath));
+  }
+
+  /**
+   * Проверяем пакетный перевод, ожидание которого прервано: по каждому получателю возвращается
+   * фактический результат, поэтому списано у отправителя ровно столько, сколько зачислено
+   * получателям, а признак прерывания потока сохраняется.
+   */
+  @Test
+  void interruptedBatchTransferTest() throws IOException {
+    User sender = new User("interruptsender", new String[] {"hash", "salt"}, new Properties());
+    ArrayList<User> recipients = new ArrayList<>();
+    ArrayList<WalletOperationsService.Transfer> transfers = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      User recipient =
+          new User("interruptrecipient" + i, new String[] {"hash", "salt"}, new Properties());
+      recipients.add(UserSessionsRegistry.openSession(recipient.getUsername(), u -> recipient));
+      transfers.add(new WalletOperationsService.Transfer(recipient.getUsername(), 10));
+    }
+
+    Thread.currentThread().interrupt();
+    LinkedHashMap<String, WalletOperationsService.BatchTransferResult> results =
+        WalletOperationsService.transferMoneyToAnotherUsers(sender, transfers);
+    Assertions.assertTrue(Thread.interrupted());
+
+    double creditedTotal = 0;
+    for (User recipient : recipients) {
+      WalletOperationsService.BatchTransferResult result = results.get(recipient.getUsername());
+      Assertions.assertEquals(result.isSuccessful() ? 10 : 0, recipient.getWallet().getBalance());
+      creditedTotal += recipient.getWallet().getBalance();
+      UserSessionsRegistry.closeSession(recipient, u -> {});
+    }
+    Assertions.assertEquals(0, sender.getWallet().getBalance() + creditedTotal);
+  }
 }
@@ -1,9 +1,16 @@
 package com.github.yuyuvu.personalbudgetingapp.unit.model;
 
+import com.github.yuyuvu.personalbudgetingapp.appservices.SnapshotsService;
 import com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsService;
+import com.github.yuyuvu.personalbudgetingapp.exceptions.SnapshotException;
+import com.github.yuyuvu.personalbudgetingapp.model.User;
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
+import com.github.yuyuvu.personalbudgetingapp.model.WalletOperationsColumns;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -53,6 +60,94 @@ public class WalletTest {
     Assertions.assertEquals(totalExpenses, wallet.getTotalExpenses());
   }
 
+  /**
+   * Проверяем, что итоговые суммы и баланс поддерживаются при добавлении и удалении операций и не
+   * накапливают погрешность округления.
+   */
+  @Test
+  void getTotalsAfterAddingAndRemovingTest() {
+    for (int i = 1; i <= 10; i++) {
+      WalletOperationsService.addIncome(wallet, 0.1, "доход", LocalDateTime.now());
+    }
+    Assertions.assertEquals(1.0, wallet.getTotalIncome());
+    Assertions.assertTrue(wallet.hasIncomeWalletOperations());
+    Assertions.assertFalse(wallet.hasExpensesWalletOperations());
+
+    WalletOperationsService.addExpense(wallet, 0.3, "расход", LocalDateTime.now());
+    long expenseId = wallet.getExpensesWalletOperations().get(0).getId();
+    Assertions.assertEquals(0.7, wallet.getBalance());
+
+    WalletOperationsService.removeWalletOperationById(wallet, expenseId);
+    Assertions.assertEquals(0, wallet.getTotalExpenses());
+    Assertions.assertEquals(1.0, wallet.getBalance());
+    Assertions.assertFalse(wallet.hasExpensesWalletOperations());
+
+    wallet.getWalletOperations().clear();
+    Assertions.assertEquals(0, wallet.getBalance());
+    Assertions.assertFalse(wallet.hasIncomeWalletOperations());
+  }
+
+  /**
+   * Проверяем, что суммы операций хранятся и складываются в копейках: суммы округляются до копеек,
+   * а итоговые суммы и баланс точны.
+   */
+  @Test
+  void amountsInMinorUnitsTest() {
+    WalletOperationsService.addIncome(wallet, 0.1, "доход", LocalDateTime.now());
+    WalletOperationsService.addIncome(wallet, 0.2, "доход", LocalDateTime.now());
+    WalletOperationsService.addExpense(wallet, 0.3, "расход", LocalDateTime.now());
+    Assertions.assertEquals(30, wallet.getTotalIncomeInMinorUnits());
+    Assertions.assertEquals(0, wallet.getBalanceInMinorUnits());
+    Assertions.assertEquals(0.0, wallet.getBalance());
+
+    WalletOperationsService.addExpense(wallet, 10.006, "расход", LocalDateTime.now());
+    Wallet.WalletOperation rounded = wallet.getExpensesWalletOperations().get(1);
+    Assertions.assertEquals(1001, rounded.getAmountInMinorUnits());
+    Assertions.assertEquals(10.01, rounded.getAmount());
+    Assertions.assertEquals(1031, wallet.getCategoryTotalInMinorUnits(false, "расход"));
+
+    // Сумма меньше копейки после округления равна нулю и не принимается
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> WalletOperationsService.addIncome(wallet, 0.004, "доход", LocalDateTime.now()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> WalletOperationsService.addIncome(wallet, Double.NaN, "доход", LocalDateTime.now()));
+    Assertions.assertEquals(4, wallet.getWalletOperations().size());
+  }
+
+  /**
+   * Проверяем, что суммы и количество операций по категориям остаются верными после удаления
+   * операций, смены названия и объединения категорий.
+   */
+  @Test
+  void getCategoryTotalTest() {
+    for (int i = 1; i <= 10; i++) {
+      WalletOperationsService.addExpense(wallet, 100, "еда", LocalDateTime.now());
+      WalletOperationsService.addExpense(wallet, 50, "бензин", LocalDateTime.now());
+      WalletOperationsService.addIncome(wallet, 70, "еда", LocalDateTime.now());
+    }
+    Assertions.assertEquals(1000, wallet.getCategoryTotal(false, "еда"));
+    Assertions.assertEquals(700, wallet.getCategoryTotal(true, "еда"));
+    Assertions.assertEquals(10, wallet.getCategoryWalletOperationsCount(false, "бензин"));
+
+    WalletOperationsService.removeWalletOperationById(
+        wallet, wallet.getExpensesWalletOperations().get(0).getId());
+    Assertions.assertEquals(900, wallet.getCategoryTotal(false, "еда"));
+    Assertions.assertEquals(9, wallet.getCategoryWalletOperationsCount(false, "еда"));
+
+    WalletOperationsService.changeNameForCategory(wallet, "бензин", "транспорт", false);
+    Assertions.assertEquals(0, wallet.getCategoryTotal(false, "бензин"));
+    Assertions.assertEquals(500, wallet.getCategoryTotal(false, "транспорт"));
+
+    WalletOperationsService.mergeExpensesCategories(wallet, "траты", "еда", "транспорт");
+    Assertions.assertEquals(1400, wallet.getCategoryTotal(false, "траты"));
+    Assertions.assertEquals(19, wallet.getCategoryWalletOperationsCount(false, "траты"));
+    Assertions.assertEquals(0, wallet.getCategoryWalletOperationsCount(false, "еда"));
+    // доходы с таким же названием категории не затрагиваются
+    Assertions.assertEquals(700, wallet.getCategoryTotal(true, "еда"));
+  }
+
   /** Проверяем метод для получения всех операций дохода. */
   @Test
   void getIncomeWalletOperationsTest() {
@@ -124,6 +219,32 @@ public class WalletTest {
     Assertions.assertTrue(wallet.getWalletOperationsIncomeCategories().contains("доход2"));
   }
 
+  /**
+   * Проверяем, что множество категорий обновляется при добавлении и удалении операций, а категория
+   * пропадает только после удаления последней операции по ней.
+   */
+  @Test
+  void walletOperationsCategoriesViewTest() {
+    Set<String> expensesCategories = wallet.getWalletOperationsExpensesCategories();
+    Assertions.assertTrue(expensesCategories.isEmpty());
+    WalletOperationsService.addExpense(wallet, 30, "расход", LocalDateTime.now());
+    WalletOperationsService.addExpense(wallet, 10, "расход", LocalDateTime.now());
+    WalletOperationsService.addExpense(wallet, 10, "расход2", LocalDateTime.now());
+    Assertions.assertEquals(2, expensesCategories.size());
+
+    long firstId = wallet.getWalletOperations().get(0).getId();
+    long secondId = wallet.getWalletOperations().get(1).getId();
+    Assertions.assertTrue(wallet.removeWalletOperationById(firstId));
+    Assertions.assertTrue(expensesCategories.contains("расход"));
+    Assertions.assertTrue(wallet.removeWalletOperationById(secondId));
+    Assertions.assertFalse(expensesCategories.contains("расход"));
+    Assertions.assertEquals(1, expensesCategories.size());
+
+    Assertions.assertThrows(
+        UnsupportedOperationException.class, () -> expensesCategories.add("расход3"));
+    Assertions.assertTrue(wallet.getWalletOperationsIncomeCategories().isEmpty());
+  }
+
   /** Упрощённо без Random и сида проверяем метод для генерации ID. */
   @Test
   void generateNewWalletOperationIdTest() {
@@ -135,4 +256,137 @@ public class WalletTest {
         wallet.getWalletOperations().stream().map(Wallet.WalletOperation::getId).distinct().count();
     Assertions.assertEquals(400, result);
   }
+
+  /**
+   * Проверяем, что ID остаются уникальными после импорта операций другого кошелька, у которого
+   * выданы те же самые ID.
+   */
+  @Test
+  void generateNewWalletOperationIdAfterImportTest() throws SnapshotException {
+    Wallet anotherWallet = new Wallet(false);
+    for (int i = 1; i <= 100; i++) {
+      WalletOperationsService.addIncome(anotherWallet, 50, "доход", LocalDateTime.now());
+      WalletOperationsService.addExpense(wallet, 30, "расход", LocalDateTime.now());
+    }
+    User user = new User("user", new String[] {"hash", "salt"}, new Properties());
+    user.setWallet(wallet);
+    SnapshotsService.importOnlyIncomeSnapshot(
+        user, SnapshotsService.makeOnlyIncomeExportContents(anotherWallet));
+    for (int i = 1; i <= 100; i++) {
+      WalletOperationsService.addExpense(wallet, 30, "расход", LocalDateTime.now());
+    }
+    long result =
+        wallet.getWalletOperations().stream().map(Wallet.WalletOperation::getId).distinct().count();
+    Assertions.assertEquals(300, wallet.getWalletOperations().size());
+    Assertions.assertEquals(300, result);
+
+    // удаление по ID находит именно нужную операцию
+    long id = wallet.getIncomeWalletOperations().get(0).getId();
+    Assertions.assertTrue(WalletOperationsService.removeWalletOperationById(wallet, id));
+    Assertions.assertEquals(99, wallet.getIncomeWalletOperations().size());
+    Assertions.assertFalse(WalletOperationsService.removeWalletOperationById(wallet, id));
+  }
+
+  /**
+   * Проверяем хранилище операций в столбцах: курсор, выборки за период и по типу и обратное
+   * создание объектов операций дают те же операции, что и кошелёк.
+   */
+  @Test
+  void walletOperationsColumnsTest() {
+    LocalDateTime start = LocalDateTime.of(2025, 3, 1, 12, 0);
+    for (int i = 0; i < 300; i++) {
+      LocalDateTime dateTime = start.plusHours((i * 37L) % 100).plusNanos(i % 2);
+      if (i % 3 == 0) {
+        WalletOperationsService.addIncome(wallet, 100 + i, "доход " + i % 4, dateTime);
+      } else {
+        WalletOperationsService.addExpense(wallet, 0.1 * i + 1, "расход " + i % 7, dateTime);
+      }
+    }
+    WalletOperationsColumns columns = WalletOperationsColumns.of(wallet.getWalletOperations());
+    Assertions.assertEquals(300, columns.size());
+    Assertions.assertEquals(11, columns.getCategories().size());
+
+    WalletOperationsColumns.Cursor cursor = columns.cursor();
+    ArrayList<Wallet.WalletOperation> restored = columns.toWalletOperations();
+    for (int i = 0; i < columns.size(); i++) {
+      Wallet.WalletOperation wo = wallet.getWalletOperations().get(i);
+      cursor.moveTo(i);
+      Assertions.assertEquals(wo.getId(), cursor.getId());
+      Assertions.assertEquals(wo.getAmount(), cursor.getAmount());
+      Assertions.assertEquals(wo.isIncome(), cursor.isIncome());
+      Assertions.assertEquals(wo.getCategory(), cursor.getCategory());
+      Assertions.assertEquals(wo.getDateTime(), cursor.getDateTime());
+      Assertions.assertEquals(wo.getId(), restored.get(i).getId());
+      Assertions.assertEquals(wo.getDateTime(), restored.get(i).getDateTime());
+    }
+
+    LocalDateTime[][] periods = {
+      {start, start.plusHours(100)},
+      {start.plusHours(37), start.plusHours(74).plusNanos(1)},
+      {start.minusDays(1), start.plusDays(10)},
+      {start.plusHours(5), start.plusHours(5)}
+    };
+    for (LocalDateTime[] period : periods) {
+      Assertions.assertEquals(
+          wallet
+              .streamWalletOperationsByPeriod(period[0], period[1])
+              .map(Wallet.WalletOperation::getId)
+              .toList(),
+          columns.streamByPeriod(period[0], period[1]).map(Wallet.WalletOperation::getId).toList());
+    }
+    Assertions.assertEquals(
+        wallet.getIncomeWalletOperations().stream().map(Wallet.WalletOperation::getId).toList(),
+        columns.streamByType(true).map(Wallet.WalletOperation::getId).toList());
+    Assertions.assertEquals(
+        wallet.getExpensesWalletOperations().size(), columns.streamByType(false).count());
+  }
+
+  /**
+   * Проверяем словарь категорий: одинаковые названия категорий хранятся в кошельке одной строкой,
+   * отбор по категории и переименование работают по кодам, а новая операция со старым названием
+   * после переименования относится к отдельной категории.
+   */
+  @Test
+  void categoriesDictionaryTest() {
+    for (int i = 0; i < 10; i++) {
+      WalletOperationsService.addExpense(
+          wallet, 10, new String("еда".toCharArray()), LocalDateTime.now());
+      WalletOperationsService.addIncome(wallet, 10, "еда", LocalDateTime.now());
+    }
+    Wallet.WalletOperation first = wallet.getExpensesWalletOperations().get(0);
+    for (Wallet.WalletOperation wo : wallet.getExpensesWalletOperations()) {
+      Assertions.assertSame(first.getCategory(), wo.getCategory());
+    }
+    Assertions.assertEquals(10, countWalletOperationsByCategory(false, "еда"));
+
+    wallet.renameCategories(false, "продукты", "еда");
+    Assertions.assertEquals(0, countWalletOperationsByCategory(false, "еда"));
+    Assertions.assertEquals(10, countWalletOperationsByCategory(false, "продукты"));
+    // Доходы с тем же названием категории не переименовываются
+    Assertions.assertEquals(10, countWalletOperationsByCategory(true, "еда"));
+
+    WalletOperationsService.addExpense(wallet, 5, "еда", LocalDateTime.now());
+    Assertions.assertEquals(5, wallet.getCategoryTotal(false, "еда"));
+    Assertions.assertEquals(100, wallet.getCategoryTotal(false, "продукты"));
+    Assertions.assertEquals("еда", wallet.getExpensesWalletOperations().get(10).getCategory());
+
+    // Цепочка переименований и объединение категорий через таблицу псевдонимов
+    wallet.renameCategories(false, "магазины", "продукты");
+    wallet.renameCategories(false, "всё", "еда", "магазины");
+    Assertions.assertEquals(Set.of("всё"), wallet.getWalletOperationsExpensesCategories());
+    Assertions.assertEquals(105, wallet.getCategoryTotal(false, "всё"));
+    Assertions.assertEquals(11, countWalletOperationsByCategory(false, "всё"));
+    Assertions.assertEquals(0, countWalletOperationsByCategory(false, "магазины"));
+    for (Wallet.WalletOperation wo : wallet.getExpensesWalletOperations()) {
+      Assertions.assertEquals("всё", wo.getCategory());
+    }
+    Assertions.assertTrue(WalletOperationsService.removeWalletOperationById(wallet, first.getId()));
+    Assertions.assertEquals(95, wallet.getCategoryTotal(false, "всё"));
+  }
+
+  private long countWalletOperationsByCategory(boolean isIncome, String category) {
+    return wallet.getWalletOperations().stream()
+        .filter(wallet.makeCategoryFilter(isIncome, category))
+        .count();
+  }
 }
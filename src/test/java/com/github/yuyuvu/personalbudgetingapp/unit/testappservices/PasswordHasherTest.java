@@ -42,6 +42,38 @@ public class PasswordHasherTest {
         });
   }
 
+  /**
+   * Проверяем подбор количества итераций: результат не меньше нижней границы и кратен шагу
+   * округления, а хэши с разным количеством итераций различаются.
+   */
+  @Test
+  void calibrateIterationsTest() {
+    try {
+      int iterations = PasswordHasher.calibrateIterations(1);
+      Assertions.assertEquals(PasswordHasher.MIN_ITERATIONS, iterations);
+      Assertions.assertEquals(iterations, PasswordHasher.getCurrentIterations());
+
+      iterations = PasswordHasher.calibrateIterations(50);
+      Assertions.assertTrue(iterations >= PasswordHasher.MIN_ITERATIONS);
+      Assertions.assertEquals(0, iterations % 10000);
+    } finally {
+      PasswordHasher.setCurrentIterations(PasswordHasher.DEFAULT_ITERATIONS);
+    }
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> PasswordHasher.setCurrentIterations(PasswordHasher.MIN_ITERATIONS - 1));
+
+    String salt = PasswordHasher.SaltGenerator.makeSalt();
+    Assertions.assertEquals(
+        PasswordHasher.makePasswordHash("password", salt),
+        PasswordHasher.makePasswordHash(
+            "password", salt, PasswordHasher.DEFAULT_ALGORITHM, PasswordHasher.DEFAULT_ITERATIONS));
+    Assertions.assertNotEquals(
+        PasswordHasher.makePasswordHash("password", salt),
+        PasswordHasher.makePasswordHash(
+            "password", salt, PasswordHasher.DEFAULT_ALGORITHM, PasswordHasher.MIN_ITERATIONS));
+  }
+
   /** Проверяем метод генерации соли. */
   @Test
   void makeSaltTest() {
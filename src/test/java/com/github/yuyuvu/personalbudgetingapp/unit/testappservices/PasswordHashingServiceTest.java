@@ -0,0 +1,67 @@
+package com.github.yuyuvu.personalbudgetingapp.unit.testappservices;
+
+import com.github.yuyuvu.personalbudgetingapp.appservices.PasswordHasher;
+import com.github.yuyuvu.personalbudgetingapp.appservices.PasswordHashingService;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Класс для тестов методов PasswordHashingService. */
+public class PasswordHashingServiceTest {
+
+  /** Подготавливаем нужную локаль перед каждым тестом. */
+  @BeforeEach
+  void prepareLocale() {
+    Locale.setDefault(Locale.US);
+  }
+
+  /**
+   * Проверяем, что хэши, вычисленные одновременно в пуле потоков, совпадают с вычисленными в
+   * текущем потоке, а после завершения всех вычислений очередь пуста.
+   */
+  @Test
+  void makePasswordHashAsyncTest() {
+    String salt = PasswordHasher.SaltGenerator.makeSalt();
+
+    ArrayList<CompletableFuture<String>> hashes = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      hashes.add(PasswordHashingService.makePasswordHashAsync("password" + i, salt));
+    }
+    for (int i = 0; i < 4; i++) {
+      Assertions.assertEquals(
+          PasswordHasher.makePasswordHash("password" + i, salt), hashes.get(i).join());
+    }
+
+    Assertions.assertEquals(
+        PasswordHasher.makePasswordHash("password", salt),
+        PasswordHashingService.makePasswordHash("password", salt));
+    Assertions.assertEquals(0, PasswordHashingService.getQueueDepth());
+  }
+
+  /**
+   * Проверяем, что при запросах сверх мест в пуле и его очереди вызывающий поток ждёт места, а
+   * очередь не растёт сверх ограничения и все хэши в итоге вычисляются.
+   */
+  @Test
+  void makePasswordHashAsyncBackpressureTest() {
+    int slots = Runtime.getRuntime().availableProcessors() * 33;
+    String salt = PasswordHasher.SaltGenerator.makeSalt();
+    String expectedHash =
+        PasswordHasher.makePasswordHash("password", salt, PasswordHasher.DEFAULT_ALGORITHM, 1000);
+
+    ArrayList<CompletableFuture<String>> hashes = new ArrayList<>();
+    for (int i = 0; i < slots * 2; i++) {
+      hashes.add(
+          PasswordHashingService.makePasswordHashAsync(
+              "password", salt, PasswordHasher.DEFAULT_ALGORITHM, 1000));
+      Assertions.assertTrue(PasswordHashingService.getQueueDepth() <= slots);
+    }
+    for (CompletableFuture<String> hash : hashes) {
+      Assertions.assertEquals(expectedHash, hash.join());
+    }
+    Assertions.assertEquals(0, PasswordHashingService.getWaitingForSlotCount());
+  }
+}
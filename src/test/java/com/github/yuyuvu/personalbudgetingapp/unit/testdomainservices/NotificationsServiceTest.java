@@ -48,6 +48,16 @@ public class NotificationsServiceTest {
     Assertions.assertEquals(
         "- Ваши расходы достигли величины ваших доходов. У вас нулевой баланс.", result[0]);
 
+    // нулевой баланс при суммах с копейками
+    wallet.getWalletOperations().clear();
+    WalletOperationsService.addExpense(wallet, 0.3, "расход", LocalDateTime.now());
+    WalletOperationsService.addIncome(wallet, 0.1, "доход", LocalDateTime.now());
+    WalletOperationsService.addIncome(wallet, 0.2, "доход", LocalDateTime.now());
+    result =
+        deleteColorsFromString(NotificationsService.checkBalanceConsumption(wallet)).split("\n");
+    Assertions.assertEquals(
+        "- Ваши расходы достигли величины ваших доходов. У вас нулевой баланс.", result[0]);
+
     // 80%
     wallet.getWalletOperations().clear();
     WalletOperationsService.addExpense(wallet, 81, "расход", LocalDateTime.now());
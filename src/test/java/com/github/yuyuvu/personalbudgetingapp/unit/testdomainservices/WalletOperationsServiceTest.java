@@ -5,6 +5,7 @@ import com.github.yuyuvu.personalbudgetingapp.domainservices.WalletOperationsSer
 import com.github.yuyuvu.personalbudgetingapp.model.Wallet;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -556,6 +557,40 @@ public class WalletOperationsServiceTest {
         result.stream().map(Wallet.WalletOperation::getAmount).mapToDouble(amount -> amount).sum());
   }
 
+  /**
+   * Проверяем, что поток операций за период упорядочен по дате независимо от порядка добавления
+   * операций и учитывает удаление операций.
+   */
+  @Test
+  void streamWalletOperationsByPeriodTest() {
+    WalletOperationsService.addExpense(wallet, 300, "траты", LocalDateTime.of(2024, 3, 1, 10, 0));
+    WalletOperationsService.addIncome(wallet, 100, "зарплата", LocalDateTime.of(2024, 1, 1, 10, 0));
+    WalletOperationsService.addIncome(wallet, 200, "зарплата", LocalDateTime.of(2024, 2, 1, 10, 0));
+    WalletOperationsService.addExpense(wallet, 400, "траты", LocalDateTime.of(2025, 1, 1, 10, 0));
+
+    List<Double> amounts =
+        WalletOperationsService.streamWalletOperationsByPeriod(
+                wallet, LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2024, 12, 1, 0, 0))
+            .map(Wallet.WalletOperation::getAmount)
+            .toList();
+    Assertions.assertEquals(List.of(100.0, 200.0, 300.0), amounts);
+
+    long id = wallet.getIncomeWalletOperations().get(0).getId();
+    WalletOperationsService.removeWalletOperationById(wallet, id);
+    Assertions.assertEquals(
+        2,
+        WalletOperationsService.streamWalletOperationsByPeriod(
+                wallet, LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2024, 12, 1, 0, 0))
+            .count());
+
+    // пустой или перевёрнутый период
+    Assertions.assertEquals(
+        0,
+        WalletOperationsService.streamWalletOperationsByPeriod(
+                wallet, LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2023, 1, 1, 0, 0))
+            .count());
+  }
+
   /** Проверяем, что сумма по операциям разных типов корректно считается. */
   @Test
   void getWalletOperationsAmountsSumTest() {
@@ -583,4 +618,35 @@ public class WalletOperationsServiceTest {
         wallet.getTotalExpenses(),
         WalletOperationsService.getWalletOperationsAmountsSum(wallet.getWalletOperations(), false));
   }
+
+  /** Проверяем количество, наименьшую и наибольшую сумму операций разных типов из списка. */
+  @Test
+  void getWalletOperationsCountAndMinMaxAmountsTest() {
+    List<Wallet.WalletOperation> walletOperations = wallet.getWalletOperations();
+    Assertions.assertEquals(
+        0, WalletOperationsService.getWalletOperationsCount(walletOperations, true));
+    Assertions.assertEquals(
+        0, WalletOperationsService.getWalletOperationsMinAmount(walletOperations, true));
+    Assertions.assertEquals(
+        0, WalletOperationsService.getWalletOperationsMaxAmount(walletOperations, true));
+
+    WalletOperationsService.addIncome(wallet, 2500, "зарплата", LocalDateTime.now());
+    WalletOperationsService.addIncome(wallet, 920.5, "ошибка", LocalDateTime.now());
+    WalletOperationsService.addIncome(wallet, 3000, "зарплата", LocalDateTime.now());
+    WalletOperationsService.addExpense(wallet, 0.99, "еда", LocalDateTime.now());
+    WalletOperationsService.addExpense(wallet, 4000, "траты", LocalDateTime.now());
+
+    Assertions.assertEquals(
+        3, WalletOperationsService.getWalletOperationsCount(walletOperations, true));
+    Assertions.assertEquals(
+        2, WalletOperationsService.getWalletOperationsCount(walletOperations, false));
+    Assertions.assertEquals(
+        920.5, WalletOperationsService.getWalletOperationsMinAmount(walletOperations, true));
+    Assertions.assertEquals(
+        3000, WalletOperationsService.getWalletOperationsMaxAmount(walletOperations, true));
+    Assertions.assertEquals(
+        0.99, WalletOperationsService.getWalletOperationsMinAmount(walletOperations, false));
+    Assertions.assertEquals(
+        4000, WalletOperationsService.getWalletOperationsMaxAmount(walletOperations, false));
+  }
 }